@@ -0,0 +1,66 @@
+package org.toilelibre.libe.curl;
+
+import org.apache.commons.cli.*;
+
+import java.io.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Writes the option methods of the {@link Curl.CurlArgumentsBuilder}, one per name of each option of {@link Arguments}.
+ * Run by the antrun plugin during the generate-sources phase, before the compilation.
+ */
+final class CurlArgumentsBuilderGenerator {
+
+    public static void main (final String [] args) throws IOException {
+        final Path target = Paths.get (args [0]);
+        final byte [] source = sourceOf (args [1]).getBytes (StandardCharsets.UTF_8);
+        if (Files.exists (target) && Arrays.equals (source, Files.readAllBytes (target))) {
+            // unchanged, keeps the timestamp so that the incremental compilation has nothing to do
+            return;
+        }
+        Files.write (target, source);
+    }
+
+    static String sourceOf (final String className) {
+        final StringBuilder source = new StringBuilder ();
+        source.append ("package org.toilelibre.libe.curl;\n\n");
+        source.append ("/**\n");
+        source.append (" * The option methods of the {@link Curl.CurlArgumentsBuilder}.\n");
+        source.append (" * Generated from {@link Arguments} by CurlArgumentsBuilderGenerator (src/build/java) at each build, do not edit.\n");
+        source.append (" */\n");
+        source.append ("abstract class ").append (className).append (" {\n\n");
+        source.append ("    abstract Curl.CurlArgumentsBuilder option (final String name, final String value);\n");
+
+        for (final Option option : Arguments.ALL_OPTIONS.getOptions ()) {
+            final String shortMethodName = OptionMethodNames.methodNameOf (option.getOpt ());
+            final String longMethodName = OptionMethodNames.methodNameOf (option.getLongOpt ());
+            appendMethod (source, option, longMethodName);
+            if (!shortMethodName.equals (longMethodName)) {
+                appendMethod (source, option, shortMethodName);
+            }
+        }
+        return source.append ("}\n").toString ();
+    }
+
+    private static void appendMethod (final StringBuilder source, final Option option, final String methodName) {
+        source.append ("\n    /**\n");
+        source.append ("     * -").append (option.getOpt ()).append (", --").append (option.getLongOpt ())
+                .append (" : ").append (javadocOf (option.getDescription ())).append ('\n');
+        source.append ("     */\n");
+        if (option.hasArg ()) {
+            source.append ("    public Curl.CurlArgumentsBuilder ").append (methodName).append (" (final String value) {\n");
+            source.append ("        return this.option (\"").append (option.getOpt ()).append ("\", value);\n");
+        } else {
+            source.append ("    public Curl.CurlArgumentsBuilder ").append (methodName).append (" () {\n");
+            source.append ("        return this.option (\"").append (option.getOpt ()).append ("\", null);\n");
+        }
+        source.append ("    }\n");
+    }
+
+    private static String javadocOf (final String description) {
+        return description.replace ("&", "&amp;").replace ("<", "&lt;").replace (">", "&gt;")
+                .replace ("*/", "*&#47;").replace ("@", "&#64;");
+    }
+}
@@ -0,0 +1,124 @@
+package org.toilelibre.libe.curl;
+
+import org.apache.http.*;
+import org.apache.http.conn.*;
+import org.apache.http.entity.*;
+
+import java.io.*;
+import java.net.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.function.*;
+
+/**
+ * Counts the requests in flight per remote address, so that a new connection to a host
+ * with several addresses goes to the least busy one (ties are broken in a round-robin fashion).
+ * A request is in flight until its response body is consumed or closed, and the idle addresses are forgotten.
+ */
+final class AddressBalancer {
+
+    private static final ConcurrentMap<InetAddress, Integer> OUTSTANDING_REQUESTS = new ConcurrentHashMap<> ();
+
+    private static final AtomicInteger ROTATION = new AtomicInteger ();
+
+    static InetAddress [] leastOutstandingFirst (final InetAddress [] addresses) {
+        if (addresses.length < 2) {
+            return addresses;
+        }
+        final int offset = Math.floorMod (ROTATION.getAndIncrement (), addresses.length);
+        final InetAddress [] sortedAddresses = new InetAddress [addresses.length];
+        for (int i = 0 ; i < addresses.length ; i++) {
+            sortedAddresses [i] = addresses [(i + offset) % addresses.length];
+        }
+        Arrays.sort (sortedAddresses, Comparator.comparingInt (AddressBalancer::outstandingRequests));
+        return sortedAddresses;
+    }
+
+    /**
+     * @return the response of the call, its body ends the request when it is consumed or closed
+     */
+    static HttpResponse whileOutstanding (final InetAddress address, final Supplier<HttpResponse> call) {
+        if (address == null) {
+            return call.get ();
+        }
+        final Runnable end = startRequestTo (address);
+        final HttpResponse response;
+        try {
+            response = call.get ();
+        } catch (final RuntimeException | Error e) {
+            end.run ();
+            throw e;
+        }
+        final HttpEntity entity = response == null ? null : response.getEntity ();
+        if (entity == null || !entity.isStreaming ()) {
+            end.run ();
+            return response;
+        }
+        response.setEntity (new OutstandingEntity (entity, end));
+        return response;
+    }
+
+    static int outstandingRequests (final InetAddress address) {
+        return OUTSTANDING_REQUESTS.getOrDefault (address, 0);
+    }
+
+    static boolean isTracked (final InetAddress address) {
+        return OUTSTANDING_REQUESTS.containsKey (address);
+    }
+
+    /**
+     * @return ends the request, only once
+     */
+    private static Runnable startRequestTo (final InetAddress address) {
+        OUTSTANDING_REQUESTS.merge (address, 1, Integer::sum);
+        final AtomicBoolean ended = new AtomicBoolean ();
+        return () -> {
+            if (ended.compareAndSet (false, true)) {
+                OUTSTANDING_REQUESTS.computeIfPresent (address,
+                        (sameAddress, outstandingRequests) -> outstandingRequests > 1 ? outstandingRequests - 1 : null);
+            }
+        };
+    }
+
+    private static final class OutstandingEntity extends HttpEntityWrapper {
+        private final Runnable end;
+
+        OutstandingEntity (final HttpEntity entity, final Runnable end) {
+            super (entity);
+            this.end = end;
+        }
+
+        @Override
+        public InputStream getContent () throws IOException {
+            return new EofSensorInputStream (super.getContent (), new EofSensorWatcher () {
+                @Override
+                public boolean eofDetected (final InputStream wrapped) {
+                    OutstandingEntity.this.end.run ();
+                    return true;
+                }
+
+                @Override
+                public boolean streamClosed (final InputStream wrapped) {
+                    OutstandingEntity.this.end.run ();
+                    return true;
+                }
+
+                @Override
+                public boolean streamAbort (final InputStream wrapped) {
+                    OutstandingEntity.this.end.run ();
+                    return true;
+                }
+            });
+        }
+
+        @Override
+        public void writeTo (final OutputStream outStream) throws IOException {
+            try {
+                super.writeTo (outStream);
+            } finally {
+                this.end.run ();
+            }
+        }
+    }
+}
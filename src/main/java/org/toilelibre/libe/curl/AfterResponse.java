@@ -1,7 +1,8 @@
 package org.toilelibre.libe.curl;
 
-import org.apache.commons.cli.*;
 import org.apache.http.*;
+import org.apache.http.client.*;
+import org.apache.http.util.*;
 import org.toilelibre.libe.curl.Curl.*;
 
 import java.io.*;
@@ -11,15 +12,45 @@ final class AfterResponse {
 
     private static Logger LOGGER = Logger.getLogger (AfterResponse.class.getName ());
 
-    static void handle (final CommandLine commandLine, final HttpResponse response) {
+    static void handle (final ParsedCommand commandLine, final HttpResponse response) {
+
+        final int statusCode = response.getStatusLine ().getStatusCode ();
+        if (commandLine.hasOption (Arguments.FAIL.getOpt ()) && statusCode >= 400) {
+            EntityUtils.consumeQuietly (response.getEntity ());
+            throw new CurlException (new HttpResponseException (statusCode, "The requested URL returned error: " + statusCode));
+        }
+
+        if (commandLine.hasOption (Arguments.ETAG_SAVE.getOpt ())) {
+            saveTheEtag (commandLine.getOptionValue (Arguments.ETAG_SAVE.getOpt ()), response);
+        }
 
         if (!commandLine.hasOption (Arguments.OUTPUT.getOpt ())) return;
 
-        File file = createTheOutputFile (commandLine.getOptionValue (Arguments.OUTPUT.getOpt ()));
+        if (response.getStatusLine ().getStatusCode () == HttpStatus.SC_NOT_MODIFIED) return;
+
+        File file = createTheOutputFile (commandLine.getOptionValue (Arguments.OUTPUT.getOpt ()),
+                isConditional (commandLine));
         FileOutputStream outputStream = getOutputStreamFromFile (file);
         writeTheResponseEntityInsideStream (outputStream, response.getEntity ());
     }
 
+    private static boolean isConditional (final ParsedCommand commandLine) {
+        return commandLine.hasOption (Arguments.TIME_COND.getOpt ()) ||
+                commandLine.hasOption (Arguments.ETAG_COMPARE.getOpt ());
+    }
+
+    private static void saveTheEtag (final String fileName, final HttpResponse response) {
+        final int statusCode = response.getStatusLine ().getStatusCode ();
+        final Header etag = response.getFirstHeader (HttpHeaders.ETAG);
+        if (statusCode < 200 || statusCode >= 300 || etag == null) return;
+
+        try (FileOutputStream outputStream = new FileOutputStream (fileName)) {
+            outputStream.write ((etag.getValue () + "\n").getBytes ());
+        } catch (final IOException e) {
+            throw new CurlException (e);
+        }
+    }
+
     private static void writeTheResponseEntityInsideStream (FileOutputStream outputStream, HttpEntity httpEntity) {
         try {
             if (httpEntity.getContentLength () >= 0) {
@@ -47,10 +78,10 @@ final class AfterResponse {
         }
     }
 
-    private static File createTheOutputFile (String fileName) {
+    private static File createTheOutputFile (String fileName, boolean overwrite) {
         final File file = new File (fileName);
         try {
-            if (!file.createNewFile ()){
+            if (!file.createNewFile () && !(overwrite && file.isFile ())){
                 throw new CurlException (new IOException ("Could not create the file. Does it already exist ?"));
             }
         } catch (IOException e) {
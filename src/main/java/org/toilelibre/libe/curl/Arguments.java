@@ -2,18 +2,20 @@ package org.toilelibre.libe.curl;
 
 import org.apache.commons.cli.*;
 
-import java.util.regex.*;
-
 final class Arguments {
 
     final static Options ALL_OPTIONS      = new Options ();
 
-    final static Pattern ARGS_SPLIT_REGEX = Pattern.compile ("((?:(?:([^'\"\\s]+)(?=[\\s\"']))|(?:\"((?:[^\"]|(?<=\\\\)\")*)\"|(?:'((?:[^']|'(?! )[^']*')*)')|^[^\\s]+$|^[^\\s]+(?= )|(?<= )[^ ]+$)[^\\s\"']*))");
-
     final static Option  AUTH             = Arguments.add (Option.builder ("u").longOpt ("username").desc ("credentials").required (false).hasArg (true).desc ("user:password").build ());
 
+    final static Option  AWS_SIGV4        = Arguments.add (Option.builder ("awssigv4").longOpt ("aws-sigv4").desc ("Use AWS V4 signature authentication (with the -u access key and secret key)").required (false).hasArg (true).argName ("provider1[:provider2[:region[:service]]]").build ());
+
+    final static Option  BASIC            = Arguments.add (Option.builder ("basic").longOpt ("basic").desc ("Use HTTP Basic Authentication, sent without waiting for a challenge").required (false).hasArg (false).build ());
+
     final static Option  CA_CERT          = Arguments.add (Option.builder ("cacert").longOpt ("cacert").desc ("CA certificate").required (false).hasArg (true).desc ("CA_CERT").build ());
 
+    final static Option  CA_PATH          = Arguments.add (Option.builder ("capath").longOpt ("capath").desc ("CA directory").required (false).hasArg (true).desc ("CA_PATH").build ());
+
     final static Option  CERT             = Arguments.add (Option.builder ("E").longOpt ("cert").desc ("client certificate").required (false).hasArg (true).desc ("CERT[:password]").build ());
 
     final static Option  CERT_TYPE        = Arguments.add (Option.builder ("ct").longOpt ("cert-type").desc ("certificate type").required (false).hasArg (true).desc ("PEM|P12|JKS|DER|ENG").build ());
@@ -22,12 +24,24 @@ final class Arguments {
 
     final static Option  CONNECT_TIMEOUT  = Arguments.add (Option.builder ("cti").longOpt ("connect-timeout").desc ("Maximum time allowed for connection").required (false).hasArg (true).argName ("seconds").build ());
 
+    final static Option  CONNECT_TO       = Arguments.add (Option.builder ("connectto").longOpt ("connect-to").desc ("Connect to host").required (false).hasArg (true).argName ("HOST1:PORT1:HOST2:PORT2").build ());
+
     final static Option  DATA             = Arguments.add (Option.builder ("d").longOpt ("data").desc ("Data").required (false).hasArg ().argName ("payload").build ());
 
     final static Option  DATA_BINARY      = Arguments.add (Option.builder ("databinary").longOpt ("data-binary").desc ("http post binary data").required (false).hasArg ().argName ("payload").build ());
 
     final static Option  DATA_URLENCODE   = Arguments.add (Option.builder ("dataurlencode").longOpt ("data-urlencode").desc ("Data to URLEncode").required (false).hasArg ().argName ("payload").build ());
 
+    final static Option  DIGEST           = Arguments.add (Option.builder ("digest").longOpt ("digest").desc ("Use HTTP Digest Authentication").required (false).hasArg (false).build ());
+
+    final static Option  DNS_SERVERS      = Arguments.add (Option.builder ("dnsservers").longOpt ("dns-servers").desc ("DNS server addrs to use").required (false).hasArg (true).argName ("addresses").build ());
+
+    final static Option  ETAG_COMPARE     = Arguments.add (Option.builder ("etagcompare").longOpt ("etag-compare").desc ("Pass an ETag from a file as a custom header").required (false).hasArg (true).argName ("file").build ());
+
+    final static Option  ETAG_SAVE        = Arguments.add (Option.builder ("etagsave").longOpt ("etag-save").desc ("Parse ETag from a request and save it to a file").required (false).hasArg (true).argName ("file").build ());
+
+    final static Option  FAIL             = Arguments.add (Option.builder ("f").longOpt ("fail").desc ("Fail fast with no output on HTTP errors (22 as exit code)").required (false).hasArg (false).build ());
+
     final static Option  FOLLOW_REDIRECTS = Arguments.add (Option.builder ("L").longOpt ("location").desc ("follow redirects").required (false).hasArg (false).build ());
 
     final static Option  FORM             = Arguments.add (Option.builder ("F").longOpt ("form").desc ("http multipart post data").required (false).hasArg (true).build ());
@@ -40,18 +54,36 @@ final class Arguments {
 
     final static Option  KEY_TYPE         = Arguments.add (Option.builder ("kt").longOpt ("key-type").desc ("key type").required (false).hasArg (true).desc ("PEM|P12|JKS|DER|ENG").build ());
 
+    final static Option  KEEPALIVE_TIME   = Arguments.add (Option.builder ("keepalivetime").longOpt ("keepalive-time").desc ("Interval time for keepalive probes").required (false).hasArg (true).argName ("seconds").build ());
+
+    final static Option  LINGER           = Arguments.add (Option.builder ("linger").longOpt ("linger").desc ("Linger on close for this many seconds (SO_LINGER)").required (false).hasArg (true).argName ("seconds").build ());
+
     final static Option  MAX_TIME         = Arguments.add (Option.builder ("m").longOpt ("max-time").desc ("Maximum time allowed for the transfer").required (false).hasArg (true).argName ("seconds").build ());
 
     final static Option  NO_KEEPALIVE     = Arguments.add (Option.builder ("nokeepalive").longOpt ("no-keepalive").desc ("Disable TCP keepalive on the connection").required (false).hasArg (false).build ());
 
+    final static Option  NO_TCP_NODELAY   = Arguments.add (Option.builder ("notcpnodelay").longOpt ("no-tcp-nodelay").desc ("Enable the Nagle algorithm (TCP_NODELAY off)").required (false).hasArg (false).build ());
+
     final static Option  NTLM             = Arguments.add (Option.builder ("ntlm").longOpt ("ntlm").desc ("NTLM auth").required (false).hasArg (false).build ());
 
+    final static Option  OAUTH2_BEARER    = Arguments.add (Option.builder ("oauth2bearer").longOpt ("oauth2-bearer").desc ("OAuth 2 Bearer Token").required (false).hasArg (true).argName ("token").build ());
+
     final static Option  OUTPUT           = Arguments.add (Option.builder ("o").longOpt ("output").desc ("write to file").required (false).hasArg (true).argName ("FILE").build ());
 
     final static Option  PROXY            = Arguments.add (Option.builder ("x").longOpt ("proxy").desc ("use the specified HTTP proxy").required (false).hasArg (true).argName ("<[protocol://][user:password@]proxyhost[:port]>").build ());
 
     final static Option  PROXY_USER       = Arguments.add (Option.builder ("U").longOpt ("proxy-user").desc ("authentication for proxy").required (false).hasArg (true).argName ("user[:password]").build ());
 
+    final static Option  RCVBUF           = Arguments.add (Option.builder ("rcvbuf").longOpt ("rcvbuf").desc ("Size of the socket receive buffer (SO_RCVBUF)").required (false).hasArg (true).argName ("bytes").build ());
+
+    final static Option  RESOLVE          = Arguments.add (Option.builder ("resolve").longOpt ("resolve").desc ("Resolve the host+port to this address").required (false).hasArg (true).argName ("host:port:addr[,addr]...").build ());
+
+    final static Option  SNDBUF           = Arguments.add (Option.builder ("sndbuf").longOpt ("sndbuf").desc ("Size of the socket send buffer (SO_SNDBUF)").required (false).hasArg (true).argName ("bytes").build ());
+
+    final static Option  TCP_NODELAY      = Arguments.add (Option.builder ("tcpnodelay").longOpt ("tcp-nodelay").desc ("Use the TCP_NODELAY option (default)").required (false).hasArg (false).build ());
+
+    final static Option  TIME_COND        = Arguments.add (Option.builder ("z").longOpt ("time-cond").desc ("Transfer based on a time condition").required (false).hasArg (true).argName ("time").build ());
+
     final static Option  TLS_V1           = Arguments.add (Option.builder ("1").longOpt ("tlsv1").desc ("use >= TLSv1 (SSL)").required (false).hasArg (false).build ());
 
     final static Option  TLS_V10          = Arguments.add (Option.builder ("tlsv10").longOpt ("tlsv1.0").desc ("use TLSv1.0 (SSL)").required (false).hasArg (false).build ());
@@ -66,10 +98,20 @@ final class Arguments {
 
     final static Option  TRUST_INSECURE   = Arguments.add (Option.builder ("k").longOpt ("insecure").desc ("trust insecure").required (false).hasArg (false).build ());
 
+    final static Option  UNIX_SOCKET      = Arguments.add (Option.builder ("unixsocket").longOpt ("unix-socket").desc ("Connect through this Unix domain socket").required (false).hasArg (true).argName ("path").build ());
+
     final static Option  USER_AGENT       = Arguments.add (Option.builder ("A").longOpt ("user-agent").desc ("user agent").required (false).hasArg (true).build ());
 
     final static Option  VERSION          = Arguments.add (Option.builder ("V").longOpt ("version").desc ("get the version of this library").required (false).hasArg (false).build ());
 
+    final static Option  IPV4             = Arguments.add (Option.builder ("4").longOpt ("ipv4").desc ("Resolve names to IPv4 addresses").required (false).hasArg (false).build ());
+
+    final static Option  IPV6             = Arguments.add (Option.builder ("6").longOpt ("ipv6").desc ("Resolve names to IPv6 addresses").required (false).hasArg (false).build ());
+
+    final static Option  INTERFACE        = Arguments.add (Option.builder ("interface").longOpt ("interface").desc ("Use network INTERFACE (or address), a comma separated list is used round-robin").required (false).hasArg (true).argName ("name").build ());
+
+    final static Option  LOCAL_PORT       = Arguments.add (Option.builder ("localport").longOpt ("local-port").desc ("Force use of RANGE for local port numbers").required (false).hasArg (true).argName ("num/range").build ());
+
     final static Option  INTERCEPTOR      = Arguments.add (Option.builder ("interceptor").longOpt ("interceptor").desc ("interceptor field or method (syntax is classname::fieldname). Must be a BiFunction<HttpRequest, Supplier< HttpResponse>, HttpResponse> or will be discarded").required (false).hasArg (true).build ());
 
     private static Option add (final Option option) {
@@ -0,0 +1,154 @@
+package org.toilelibre.libe.curl;
+
+import java.util.*;
+import java.util.concurrent.atomic.*;
+import java.util.function.*;
+import java.util.regex.*;
+
+/**
+ * The split arguments of the last commands, least recently used first out.
+ * The cache is bounded by its weight (the number of chars of the commands and of their arguments),
+ * and the commands longer than {@link #maxCommandLength} (usually with a big inlined payload) are not kept.
+ */
+final class ArgumentsCache {
+
+    static final int DEFAULT_MAX_WEIGHT         = 4 * 1024 * 1024;
+    static final int DEFAULT_MAX_COMMAND_LENGTH = 16 * 1024;
+
+    private static final Pattern SIMPLE_WORD = Pattern.compile ("[A-Za-z0-9_./:=@,+%-]+");
+
+    private final int                                 maxWeight;
+    private final int                                 maxCommandLength;
+    private final LinkedHashMap<String, List<String>> entries   = new LinkedHashMap<> (16, 0.75f, true);
+    private final AtomicLong                          hits      = new AtomicLong ();
+    private final AtomicLong                          misses    = new AtomicLong ();
+    private final AtomicLong                          bypasses  = new AtomicLong ();
+    private final AtomicLong                          evictions = new AtomicLong ();
+    private long                                      weight;
+
+    ArgumentsCache (final int maxWeight, final int maxCommandLength) {
+        this.maxWeight = maxWeight;
+        this.maxCommandLength = maxCommandLength;
+    }
+
+    /**
+     * @param command a canonical command (see {@link #canonical(String)})
+     */
+    List<String> computeIfAbsent (final String command, final Function<String, List<String>> splitter) {
+        if (command.length () > this.maxCommandLength) {
+            this.bypasses.incrementAndGet ();
+            return splitter.apply (command);
+        }
+        synchronized (this.entries) {
+            final List<String> arguments = this.entries.get (command);
+            if (arguments != null) {
+                this.hits.incrementAndGet ();
+                return arguments;
+            }
+        }
+        this.misses.incrementAndGet ();
+        final List<String> arguments = Collections.unmodifiableList (splitter.apply (command));
+        synchronized (this.entries) {
+            if (this.entries.put (command, arguments) == null) {
+                this.weight += weightOf (command, arguments);
+            }
+            final Iterator<Map.Entry<String, List<String>>> eldest = this.entries.entrySet ().iterator ();
+            while (this.weight > this.maxWeight && eldest.hasNext ()) {
+                final Map.Entry<String, List<String>> entry = eldest.next ();
+                this.weight -= weightOf (entry.getKey (), entry.getValue ());
+                eldest.remove ();
+                this.evictions.incrementAndGet ();
+            }
+        }
+        return arguments;
+    }
+
+    /**
+     * Collapses the whitespaces outside the quotes, and unquotes the quoted words
+     * that do not need it, so that "-X 'POST'  url" and "-X POST url" share the same entry.
+     * The result starts and ends with a space (unless a quote is never closed).
+     */
+    static String canonical (final String command) {
+        final StringBuilder canonical = new StringBuilder (command.length () + 2).append (' ');
+        boolean separated = true;
+        int i = 0;
+        while (i < command.length ()) {
+            final char c = command.charAt (i);
+            if (ArgumentsTokenizer.isWhitespace (c)) {
+                if (!separated) {
+                    canonical.append (' ');
+                }
+                separated = true;
+                i++;
+                continue;
+            }
+            if (c == '\\' && i + 1 < command.length () && ArgumentsTokenizer.isEscapable (command.charAt (i + 1))) {
+                canonical.append (command, i, i + 2);
+                i += 2;
+            } else if (c == '\'' || c == '"') {
+                final int end = ArgumentsTokenizer.closingQuote (command, i);
+                if (end == -1) {
+                    return canonical.append (command, i, command.length ()).toString ();
+                }
+                final boolean wholeWord = separated &&
+                        (end + 1 == command.length () || ArgumentsTokenizer.isWhitespace (command.charAt (end + 1)));
+                if (wholeWord && SIMPLE_WORD.matcher (command).region (i + 1, end).matches ()) {
+                    canonical.append (command, i + 1, end);
+                } else {
+                    canonical.append (command, i, end + 1);
+                }
+                i = end + 1;
+            } else {
+                canonical.append (c);
+                i++;
+            }
+            separated = false;
+        }
+        if (!separated) {
+            canonical.append (' ');
+        }
+        return canonical.toString ();
+    }
+
+    int size () {
+        synchronized (this.entries) {
+            return this.entries.size ();
+        }
+    }
+
+    long weight () {
+        synchronized (this.entries) {
+            return this.weight;
+        }
+    }
+
+    long hits () {
+        return this.hits.get ();
+    }
+
+    long misses () {
+        return this.misses.get ();
+    }
+
+    long bypasses () {
+        return this.bypasses.get ();
+    }
+
+    long evictions () {
+        return this.evictions.get ();
+    }
+
+    @Override
+    public String toString () {
+        return "ArgumentsCache[size=" + this.size () + ", weight=" + this.weight () + ", hits=" + this.hits () +
+                ", misses=" + this.misses () + ", bypasses=" + this.bypasses () + ", evictions=" + this.evictions () + "]";
+    }
+
+    private static long weightOf (final String command, final List<String> arguments) {
+        long weight = command.length ();
+        for (final String argument : arguments) {
+            weight += argument.length ();
+        }
+        return weight;
+    }
+}
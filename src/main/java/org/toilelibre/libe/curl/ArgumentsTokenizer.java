@@ -0,0 +1,199 @@
+package org.toilelibre.libe.curl;
+
+import java.util.*;
+
+/**
+ * Splits a command into its arguments like a shell does, in a single pass and without any regex
+ * (the split time grows linearly with the length of the payloads, and nothing recurses).
+ * <ul>
+ *     <li>the whitespaces separate the arguments, outside of the quotes,</li>
+ *     <li>a backslash escapes a whitespace or a quote,</li>
+ *     <li>inside double quotes, \" and \\ are unescaped,</li>
+ *     <li>a single quote only closes before a whitespace (or at the end) : 'it's fine' is one argument,</li>
+ *     <li>a quote glued to an option name (-H'Accept: *&#47;*') starts the option value.</li>
+ * </ul>
+ */
+final class ArgumentsTokenizer {
+
+    static final String PLACEHOLDER_PREFIX = "$curl_placeholder_";
+
+    private static final String CURL = "curl";
+
+    /**
+     * @return the arguments, without the leading curl program name
+     */
+    static List<String> tokenize (final String command) {
+        final List<String> arguments = new ArrayList<> ();
+        int i = 0;
+        while (i < command.length ()) {
+            if (isWhitespace (command.charAt (i))) {
+                i++;
+                continue;
+            }
+            final Argument argument = new Argument (command);
+            i = readArgument (command, i, argument);
+            final String value = argument.value ();
+            if (!arguments.isEmpty () || !CURL.equals (value) || argument.quoted) {
+                arguments.add (value);
+            }
+        }
+        return arguments;
+    }
+
+    /**
+     * Replaces each $curl_placeholder_N by the Nth value (verbatim), the unknown indexes are left as is.
+     */
+    static String withPlaceholders (final String argument, final List<String> placeholderValues) {
+        if (placeholderValues == null || placeholderValues.isEmpty () || argument.indexOf (PLACEHOLDER_PREFIX) == -1) {
+            return argument;
+        }
+        final StringBuilder result = new StringBuilder (argument.length ());
+        int copied = 0;
+        int placeholder = argument.indexOf (PLACEHOLDER_PREFIX);
+        while (placeholder != -1) {
+            final int digitsStart = placeholder + PLACEHOLDER_PREFIX.length ();
+            int digitsEnd = digitsStart;
+            long index = 0;
+            while (digitsEnd < argument.length () && Character.isDigit (argument.charAt (digitsEnd)) && index < Integer.MAX_VALUE) {
+                index = index * 10 + (argument.charAt (digitsEnd) - '0');
+                digitsEnd++;
+            }
+            if (digitsEnd > digitsStart && index < placeholderValues.size ()) {
+                result.append (argument, copied, placeholder).append (placeholderValues.get ((int) index));
+                copied = digitsEnd;
+            }
+            placeholder = argument.indexOf (PLACEHOLDER_PREFIX, Math.max (digitsEnd, placeholder + 1));
+        }
+        return result.append (argument, copied, argument.length ()).toString ();
+    }
+
+    /**
+     * @return the index of the quote closing the one at quoteIndex, or -1 when it is never closed
+     */
+    static int closingQuote (final String command, final int quoteIndex) {
+        final char quote = command.charAt (quoteIndex);
+        for (int i = quoteIndex + 1 ; i < command.length () ; i++) {
+            final char c = command.charAt (i);
+            if (quote == '"' && c == '\\' && i + 1 < command.length () &&
+                    (command.charAt (i + 1) == '"' || command.charAt (i + 1) == '\\')) {
+                i++;
+            } else if (c == quote && (quote == '"' || i + 1 == command.length () || isWhitespace (command.charAt (i + 1)))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * The backslashes outside of the quotes only escape these, so that the windows paths stay untouched.
+     */
+    static boolean isEscapable (final char c) {
+        return c == '"' || c == '\'' || isWhitespace (c);
+    }
+
+    /**
+     * Same whitespaces as \s in a regex.
+     */
+    static boolean isWhitespace (final char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f' || c == '\u000B';
+    }
+
+    private static int readArgument (final String command, final int start, final Argument argument) {
+        int segmentStart = start;
+        int i = start;
+        while (i < command.length ()) {
+            final char c = command.charAt (i);
+            if (isWhitespace (c)) {
+                break;
+            }
+            if (c == '\\' && i + 1 < command.length () && isEscapable (command.charAt (i + 1))) {
+                argument.append (segmentStart, i);
+                segmentStart = i + 1;
+                i += 2;
+            } else if (c == '"' || c == '\'') {
+                argument.append (segmentStart, i);
+                if (i > start && isOptionName (command, start, i)) {
+                    return i;
+                }
+                argument.quoted = true;
+                final int end = closingQuote (command, i);
+                final int contentEnd = end == -1 ? command.length () : end;
+                if (c == '"') {
+                    appendDoubleQuoted (command, i + 1, contentEnd, argument);
+                } else {
+                    argument.append (i + 1, contentEnd);
+                }
+                i = end == -1 ? command.length () : end + 1;
+                segmentStart = i;
+            } else {
+                i++;
+            }
+        }
+        argument.append (segmentStart, i);
+        return i;
+    }
+
+    private static void appendDoubleQuoted (final String command, final int start, final int end, final Argument argument) {
+        int segmentStart = start;
+        for (int i = start ; i < end ; i++) {
+            if (command.charAt (i) == '\\' && i + 1 < end && (command.charAt (i + 1) == '"' || command.charAt (i + 1) == '\\')) {
+                argument.append (segmentStart, i);
+                segmentStart = ++i;
+            }
+        }
+        argument.append (segmentStart, end);
+    }
+
+    private static boolean isOptionName (final String command, final int start, final int end) {
+        if (command.charAt (start) != '-') {
+            return false;
+        }
+        for (int i = start ; i < end ; i++) {
+            if (command.charAt (i) == '=') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The argument is a substring of the command as long as it is contiguous there (no escape, at most one quoted part).
+     */
+    private static final class Argument {
+        private final String  command;
+        private int           from = -1;
+        private int           to   = -1;
+        private StringBuilder chars;
+        private boolean       quoted;
+
+        Argument (final String command) {
+            this.command = command;
+        }
+
+        void append (final int start, final int end) {
+            if (start == end) {
+                return;
+            }
+            if (this.chars == null && this.from == -1) {
+                this.from = start;
+                this.to = end;
+                return;
+            }
+            if (this.chars == null && this.to == start) {
+                this.to = end;
+                return;
+            }
+            if (this.chars == null) {
+                this.chars = new StringBuilder (this.to - this.from + end - start).append (this.command, this.from, this.to);
+            }
+            this.chars.append (this.command, start, end);
+        }
+
+        String value () {
+            if (this.chars != null) {
+                return this.chars.toString ();
+            }
+            return this.from == -1 ? "" : this.command.substring (this.from, this.to);
+        }
+    }
+}
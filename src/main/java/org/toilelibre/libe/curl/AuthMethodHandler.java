@@ -1,30 +1,217 @@
 package org.toilelibre.libe.curl;
 
-import org.apache.commons.cli.*;
 import org.apache.http.*;
 import org.apache.http.auth.*;
+import org.apache.http.client.*;
+import org.apache.http.client.config.*;
+import org.apache.http.client.protocol.*;
+import org.apache.http.client.utils.*;
+import org.apache.http.config.*;
+import org.apache.http.conn.*;
+import org.apache.http.impl.auth.*;
 import org.apache.http.impl.client.*;
+import org.apache.http.impl.conn.*;
+import org.apache.http.protocol.*;
+import org.toilelibre.libe.curl.Curl.CurlArgumentsBuilder.CurlJavaOptions.*;
 
 import java.net.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.*;
 
 final class AuthMethodHandler {
 
-    static HttpClientBuilder handleAuthMethod (final CommandLine commandLine, HttpClientBuilder executor,
-                                               final String hostname) {
-        if (commandLine.getOptionValue (Arguments.AUTH.getOpt ()) != null) {
-            final String[] authValue = commandLine.getOptionValue (Arguments.AUTH.getOpt ()).split ("(?<!\\\\):");
-            if (commandLine.hasOption (Arguments.NTLM.getOpt ())) {
+    private static final int MAX_SHARED_AUTH_STATES = 256;
+
+    private static final Map<String, SharedAuthState> SHARED_AUTH_STATES = new ConcurrentHashMap<> ();
+
+    private static volatile String localHostName;
+
+    private static final Lookup<AuthSchemeProvider> AUTH_SCHEMES = RegistryBuilder.<AuthSchemeProvider>create ()
+            .register (AuthSchemes.BASIC, new BasicSchemeFactory ())
+            .register (AuthSchemes.DIGEST, context -> new SharedDigestScheme ())
+            .register (AuthSchemes.NTLM, new NTLMSchemeFactory ())
+            .register (AuthSchemes.SPNEGO, new SPNegoSchemeFactory ())
+            .register (AuthSchemes.KERBEROS, new KerberosSchemeFactory ())
+            .build ();
+
+    static HttpClientBuilder handleAuthMethod (final ParsedCommand commandLine, HttpClientBuilder executor) {
+        final SharedAuthState sharedAuthState = sharedAuthStateOf (commandLine);
+        if (sharedAuthState == null) {
+            return executor;
+        }
+        return executor.setDefaultCredentialsProvider (sharedAuthState.credentialsProvider)
+                .setDefaultAuthSchemeRegistry (AUTH_SCHEMES)
+                .setTargetAuthenticationStrategy (CachingDigestAuthenticationStrategy.INSTANCE);
+    }
+
+    static HttpClientBuilder handleBearerToken (final ParsedCommand commandLine, final HttpClientBuilder executor,
+                                                final Supplier<BearerToken> bearerTokenProvider) {
+        final String bearerToken = commandLine.getOptionValue (Arguments.OAUTH2_BEARER.getOpt ());
+        if (bearerToken == null && bearerTokenProvider == null) {
+            return executor;
+        }
+        final String targetHostName = URI.create (commandLine.getArgs () [0]).getHost ();
+        return executor.addInterceptorLast ((HttpRequestInterceptor) (request, context) -> {
+            final HttpHost requestTarget = HttpClientContext.adapt (context).getTargetHost ();
+            if (request.containsHeader (HttpHeaders.AUTHORIZATION) ||
+                    (requestTarget != null && !requestTarget.getHostName ().equalsIgnoreCase (targetHostName))) {
+                return;
+            }
+            request.addHeader (HttpHeaders.AUTHORIZATION, "Bearer " +
+                    (bearerToken != null ? bearerToken : bearerTokenProvider.get ().getValue ()));
+        });
+    }
+
+    /**
+     * One context per call, but the credentials, the auth cache (what made the previous calls succeed)
+     * and the NTLM user token (to lease again the connections already authenticated) are shared
+     * between the calls with the same credentials and the same target.
+     */
+    static HttpClientContext prepareContext (final ParsedCommand commandLine) {
+        final HttpClientContext context = HttpClientContext.create ();
+        final SharedAuthState sharedAuthState = sharedAuthStateOf (commandLine);
+        if (sharedAuthState != null) {
+            context.setCredentialsProvider (sharedAuthState.credentialsProvider);
+            context.setAuthCache (sharedAuthState.authCache);
+            context.setUserToken (sharedAuthState.userToken);
+        }
+        return context;
+    }
+
+    private static SharedAuthState sharedAuthStateOf (final ParsedCommand commandLine) {
+        final String authValue = commandLine.getOptionValue (Arguments.AUTH.getOpt ());
+        if (authValue == null || commandLine.hasOption (Arguments.AWS_SIGV4.getOpt ())) {
+            return null;
+        }
+        final boolean ntlm = commandLine.hasOption (Arguments.NTLM.getOpt ());
+        final boolean basic = commandLine.hasOption (Arguments.BASIC.getOpt ()) &&
+                !commandLine.hasOption (Arguments.DIGEST.getOpt ());
+        final HttpHost target = URIUtils.extractHost (URI.create (commandLine.getArgs () [0]));
+        final String key = target + "\u0000" + authValue + "\u0000" + ntlm + "\u0000" + basic;
+        final SharedAuthState sharedAuthState = SHARED_AUTH_STATES.get (key);
+        if (sharedAuthState != null) {
+            return sharedAuthState;
+        }
+        if (SHARED_AUTH_STATES.size () >= MAX_SHARED_AUTH_STATES) {
+            SHARED_AUTH_STATES.clear ();
+        }
+        return SHARED_AUTH_STATES.computeIfAbsent (key, newKey -> new SharedAuthState (authValue, ntlm, basic, target));
+    }
+
+    private static String localHostName () {
+        if (localHostName == null) {
+            try {
+                localHostName = InetAddress.getLocalHost ().getHostName ();
+            } catch (final UnknownHostException e) {
+                throw new Curl.CurlException (e);
+            }
+        }
+        return localHostName;
+    }
+
+    private static class SharedAuthState {
+        private final CredentialsProvider credentialsProvider;
+        private final AuthCache           authCache = new ConcurrentAuthCache ();
+        private final Object              userToken;
+
+        SharedAuthState (final String auth, final boolean ntlm, final boolean basic, final HttpHost target) {
+            final String[] authValue = auth.split ("(?<!\\\\):");
+            if (ntlm) {
                 final String[] userName = authValue[0].split ("\\\\");
-                final SystemDefaultCredentialsProvider systemDefaultCredentialsProvider =
-                        new SystemDefaultCredentialsProvider ();
-                systemDefaultCredentialsProvider.setCredentials (AuthScope.ANY, new NTCredentials (userName[1],
-                        authValue[1], hostname, userName[0]));
-                return executor.setDefaultCredentialsProvider (systemDefaultCredentialsProvider);
+                final NTCredentials credentials = new NTCredentials (userName[1], authValue[1], localHostName (), userName[0]);
+                this.credentialsProvider = new SystemDefaultCredentialsProvider ();
+                this.credentialsProvider.setCredentials (AuthScope.ANY, credentials);
+                this.userToken = credentials.getUserPrincipal ();
+                return;
             }
-            final BasicCredentialsProvider basicCredentialsProvider = new BasicCredentialsProvider ();
-            basicCredentialsProvider.setCredentials (new AuthScope (HttpHost.create (URI.create (commandLine.getArgs ()[0]).getHost ())), new UsernamePasswordCredentials (authValue[0], authValue.length > 1 ? authValue[1] : null));
-            return executor.setDefaultCredentialsProvider (basicCredentialsProvider);
+            this.credentialsProvider = new BasicCredentialsProvider ();
+            this.credentialsProvider.setCredentials (new AuthScope (target.getHostName (), AuthScope.ANY_PORT),
+                    new UsernamePasswordCredentials (authValue[0], authValue.length > 1 ? authValue[1] : null));
+            this.userToken = null;
+            if (basic) {
+                this.authCache.put (target, new BasicScheme ());
+            }
+        }
+    }
+
+    /**
+     * Unlike the BasicAuthCache which (de)serializes its schemes, this one keeps the instances,
+     * so that a digest scheme goes on counting its nonce uses from one call to the next.
+     */
+    private static class ConcurrentAuthCache implements AuthCache {
+        private final Map<HttpHost, AuthScheme> authSchemes = new ConcurrentHashMap<> ();
+
+        @Override
+        public void put (final HttpHost host, final AuthScheme authScheme) {
+            if (authScheme != null) {
+                this.authSchemes.put (keyOf (host), authScheme);
+            }
+        }
+
+        @Override
+        public AuthScheme get (final HttpHost host) {
+            return this.authSchemes.get (keyOf (host));
+        }
+
+        @Override
+        public void remove (final HttpHost host) {
+            this.authSchemes.remove (keyOf (host));
+        }
+
+        @Override
+        public void clear () {
+            this.authSchemes.clear ();
+        }
+
+        private static HttpHost keyOf (final HttpHost host) {
+            try {
+                return new HttpHost (host.getHostName ().toLowerCase (Locale.ROOT),
+                        DefaultSchemePortResolver.INSTANCE.resolve (host), host.getSchemeName ());
+            } catch (final UnsupportedSchemeException e) {
+                return host;
+            }
+        }
+    }
+
+    /**
+     * HttpClient only caches the basic schemes, the shared digest schemes can be cached too.
+     */
+    private static class CachingDigestAuthenticationStrategy extends TargetAuthenticationStrategy {
+        private static final CachingDigestAuthenticationStrategy INSTANCE = new CachingDigestAuthenticationStrategy ();
+
+        @Override
+        protected boolean isCachable (final AuthScheme authScheme) {
+            return super.isCachable (authScheme) || (authScheme instanceof SharedDigestScheme && authScheme.isComplete ());
+        }
+    }
+
+    /**
+     * The server nonce and the nonce count are shared by the concurrent calls to the same target,
+     * each authentication takes the next nonce count.
+     */
+    private static class SharedDigestScheme extends DigestScheme {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public synchronized void processChallenge (final Header header) throws MalformedChallengeException {
+            super.processChallenge (header);
+        }
+
+        @Override
+        public synchronized Header authenticate (final Credentials credentials, final HttpRequest request,
+                                                 final HttpContext context) throws AuthenticationException {
+            return super.authenticate (credentials, request, context);
+        }
+
+        @Override
+        public synchronized boolean isComplete () {
+            return super.isComplete ();
+        }
+
+        @Override
+        public synchronized String getParameter (final String name) {
+            return super.getParameter (name);
         }
-        return executor;
     }
 }
@@ -0,0 +1,249 @@
+package org.toilelibre.libe.curl;
+
+import org.apache.http.*;
+import org.apache.http.client.methods.*;
+import org.apache.http.entity.*;
+import org.toilelibre.libe.curl.Curl.*;
+
+import javax.crypto.*;
+import javax.crypto.spec.*;
+import java.io.*;
+import java.net.*;
+import java.nio.charset.*;
+import java.security.*;
+import java.time.*;
+import java.time.format.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static java.util.stream.Collectors.*;
+
+/**
+ * --aws-sigv4 "provider1[:provider2[:region[:service]]]", with the -u access key and secret key.
+ * The region and the service are read from the host name (service.region.amazonaws.com) when missing.
+ */
+final class AwsSigV4Signer {
+
+    static final long UNSIGNED_PAYLOAD_THRESHOLD = 16 * 1024 * 1024;
+
+    private static final String UNSIGNED_PAYLOAD   = "UNSIGNED-PAYLOAD";
+    private static final int    MAX_SIGNING_KEYS   = 64;
+    private static final char[] HEXADECIMAL_DIGITS = "0123456789abcdef".toCharArray ();
+
+    private static final DateTimeFormatter DATE_TIME = DateTimeFormatter.ofPattern ("yyyyMMdd'T'HHmmss'Z'")
+            .withZone (ZoneOffset.UTC);
+
+    private static final Map<String, byte []>       SIGNING_KEYS = new ConcurrentHashMap<> ();
+    private static final ThreadLocal<MessageDigest> SHA_256      = ThreadLocal.withInitial (() -> {
+        try {
+            return MessageDigest.getInstance ("SHA-256");
+        } catch (final NoSuchAlgorithmException e) {
+            throw new CurlException (e);
+        }
+    });
+    private static final ThreadLocal<Mac>           HMAC_SHA_256 = ThreadLocal.withInitial (() -> {
+        try {
+            return Mac.getInstance ("HmacSHA256");
+        } catch (final NoSuchAlgorithmException e) {
+            throw new CurlException (e);
+        }
+    });
+
+    static void sign (final ParsedCommand commandLine, final HttpUriRequest request) {
+        sign (commandLine, request, Instant.now ());
+    }
+
+    static void sign (final ParsedCommand commandLine, final HttpUriRequest request, final Instant now) {
+        final String sigV4 = commandLine.getOptionValue (Arguments.AWS_SIGV4.getOpt ());
+        final String auth = commandLine.getOptionValue (Arguments.AUTH.getOpt ());
+        if (sigV4 == null) {
+            return;
+        }
+        if (auth == null) {
+            throw new IllegalArgumentException ("option --aws-sigv4: needs -u access key:secret key");
+        }
+        final String [] parameters = sigV4.split (":");
+        final String [] credentials = auth.split ("(?<!\\\\):", 2);
+        final String [] hostLabels = request.getURI ().getHost ().split ("\\.");
+        if (parameters.length < 4 && hostLabels.length < 3) {
+            throw new IllegalArgumentException ("option --aws-sigv4: the region and the service can't be read in the host name");
+        }
+        final String provider = parameters [0];
+        final String headersProvider = parameters.length > 1 ? parameters [1] : provider;
+        final String region = parameters.length > 2 ? parameters [2] : hostLabels [1];
+        final String service = parameters.length > 3 ? parameters [3] : hostLabels [0];
+        final String algorithm = provider.toUpperCase (Locale.ROOT) + "4-HMAC-SHA256";
+        final String scopeTerminator = provider.toLowerCase (Locale.ROOT) + "4_request";
+        final String dateHeader = "X-" + capitalized (headersProvider) + "-Date";
+        final String contentHashHeader = "x-" + headersProvider.toLowerCase (Locale.ROOT) + "-content-sha256";
+
+        if (!request.containsHeader (dateHeader)) {
+            request.setHeader (dateHeader, DATE_TIME.format (now));
+        }
+        final String dateTime = request.getFirstHeader (dateHeader).getValue ();
+        final String day = dateTime.substring (0, 8);
+        final String payloadHash = payloadHash (request, "s3".equals (service));
+        if ("s3".equals (service)) {
+            request.setHeader (contentHashHeader, payloadHash);
+        }
+
+        final SortedMap<String, String> signedHeaders = signedHeaders (request, headersProvider);
+        final String signedHeaderNames = String.join (";", signedHeaders.keySet ());
+        final String canonicalRequest = request.getMethod ().toUpperCase (Locale.ROOT) + '\n' +
+                Optional.ofNullable (request.getURI ().getRawPath ()).filter (path -> !path.isEmpty ()).orElse ("/") + '\n' +
+                canonicalQuery (request.getURI ().getRawQuery ()) + '\n' +
+                signedHeaders.entrySet ().stream ().map (header -> header.getKey () + ':' + header.getValue () + '\n')
+                        .collect (joining ()) + '\n' +
+                signedHeaderNames + '\n' +
+                payloadHash;
+        final String scope = day + '/' + region + '/' + service + '/' + scopeTerminator;
+        final String stringToSign = algorithm + '\n' + dateTime + '\n' + scope + '\n' +
+                hex (sha256 (canonicalRequest.getBytes (StandardCharsets.UTF_8)));
+        final byte [] signingKey = signingKey (provider.toUpperCase (Locale.ROOT) + "4" + (credentials.length > 1 ? credentials [1] : ""),
+                day, region, service, scopeTerminator);
+
+        request.setHeader (HttpHeaders.AUTHORIZATION, algorithm + " Credential=" + credentials [0] + '/' + scope +
+                ", SignedHeaders=" + signedHeaderNames +
+                ", Signature=" + hex (hmac (signingKey, stringToSign)));
+    }
+
+    /**
+     * A repeatable body (a --data-binary file) is read twice : once to be hashed, then once to be sent.
+     * The other bodies are buffered in memory first, except the big (or unknown size) uploads to s3 : they are not hashed at all.
+     */
+    private static String payloadHash (final HttpUriRequest request, final boolean unsignedPayloadAllowed) {
+        final HttpEntity entity = request instanceof HttpEntityEnclosingRequest ?
+                ((HttpEntityEnclosingRequest) request).getEntity () : null;
+        if (entity == null) {
+            return hex (sha256 (new byte [0]));
+        }
+        if (unsignedPayloadAllowed && (entity.getContentLength () < 0 || entity.getContentLength () > UNSIGNED_PAYLOAD_THRESHOLD)) {
+            return UNSIGNED_PAYLOAD;
+        }
+        try {
+            final HttpEntity repeatableEntity = entity.isRepeatable () ? entity : new BufferedHttpEntity (entity);
+            ((HttpEntityEnclosingRequest) request).setEntity (repeatableEntity);
+            final MessageDigest digest = SHA_256.get ();
+            digest.reset ();
+            repeatableEntity.writeTo (new OutputStream () {
+                @Override
+                public void write (final int oneByte) {
+                    digest.update ((byte) oneByte);
+                }
+
+                @Override
+                public void write (final byte [] bytes, final int offset, final int length) {
+                    digest.update (bytes, offset, length);
+                }
+            });
+            return hex (digest.digest ());
+        } catch (final IOException e) {
+            throw new CurlException (e);
+        }
+    }
+
+    private static SortedMap<String, String> signedHeaders (final HttpUriRequest request, final String headersProvider) {
+        final String providerHeadersPrefix = "x-" + headersProvider.toLowerCase (Locale.ROOT) + "-";
+        final URI uri = request.getURI ();
+        final SortedMap<String, String> signedHeaders = new TreeMap<> ();
+        signedHeaders.put ("host", uri.getPort () == -1 ? uri.getHost () : uri.getHost () + ':' + uri.getPort ());
+        for (final Header header : request.getAllHeaders ()) {
+            final String name = header.getName ().toLowerCase (Locale.ROOT);
+            if (name.equals ("host") || name.equals ("content-type") || name.equals ("content-md5") ||
+                    name.startsWith (providerHeadersPrefix)) {
+                final String value = header.getValue ().trim ().replaceAll ("\\s+", " ");
+                signedHeaders.merge (name, value, (first, second) -> name.equals ("host") ? second : first + ',' + second);
+            }
+        }
+        return signedHeaders;
+    }
+
+    private static String canonicalQuery (final String rawQuery) {
+        if (rawQuery == null || rawQuery.isEmpty ()) {
+            return "";
+        }
+        return Arrays.stream (rawQuery.split ("&")).filter (parameter -> !parameter.isEmpty ())
+                .map (parameter -> {
+                    final int equals = parameter.indexOf ('=');
+                    final String name = equals == -1 ? parameter : parameter.substring (0, equals);
+                    final String value = equals == -1 ? "" : parameter.substring (equals + 1);
+                    return new String [] {encoded (percentDecoded (name)), encoded (percentDecoded (value))};
+                })
+                .sorted (Comparator.<String [], String>comparing (parameter -> parameter [0]).thenComparing (parameter -> parameter [1]))
+                .map (parameter -> parameter [0] + '=' + parameter [1])
+                .collect (joining ("&"));
+    }
+
+    private static byte [] signingKey (final String secret, final String day, final String region,
+                                       final String service, final String scopeTerminator) {
+        final String cacheKey = String.join ("\u0000", secret, day, region, service, scopeTerminator);
+        final byte [] signingKey = SIGNING_KEYS.get (cacheKey);
+        if (signingKey != null) {
+            return signingKey;
+        }
+        if (SIGNING_KEYS.size () >= MAX_SIGNING_KEYS) {
+            SIGNING_KEYS.clear ();
+        }
+        return SIGNING_KEYS.computeIfAbsent (cacheKey, newKey -> hmac (hmac (hmac (hmac (
+                secret.getBytes (StandardCharsets.UTF_8), day), region), service), scopeTerminator));
+    }
+
+    private static byte [] hmac (final byte [] key, final String data) {
+        try {
+            final Mac mac = HMAC_SHA_256.get ();
+            mac.init (new SecretKeySpec (key, "HmacSHA256"));
+            return mac.doFinal (data.getBytes (StandardCharsets.UTF_8));
+        } catch (final InvalidKeyException e) {
+            throw new CurlException (e);
+        }
+    }
+
+    private static byte [] sha256 (final byte [] data) {
+        final MessageDigest digest = SHA_256.get ();
+        digest.reset ();
+        return digest.digest (data);
+    }
+
+    private static String hex (final byte [] bytes) {
+        final char [] hex = new char [bytes.length * 2];
+        for (int i = 0 ; i < bytes.length ; i++) {
+            hex [i * 2] = HEXADECIMAL_DIGITS [(bytes [i] >> 4) & 0xf];
+            hex [i * 2 + 1] = HEXADECIMAL_DIGITS [bytes [i] & 0xf];
+        }
+        return new String (hex);
+    }
+
+    private static String percentDecoded (final String value) {
+        final ByteArrayOutputStream decoded = new ByteArrayOutputStream ();
+        for (int i = 0 ; i < value.length () ; i++) {
+            if (value.charAt (i) == '%' && i + 2 < value.length () &&
+                    Character.digit (value.charAt (i + 1), 16) != -1 && Character.digit (value.charAt (i + 2), 16) != -1) {
+                decoded.write (Integer.parseInt (value.substring (i + 1, i + 3), 16));
+                i += 2;
+            } else {
+                final byte [] bytes = String.valueOf (value.charAt (i)).getBytes (StandardCharsets.UTF_8);
+                decoded.write (bytes, 0, bytes.length);
+            }
+        }
+        return new String (decoded.toByteArray (), StandardCharsets.UTF_8);
+    }
+
+    private static String encoded (final String value) {
+        final StringBuilder encoded = new StringBuilder ();
+        for (final byte oneByte : value.getBytes (StandardCharsets.UTF_8)) {
+            final char c = (char) (oneByte & 0xff);
+            if ((c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') ||
+                    c == '-' || c == '_' || c == '.' || c == '~') {
+                encoded.append (c);
+            } else {
+                encoded.append ('%').append (Character.toUpperCase (HEXADECIMAL_DIGITS [(oneByte >> 4) & 0xf]))
+                        .append (Character.toUpperCase (HEXADECIMAL_DIGITS [oneByte & 0xf]));
+            }
+        }
+        return encoded.toString ();
+    }
+
+    private static String capitalized (final String value) {
+        return value.isEmpty () ? value : value.substring (0, 1).toUpperCase (Locale.ROOT) + value.substring (1).toLowerCase (Locale.ROOT);
+    }
+}
@@ -0,0 +1,142 @@
+package org.toilelibre.libe.curl;
+
+import org.apache.http.conn.*;
+import org.apache.http.impl.conn.*;
+
+import java.net.*;
+import java.security.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Keeps successful resolutions for ttl milliseconds and failed ones for negativeTtl milliseconds.
+ * The default ttls are read from the networkaddress.cache.ttl and networkaddress.cache.negative.ttl
+ * security properties, like the jvm does.
+ * The hosts are resolved once even by concurrent calls, and the least recently used ones are evicted
+ * beyond {@link #DEFAULT_MAX_ENTRIES}.
+ */
+final class CachingDnsResolver implements DnsResolver {
+
+    static final int DEFAULT_MAX_ENTRIES = 1024;
+
+    static final CachingDnsResolver SYSTEM = new CachingDnsResolver (SystemDefaultDnsResolver.INSTANCE);
+
+    private final DnsResolver                                    delegate;
+    private final long                                           ttlInNanos;
+    private final long                                           negativeTtlInNanos;
+    private final int                                            maxEntries;
+    private final LinkedHashMap<String, FutureTask<Resolution>> resolutions = new LinkedHashMap<> (16, 0.75f, true);
+
+    CachingDnsResolver (final DnsResolver delegate) {
+        this (delegate, ttlInSecondsFrom ("networkaddress.cache.ttl", 30) * 1000,
+                ttlInSecondsFrom ("networkaddress.cache.negative.ttl", 10) * 1000);
+    }
+
+    CachingDnsResolver (final DnsResolver delegate, final long ttlInMillis, final long negativeTtlInMillis) {
+        this (delegate, ttlInMillis, negativeTtlInMillis, DEFAULT_MAX_ENTRIES);
+    }
+
+    CachingDnsResolver (final DnsResolver delegate, final long ttlInMillis, final long negativeTtlInMillis,
+                        final int maxEntries) {
+        this.delegate = delegate;
+        this.ttlInNanos = TimeUnit.MILLISECONDS.toNanos (ttlInMillis);
+        this.negativeTtlInNanos = TimeUnit.MILLISECONDS.toNanos (negativeTtlInMillis);
+        this.maxEntries = maxEntries;
+    }
+
+    @Override
+    public InetAddress [] resolve (final String host) throws UnknownHostException {
+        final String key = host.toLowerCase (Locale.ROOT);
+        final long now = System.nanoTime ();
+        final FutureTask<Resolution> task;
+        final boolean created;
+        synchronized (this.resolutions) {
+            final FutureTask<Resolution> existingTask = this.resolutions.get (key);
+            created = existingTask == null || isExpired (existingTask, now);
+            task = created ? new FutureTask<> (() -> this.lookup (host, now)) : existingTask;
+            if (created) {
+                this.resolutions.put (key, task);
+                final Iterator<FutureTask<Resolution>> eldest = this.resolutions.values ().iterator ();
+                while (this.resolutions.size () > this.maxEntries && eldest.hasNext ()) {
+                    eldest.next ();
+                    eldest.remove ();
+                }
+            }
+        }
+        if (created) {
+            task.run ();
+        }
+        final Resolution resolution = this.resultOf (key, task);
+        if (resolution.addresses == null) {
+            throw new UnknownHostException (resolution.failure);
+        }
+        return resolution.addresses.clone ();
+    }
+
+    int size () {
+        synchronized (this.resolutions) {
+            return this.resolutions.size ();
+        }
+    }
+
+    /**
+     * A failure is kept as a resolution, already expired when there is no negative ttl.
+     */
+    private Resolution lookup (final String host, final long now) {
+        try {
+            return new Resolution (this.delegate.resolve (host), null, now + this.ttlInNanos);
+        } catch (final UnknownHostException e) {
+            return new Resolution (null, e.getMessage (), now + Math.max (this.negativeTtlInNanos, 0));
+        }
+    }
+
+    private Resolution resultOf (final String key, final FutureTask<Resolution> task) {
+        try {
+            return task.get ();
+        } catch (final ExecutionException e) {
+            synchronized (this.resolutions) {
+                this.resolutions.remove (key, task);
+            }
+            throw e.getCause () instanceof RuntimeException ? (RuntimeException) e.getCause () : new Curl.CurlException (e.getCause ());
+        } catch (final InterruptedException e) {
+            Thread.currentThread ().interrupt ();
+            throw new Curl.CurlException (e);
+        }
+    }
+
+    /**
+     * The resolutions in progress are shared, whatever their age.
+     */
+    private static boolean isExpired (final FutureTask<Resolution> task, final long now) {
+        if (!task.isDone ()) {
+            return false;
+        }
+        try {
+            return task.get ().expiresAt - now <= 0;
+        } catch (final ExecutionException | InterruptedException | CancellationException e) {
+            return true;
+        }
+    }
+
+    private static long ttlInSecondsFrom (final String securityProperty, final long defaultValue) {
+        try {
+            final String value = Security.getProperty (securityProperty);
+            final long ttl = value == null ? defaultValue : Long.parseLong (value.trim ());
+            return ttl < 0 ? TimeUnit.DAYS.toSeconds (365) : ttl;
+        } catch (final NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    private static class Resolution {
+        private final InetAddress [] addresses;
+        private final String         failure;
+        private final long           expiresAt;
+
+        Resolution (final InetAddress [] addresses, final String failure, final long expiresAt) {
+            this.addresses = addresses;
+            this.failure = failure;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -9,25 +9,19 @@ import java.security.*;
 import java.security.cert.*;
 import java.security.spec.*;
 import java.util.*;
-import java.util.logging.*;
 
 enum CertFormat {
 
     DER ( (kind, content, passwordAsCharArray) -> {
         try {
             if (kind == Kind.CERTIFICATE) {
-                final CertificateFactory certificateFactory = CertificateFactory.getInstance ("X.509");
-                return Collections.singletonList (certificateFactory.generateCertificate (new ByteArrayInputStream (content)));
+                return Collections.singletonList (CertFormat.certificateFactory ().generateCertificate (new ByteArrayInputStream (content)));
             }
             if (kind == Kind.PRIVATE_KEY) {
-                final DerReader derReader = new DerReader (content);
-                final Asn1Object asn1 = derReader.read ();
-                final KeyFactory keyFactory = KeyFactory.getInstance ("RSA");
-                final KeySpec keySpec = asn1.getKeySpec ();
-                return Collections.singletonList (keyFactory.generatePrivate (keySpec));
+                return Collections.singletonList (CertFormat.privateKeyOf (content));
             }
             return null;
-        } catch (CertificateException | NoSuchAlgorithmException | InvalidKeySpecException | IOException e) {
+        } catch (GeneralSecurityException | IOException e) {
             throw new CurlException (e);
         }
     }), ENG ( (content, kind, passwordAsCharArray) -> {
@@ -49,46 +43,53 @@ enum CertFormat {
             throw new CurlException (e);
         }
     }), PEM ( (kind, content, passwordAsCharArray) -> {
-        PemReader pemReader = null;
         final List<Object> result = new ArrayList<> ();
         try {
-            pemReader = new PemReader (new InputStreamReader (new ByteArrayInputStream (content)));
-            PKCS8EncodedKeySpec privateKeySpec = null;
+            final PemReader pemReader = new PemReader (content);
             PemObject pemObject;
             while ((pemObject = pemReader.readPemObject ()) != null) {
                 final Kind readKind = Kind.fromValue (pemObject.getType ());
                 if (kind != readKind) {
                     continue;
                 }
+                if (pemObject.isEncrypted () || pemObject.getType ().toUpperCase ().startsWith ("ENCRYPTED")) {
+                    throw new CurlException (new IOException ("the encrypted PEM objects (" + pemObject.getType () +
+                            ") are not supported, a PKCS#8 or P12 file is expected"));
+                }
                 switch (kind) {
                     case PRIVATE_KEY :
-                        privateKeySpec = new PKCS8EncodedKeySpec (pemObject.getContent ());
-                        final KeyFactory keyFactory = KeyFactory.getInstance ("RSA");
-                        result.add (keyFactory.generatePrivate (privateKeySpec));
+                        result.add (CertFormat.privateKeyOf (pemObject.getContent ()));
                         break;
                     case CERTIFICATE :
-                        final CertificateFactory certificateFactory = CertificateFactory.getInstance ("X.509");
-                        result.add (certificateFactory.generateCertificate (new ByteArrayInputStream (pemObject.getContent ())));
+                        result.add (CertFormat.certificateFactory ().generateCertificate (new ByteArrayInputStream (pemObject.getContent ())));
                         break;
                     default:
                         break;
                 }
             }
             return result;
-        } catch (NoSuchAlgorithmException | CertificateException | IOException | InvalidKeySpecException e) {
+        } catch (GeneralSecurityException | IOException e) {
             throw new CurlException (e);
-        } finally {
-            if (pemReader != null) {
-                try {
-                    pemReader.close ();
-                } catch (final IOException e) {
-                    logProblemWithPemReader (e);
-                }
-            }
         }
     });
 
-    private static Logger LOGGER = Logger.getLogger (AfterResponse.class.getName ());
+    private static final String                                RSA_ENCRYPTION  = "1.2.840.113549.1.1.1";
+    private static final String                                EC_PUBLIC_KEY   = "1.2.840.10045.2.1";
+    private static final Map<String, String>                   KEY_ALGORITHMS  = new HashMap<> ();
+    private static final ThreadLocal<Map<String, KeyFactory>>  KEY_FACTORIES   = ThreadLocal.withInitial (HashMap::new);
+    private static final ThreadLocal<CertificateFactory>       CERTIFICATE_FACTORIES = new ThreadLocal<> ();
+
+    static {
+        KEY_ALGORITHMS.put (RSA_ENCRYPTION, "RSA");
+        KEY_ALGORITHMS.put ("1.2.840.113549.1.1.10", "RSASSA-PSS");
+        KEY_ALGORITHMS.put (EC_PUBLIC_KEY, "EC");
+        KEY_ALGORITHMS.put ("1.2.840.10040.4.1", "DSA");
+        KEY_ALGORITHMS.put ("1.3.101.110", "X25519");
+        KEY_ALGORITHMS.put ("1.3.101.111", "X448");
+        KEY_ALGORITHMS.put ("1.3.101.112", "Ed25519");
+        KEY_ALGORITHMS.put ("1.3.101.113", "Ed448");
+    }
+
     private KeystoreFromFileGenerator generator;
 
     CertFormat (final KeystoreFromFileGenerator generator1) {
@@ -100,8 +101,96 @@ enum CertFormat {
         return (List<T>) this.generator.generate (kind, content, passwordAsCharArray);
     }
 
-    private static void logProblemWithPemReader (IOException e) {
-        LOGGER.log (Level.WARNING, "Problem with PEM reader", e);
+    /**
+     * Reads a PKCS#8 key (RSA, EC, Ed25519...), a PKCS#1 RSA key or a SEC 1 EC key, whatever the PEM type says.
+     */
+    static PrivateKey privateKeyOf (final byte [] der) throws GeneralSecurityException, IOException {
+        final DerReader fields = new DerReader (der).read ().getReader ();
+        fields.read ();
+        final Asn1Object second = fields.read ();
+        if (second.getType () == DerReader.SEQUENCE) {
+            final String algorithmIdentifier = second.getReader ().read ().getObjectIdentifier ();
+            final String algorithm = KEY_ALGORITHMS.get (algorithmIdentifier);
+            if (algorithm == null) {
+                throw new NoSuchAlgorithmException ("unknown private key algorithm " + algorithmIdentifier);
+            }
+            return keyFactory (algorithm).generatePrivate (new PKCS8EncodedKeySpec (der));
+        }
+        if (second.getType () == DerReader.OCTET_STRING) {
+            return keyFactory ("EC").generatePrivate (new PKCS8EncodedKeySpec (pkcs8OfSec1 (der, fields)));
+        }
+        return keyFactory ("RSA").generatePrivate (new DerReader (der).read ().getKeySpec ());
+    }
+
+    /**
+     * Wraps a SEC 1 key (RFC 5915) in a PKCS#8 structure, with the curve of its parameters.
+     */
+    private static byte [] pkcs8OfSec1 (final byte [] sec1, final DerReader remainingFields) throws IOException {
+        while (remainingFields.hasMore ()) {
+            final Asn1Object field = remainingFields.read ();
+            if (field.getTag () == 0xA0) {
+                final byte [] algorithm = der (DerReader.CONSTRUCTED | DerReader.SEQUENCE,
+                        der (DerReader.OBJECT_IDENTIFIER, objectIdentifierOf (EC_PUBLIC_KEY)), field.getValue ());
+                return der (DerReader.CONSTRUCTED | DerReader.SEQUENCE, der (DerReader.INTEGER, new byte [] {0}), algorithm,
+                        der (DerReader.OCTET_STRING, sec1));
+            }
+        }
+        throw new IOException ("the curve of the EC private key is missing");
+    }
+
+    private static byte [] der (final int tag, final byte []... values) {
+        final ByteArrayOutputStream value = new ByteArrayOutputStream ();
+        for (final byte [] part : values) {
+            value.write (part, 0, part.length);
+        }
+        final ByteArrayOutputStream result = new ByteArrayOutputStream ();
+        result.write (tag);
+        if (value.size () < 0x80) {
+            result.write (value.size ());
+        } else {
+            final int lengthBytes = (32 - Integer.numberOfLeadingZeros (value.size ()) + 7) / 8;
+            result.write (0x80 | lengthBytes);
+            for (int shift = (lengthBytes - 1) * 8 ; shift >= 0 ; shift -= 8) {
+                result.write ((value.size () >> shift) & 0xFF);
+            }
+        }
+        result.write (value.toByteArray (), 0, value.size ());
+        return result.toByteArray ();
+    }
+
+    private static byte [] objectIdentifierOf (final String objectIdentifier) {
+        final String [] arcs = objectIdentifier.split ("\\.");
+        final ByteArrayOutputStream result = new ByteArrayOutputStream ();
+        for (int i = 1 ; i < arcs.length ; i++) {
+            final long arc = i == 1 ? Long.parseLong (arcs [0]) * 40 + Long.parseLong (arcs [1]) : Long.parseLong (arcs [i]);
+            for (int shift = (63 - Long.numberOfLeadingZeros (Math.max (arc, 1))) / 7 * 7 ; shift > 0 ; shift -= 7) {
+                result.write ((int) (0x80 | ((arc >> shift) & 0x7F)));
+            }
+            result.write ((int) (arc & 0x7F));
+        }
+        return result.toByteArray ();
+    }
+
+    /**
+     * The factories are looked up once per thread (their instances are not meant to be shared).
+     */
+    private static KeyFactory keyFactory (final String algorithm) throws NoSuchAlgorithmException {
+        final Map<String, KeyFactory> keyFactories = KEY_FACTORIES.get ();
+        KeyFactory keyFactory = keyFactories.get (algorithm);
+        if (keyFactory == null) {
+            keyFactory = KeyFactory.getInstance (algorithm);
+            keyFactories.put (algorithm, keyFactory);
+        }
+        return keyFactory;
+    }
+
+    private static CertificateFactory certificateFactory () throws CertificateException {
+        CertificateFactory certificateFactory = CERTIFICATE_FACTORIES.get ();
+        if (certificateFactory == null) {
+            certificateFactory = CertificateFactory.getInstance ("X.509");
+            CERTIFICATE_FACTORIES.set (certificateFactory);
+        }
+        return certificateFactory;
     }
 
     @FunctionalInterface
@@ -112,11 +201,15 @@ enum CertFormat {
     enum Kind {
         CERTIFICATE, PRIVATE_KEY;
         static Kind fromValue (final String value) {
-            try {
-                return Kind.valueOf (value.toUpperCase ().replace (' ', '_'));
-            } catch (final IllegalArgumentException iae) {
-                return null;
+            final String upperCaseValue = value.toUpperCase ();
+            if (upperCaseValue.equals ("CERTIFICATE") || upperCaseValue.equals ("X509 CERTIFICATE")) {
+                return CERTIFICATE;
+            }
+            if (upperCaseValue.equals ("PRIVATE KEY") || upperCaseValue.equals ("RSA PRIVATE KEY") ||
+                    upperCaseValue.equals ("EC PRIVATE KEY") || upperCaseValue.equals ("ENCRYPTED PRIVATE KEY")) {
+                return PRIVATE_KEY;
             }
+            return null;
         }
     }
 
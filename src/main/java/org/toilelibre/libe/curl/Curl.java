@@ -1,10 +1,13 @@
 package org.toilelibre.libe.curl;
 
-import org.apache.commons.cli.*;
 import org.apache.http.*;
+import org.apache.http.client.methods.*;
 import org.apache.http.conn.*;
 
+import javax.net.ssl.*;
 import java.io.*;
+import java.security.*;
+import java.time.*;
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.function.*;
@@ -17,16 +20,20 @@ public final class Curl {
     private Curl () {
     }
 
+    /**
+     * java -jar curl.jar [options] url : the body is written to the standard output,
+     * and the exit code is the one curl would return (see {@link StandaloneRunner}).
+     */
+    public static void main (final String [] args) {
+        System.exit (StandaloneRunner.run (args, new FileOutputStream (FileDescriptor.out), System.err));
+    }
+
     public static String $ (final String requestCommand) throws CurlException {
         return $ (requestCommand, with ().build ());
     }
 
     public static String $ (final String requestCommand, CurlArgumentsBuilder.CurlJavaOptions curlJavaOptions) throws CurlException {
-        try {
-            return IOUtils.quietToString (Curl.curl (requestCommand, curlJavaOptions).getEntity ());
-        } catch (final UnsupportedOperationException e) {
-            throw new CurlException (e);
-        }
+        return bodyOf (() -> Curl.curl (requestCommand, curlJavaOptions));
     }
 
     public static CompletableFuture<String> $Async (final String requestCommand) throws CurlException {
@@ -38,6 +45,14 @@ public final class Curl {
         return Curl.curlAsync (requestCommand, curlJavaOptions).thenApply ((httpResponse) -> IOUtils.quietToString (httpResponse.getEntity ()));
     }
 
+    private static String bodyOf (final Supplier<HttpResponse> call) throws CurlException {
+        try {
+            return IOUtils.quietToString (call.get ().getEntity ());
+        } catch (final UnsupportedOperationException e) {
+            throw new CurlException (e);
+        }
+    }
+
     public static CurlArgumentsBuilder curl () {
         return new CurlArgumentsBuilder ();
     }
@@ -64,20 +79,51 @@ public final class Curl {
     public static HttpResponse curl (final String requestCommand,
                                      CurlArgumentsBuilder.CurlJavaOptions curlJavaOptions) throws CurlException {
         try {
-            final CommandLine commandLine = ReadArguments.getCommandLineFromRequest (requestCommand,
-                    curlJavaOptions.getPlaceHolders ());
+            return curl (ReadArguments.getCommandLineFromRequest (requestCommand, curlJavaOptions.getPlaceHolders ()),
+                    curlJavaOptions);
+        } catch (final IllegalArgumentException e) {
+            throw new CurlException (e);
+        }
+    }
+
+    static HttpResponse curl (final ParsedCommand commandLine,
+                              final CurlArgumentsBuilder.CurlJavaOptions curlJavaOptions) throws CurlException {
+        try {
             stopAndDisplayVersionIfThe (commandLine.hasOption (Arguments.VERSION.getOpt ()));
+            final HttpUriRequest request = HttpRequestProvider.prepareRequest (commandLine);
             final HttpResponse response =
-                    HttpClientProvider.prepareHttpClient (commandLine, curlJavaOptions.getInterceptors (),
-                            curlJavaOptions.getConnectionManager ()).execute (
-                            HttpRequestProvider.prepareRequest (commandLine));
+                    curlJavaOptions.isCoalescingIdenticalRequests () && RequestsCoalescer.canCoalesce (commandLine, request, curlJavaOptions) ?
+                            RequestsCoalescer.coalesce (RequestsCoalescer.signatureOf (commandLine, curlJavaOptions),
+                                    () -> execute (commandLine, curlJavaOptions, request)) :
+                            execute (commandLine, curlJavaOptions, request);
             AfterResponse.handle (commandLine, response);
             return response;
-        } catch (final IOException | IllegalArgumentException e) {
+        } catch (final IllegalArgumentException e) {
+            throw new CurlException (e);
+        }
+    }
+
+    private static HttpResponse execute (final ParsedCommand commandLine,
+                                         final CurlArgumentsBuilder.CurlJavaOptions curlJavaOptions,
+                                         final HttpUriRequest request) {
+        try {
+            return HttpClientProvider.prepareHttpClient (commandLine, curlJavaOptions).execute (request,
+                    AuthMethodHandler.prepareContext (commandLine));
+        } catch (final IOException e) {
             throw new CurlException (e);
         }
     }
 
+    /**
+     * Makes an interceptor usable by --interceptor under this name (for example "com.company.Interceptors::audit"),
+     * without any reflection : this is how --interceptor works in a native image.
+     * @param interceptor null to unregister the name
+     */
+    public static void registerInterceptor (final String name,
+                                            final BiFunction<HttpRequest, Supplier<HttpResponse>, HttpResponse> interceptor) {
+        InterceptorsBinder.register (name, interceptor);
+    }
+
     public static String getVersion () {
         return Version.NUMBER;
     }
@@ -86,20 +132,44 @@ public final class Curl {
         return Version.NUMBER + " (Build time : " + Version.BUILD_TIME + ")";
     }
 
-    public static class CurlArgumentsBuilder {
+    /**
+     * Immutable : each option method returns a new builder, so that a builder can be shared as a template.
+     * The options are given to the request model as is, without any quoting or parsing.
+     */
+    public static class CurlArgumentsBuilder extends CurlArgumentsBuilderOptions {
 
-        private final StringBuilder curlCommand = new StringBuilder ("curl ");
-        private CurlJavaOptions curlJavaOptions = with ().build ();
+        private final OptionValue     lastOption;
+        private final CurlJavaOptions curlJavaOptions;
 
         public static class CurlJavaOptions {
             private final List<BiFunction<HttpRequest, Supplier<HttpResponse>, HttpResponse>> interceptors;
             private final List<String> placeHolders;
             private final HttpClientConnectionManager connectionManager;
+            private final boolean coalescingIdenticalRequests;
+            private final DnsResolver dnsResolver;
+            private final Supplier<BearerToken> bearerTokenProvider;
+            private final int sslSessionCacheSize;
+            private final int sslSessionTimeout;
+            private final KeyStore keyStore;
+            private final char[] keyStorePassword;
+            private final KeyStore trustStore;
+            private final SSLContext sslContext;
+            private final KeyManager keyManager;
 
             private CurlJavaOptions (Builder builder) {
                 interceptors = builder.interceptors;
                 placeHolders = builder.placeHolders;
                 connectionManager = builder.connectionManager;
+                coalescingIdenticalRequests = builder.coalescingIdenticalRequests;
+                dnsResolver = builder.dnsResolver;
+                bearerTokenProvider = builder.bearerTokenProvider;
+                sslSessionCacheSize = builder.sslSessionCacheSize;
+                sslSessionTimeout = builder.sslSessionTimeout;
+                keyStore = builder.keyStore;
+                keyStorePassword = builder.keyStorePassword;
+                trustStore = builder.trustStore;
+                sslContext = builder.sslContext;
+                keyManager = builder.keyManager;
             }
 
             public static Builder with () {
@@ -118,11 +188,82 @@ public final class Curl {
                 return connectionManager;
             }
 
+            public boolean isCoalescingIdenticalRequests () {
+                return coalescingIdenticalRequests;
+            }
+
+            public DnsResolver getDnsResolver () {
+                return dnsResolver;
+            }
+
+            public Supplier<BearerToken> getBearerTokenProvider () {
+                return bearerTokenProvider;
+            }
+
+            public int getSslSessionCacheSize () {
+                return sslSessionCacheSize;
+            }
+
+            public int getSslSessionTimeout () {
+                return sslSessionTimeout;
+            }
+
+            public KeyStore getKeyStore () {
+                return keyStore;
+            }
+
+            public char[] getKeyStorePassword () {
+                return keyStorePassword;
+            }
+
+            public KeyStore getTrustStore () {
+                return trustStore;
+            }
+
+            public SSLContext getSslContext () {
+                return sslContext;
+            }
+
+            public KeyManager getKeyManager () {
+                return keyManager;
+            }
+
+            public static final class BearerToken {
+                private final String value;
+                private final Instant expiresAt;
+
+                /**
+                 * @param expiresAt null if the token never expires
+                 */
+                public BearerToken (String value, Instant expiresAt) {
+                    this.value = value;
+                    this.expiresAt = expiresAt;
+                }
+
+                public String getValue () {
+                    return value;
+                }
+
+                public Instant getExpiresAt () {
+                    return expiresAt;
+                }
+            }
+
             public static final class Builder {
                 private List<BiFunction<HttpRequest, Supplier<HttpResponse>, HttpResponse>> interceptors
                         = new ArrayList<> ();
                 private List<String> placeHolders;
                 private HttpClientConnectionManager connectionManager;
+                private boolean coalescingIdenticalRequests;
+                private DnsResolver dnsResolver;
+                private Supplier<BearerToken> bearerTokenProvider;
+                private int sslSessionCacheSize = -1;
+                private int sslSessionTimeout = -1;
+                private KeyStore keyStore;
+                private char[] keyStorePassword;
+                private KeyStore trustStore;
+                private SSLContext sslContext;
+                private KeyManager keyManager;
 
                 private Builder () {
                 }
@@ -142,6 +283,85 @@ public final class Curl {
                     return this;
                 }
 
+                /**
+                 * Identical GET or HEAD requests running at the same time will share a single call.
+                 * Only the first caller reaches the server, every caller gets a buffered copy of its response.
+                 */
+                public Builder coalesceIdenticalRequests (boolean val) {
+                    coalescingIdenticalRequests = val;
+                    return this;
+                }
+
+                /**
+                 * Replaces the default resolver (the system one, with a ttl cache).
+                 * Not used when a connection manager is given.
+                 */
+                public Builder dnsResolver (DnsResolver val) {
+                    dnsResolver = val;
+                    return this;
+                }
+
+                /**
+                 * Sends 'Authorization: Bearer ...' to the host of the url, unless --oauth2-bearer is used.
+                 * The tokens are kept until shortly before they expire, and renewed in the background
+                 * when they are about to, the concurrent calls share the same renewal.
+                 */
+                public Builder bearerTokenProvider (Supplier<BearerToken> val) {
+                    bearerTokenProvider = RefreshingBearerTokenProvider.of (val);
+                    return this;
+                }
+
+                /**
+                 * Number of TLS sessions kept for resumption (0 for no limit).
+                 * The sessions belong to the SSL context shared by all the commands using the same key and trust material.
+                 */
+                public Builder sslSessionCacheSize (int val) {
+                    sslSessionCacheSize = val;
+                    return this;
+                }
+
+                /**
+                 * Seconds during which a TLS session can be resumed (0 for no limit).
+                 */
+                public Builder sslSessionTimeout (int val) {
+                    sslSessionTimeout = val;
+                    return this;
+                }
+
+                /**
+                 * Client credentials already loaded, used instead of --cert and --key.
+                 * Like the other material objects, they are cached by instance : change them before their first use.
+                 */
+                public Builder keyStore (KeyStore val, char[] password) {
+                    keyStore = val;
+                    keyStorePassword = password;
+                    return this;
+                }
+
+                /**
+                 * Trusted certificates, used instead of the ones of the jvm (unless -k is used).
+                 */
+                public Builder trustStore (KeyStore val) {
+                    trustStore = val;
+                    return this;
+                }
+
+                /**
+                 * Used as is, instead of the context built from the options (-k still skips the hostname verification).
+                 */
+                public Builder sslContext (SSLContext val) {
+                    sslContext = val;
+                    return this;
+                }
+
+                /**
+                 * Chooses the client credentials, instead of --cert, --key and the key store.
+                 */
+                public Builder keyManager (KeyManager val) {
+                    keyManager = val;
+                    return this;
+                }
+
                 public CurlJavaOptions build () {
                     return new CurlJavaOptions (this);
                 }
@@ -149,33 +369,77 @@ public final class Curl {
         }
 
         CurlArgumentsBuilder () {
+            this (null, with ().build ());
         }
 
-        public CurlArgumentsBuilder javaOptions (CurlJavaOptions curlJavaOptions) {
+        private CurlArgumentsBuilder (final OptionValue lastOption, final CurlJavaOptions curlJavaOptions) {
+            this.lastOption = lastOption;
             this.curlJavaOptions = curlJavaOptions;
-            return this;
+        }
+
+        public CurlArgumentsBuilder javaOptions (CurlJavaOptions curlJavaOptions) {
+            return new CurlArgumentsBuilder (this.lastOption, curlJavaOptions);
         }
 
         public String $ (final String url) throws CurlException {
-            this.curlCommand.append (url).append (" ");
-            return Curl.$ (this.curlCommand.toString (), curlJavaOptions);
+            return bodyOf (() -> this.run (url));
         }
 
         public CompletableFuture<String> $Async (final String url) throws CurlException {
-            this.curlCommand.append (url).append (" ");
-            return Curl.$Async (this.curlCommand.toString (), curlJavaOptions);
+            return this.runAsync (url).thenApply ((httpResponse) -> IOUtils.quietToString (httpResponse.getEntity ()));
         }
 
         public HttpResponse run (final String url) throws CurlException {
-            this.curlCommand.append (url).append (" ");
-            return Curl.curl (this.curlCommand.toString (), curlJavaOptions);
+            return Curl.curl (this.commandLineOf (url), this.curlJavaOptions);
         }
 
         public CompletableFuture<HttpResponse> runAsync (final String url) throws CurlException {
-            this.curlCommand.append (url).append (" ");
-            return Curl.curlAsync (this.curlCommand.toString (), curlJavaOptions);
+            final ParsedCommand commandLine = this.commandLineOf (url);
+            return CompletableFuture.supplyAsync (() -> Curl.curl (commandLine, this.curlJavaOptions));
+        }
+
+        /**
+         * Called by the option methods of {@link CurlArgumentsBuilderOptions}, generated from {@link Arguments}.
+         * @param value null for the options without argument
+         */
+        @Override
+        CurlArgumentsBuilder option (final String name, final String value) {
+            final int index = OptionsTable.indexOf (name);
+            if (index == -1) {
+                throw new CurlException (new IllegalArgumentException ("option --" + name + ": is unknown"));
+            }
+            return new CurlArgumentsBuilder (new OptionValue (this.lastOption, index, value), this.curlJavaOptions);
+        }
+
+        ParsedCommand commandLineOf (final String url) {
+            final List<String> placeHolders = this.curlJavaOptions.getPlaceHolders ();
+            final String [][] values = new String [OptionsTable.OPTIONS.length] [];
+            final Deque<OptionValue> options = new ArrayDeque<> ();
+            for (OptionValue option = this.lastOption ; option != null ; option = option.previous) {
+                options.push (option);
+            }
+            for (final OptionValue option : options) {
+                if (option.value != null) {
+                    values [option.index] = ParsedCommand.withValue (values [option.index],
+                            ArgumentsTokenizer.withPlaceholders (option.value, placeHolders));
+                } else if (values [option.index] == null) {
+                    values [option.index] = ParsedCommand.NO_VALUES;
+                }
+            }
+            return new ParsedCommand (values, new String [] {ArgumentsTokenizer.withPlaceholders (url, placeHolders)});
         }
 
+        private static final class OptionValue {
+            private final OptionValue previous;
+            private final int         index;
+            private final String      value;
+
+            OptionValue (final OptionValue previous, final int index, final String value) {
+                this.previous = previous;
+                this.index = index;
+                this.value = value;
+            }
+        }
     }
 
     public static class CurlException extends RuntimeException {
@@ -0,0 +1,577 @@
+package org.toilelibre.libe.curl;
+
+/**
+ * The option methods of the {@link Curl.CurlArgumentsBuilder}.
+ * Generated from {@link Arguments} by CurlArgumentsBuilderGenerator (src/build/java) at each build, do not edit.
+ */
+abstract class CurlArgumentsBuilderOptions {
+
+    abstract Curl.CurlArgumentsBuilder option (final String name, final String value);
+
+    /**
+     * -u, --username : user:password
+     */
+    public Curl.CurlArgumentsBuilder username (final String value) {
+        return this.option ("u", value);
+    }
+
+    /**
+     * -u, --username : user:password
+     */
+    public Curl.CurlArgumentsBuilder u (final String value) {
+        return this.option ("u", value);
+    }
+
+    /**
+     * -awssigv4, --aws-sigv4 : Use AWS V4 signature authentication (with the -u access key and secret key)
+     */
+    public Curl.CurlArgumentsBuilder awssigv4 (final String value) {
+        return this.option ("awssigv4", value);
+    }
+
+    /**
+     * -basic, --basic : Use HTTP Basic Authentication, sent without waiting for a challenge
+     */
+    public Curl.CurlArgumentsBuilder basic () {
+        return this.option ("basic", null);
+    }
+
+    /**
+     * -cacert, --cacert : CA_CERT
+     */
+    public Curl.CurlArgumentsBuilder cacert (final String value) {
+        return this.option ("cacert", value);
+    }
+
+    /**
+     * -capath, --capath : CA_PATH
+     */
+    public Curl.CurlArgumentsBuilder capath (final String value) {
+        return this.option ("capath", value);
+    }
+
+    /**
+     * -E, --cert : CERT[:password]
+     */
+    public Curl.CurlArgumentsBuilder cert (final String value) {
+        return this.option ("E", value);
+    }
+
+    /**
+     * -E, --cert : CERT[:password]
+     */
+    public Curl.CurlArgumentsBuilder eUpperCase (final String value) {
+        return this.option ("E", value);
+    }
+
+    /**
+     * -ct, --cert-type : PEM|P12|JKS|DER|ENG
+     */
+    public Curl.CurlArgumentsBuilder certtype (final String value) {
+        return this.option ("ct", value);
+    }
+
+    /**
+     * -ct, --cert-type : PEM|P12|JKS|DER|ENG
+     */
+    public Curl.CurlArgumentsBuilder ct (final String value) {
+        return this.option ("ct", value);
+    }
+
+    /**
+     * -compressed, --compressed : Request compressed response
+     */
+    public Curl.CurlArgumentsBuilder compressed () {
+        return this.option ("compressed", null);
+    }
+
+    /**
+     * -cti, --connect-timeout : Maximum time allowed for connection
+     */
+    public Curl.CurlArgumentsBuilder connecttimeout (final String value) {
+        return this.option ("cti", value);
+    }
+
+    /**
+     * -cti, --connect-timeout : Maximum time allowed for connection
+     */
+    public Curl.CurlArgumentsBuilder cti (final String value) {
+        return this.option ("cti", value);
+    }
+
+    /**
+     * -connectto, --connect-to : Connect to host
+     */
+    public Curl.CurlArgumentsBuilder connectto (final String value) {
+        return this.option ("connectto", value);
+    }
+
+    /**
+     * -d, --data : Data
+     */
+    public Curl.CurlArgumentsBuilder data (final String value) {
+        return this.option ("d", value);
+    }
+
+    /**
+     * -d, --data : Data
+     */
+    public Curl.CurlArgumentsBuilder d (final String value) {
+        return this.option ("d", value);
+    }
+
+    /**
+     * -databinary, --data-binary : http post binary data
+     */
+    public Curl.CurlArgumentsBuilder databinary (final String value) {
+        return this.option ("databinary", value);
+    }
+
+    /**
+     * -dataurlencode, --data-urlencode : Data to URLEncode
+     */
+    public Curl.CurlArgumentsBuilder dataurlencode (final String value) {
+        return this.option ("dataurlencode", value);
+    }
+
+    /**
+     * -digest, --digest : Use HTTP Digest Authentication
+     */
+    public Curl.CurlArgumentsBuilder digest () {
+        return this.option ("digest", null);
+    }
+
+    /**
+     * -dnsservers, --dns-servers : DNS server addrs to use
+     */
+    public Curl.CurlArgumentsBuilder dnsservers (final String value) {
+        return this.option ("dnsservers", value);
+    }
+
+    /**
+     * -etagcompare, --etag-compare : Pass an ETag from a file as a custom header
+     */
+    public Curl.CurlArgumentsBuilder etagcompare (final String value) {
+        return this.option ("etagcompare", value);
+    }
+
+    /**
+     * -etagsave, --etag-save : Parse ETag from a request and save it to a file
+     */
+    public Curl.CurlArgumentsBuilder etagsave (final String value) {
+        return this.option ("etagsave", value);
+    }
+
+    /**
+     * -f, --fail : Fail fast with no output on HTTP errors (22 as exit code)
+     */
+    public Curl.CurlArgumentsBuilder fail () {
+        return this.option ("f", null);
+    }
+
+    /**
+     * -f, --fail : Fail fast with no output on HTTP errors (22 as exit code)
+     */
+    public Curl.CurlArgumentsBuilder f () {
+        return this.option ("f", null);
+    }
+
+    /**
+     * -L, --location : follow redirects
+     */
+    public Curl.CurlArgumentsBuilder location () {
+        return this.option ("L", null);
+    }
+
+    /**
+     * -L, --location : follow redirects
+     */
+    public Curl.CurlArgumentsBuilder lUpperCase () {
+        return this.option ("L", null);
+    }
+
+    /**
+     * -F, --form : http multipart post data
+     */
+    public Curl.CurlArgumentsBuilder form (final String value) {
+        return this.option ("F", value);
+    }
+
+    /**
+     * -F, --form : http multipart post data
+     */
+    public Curl.CurlArgumentsBuilder fUpperCase (final String value) {
+        return this.option ("F", value);
+    }
+
+    /**
+     * -H, --header : Header
+     */
+    public Curl.CurlArgumentsBuilder header (final String value) {
+        return this.option ("H", value);
+    }
+
+    /**
+     * -H, --header : Header
+     */
+    public Curl.CurlArgumentsBuilder hUpperCase (final String value) {
+        return this.option ("H", value);
+    }
+
+    /**
+     * -X, --request : Http Method
+     */
+    public Curl.CurlArgumentsBuilder request (final String value) {
+        return this.option ("X", value);
+    }
+
+    /**
+     * -X, --request : Http Method
+     */
+    public Curl.CurlArgumentsBuilder xUpperCase (final String value) {
+        return this.option ("X", value);
+    }
+
+    /**
+     * -key, --key : KEY
+     */
+    public Curl.CurlArgumentsBuilder key (final String value) {
+        return this.option ("key", value);
+    }
+
+    /**
+     * -kt, --key-type : PEM|P12|JKS|DER|ENG
+     */
+    public Curl.CurlArgumentsBuilder keytype (final String value) {
+        return this.option ("kt", value);
+    }
+
+    /**
+     * -kt, --key-type : PEM|P12|JKS|DER|ENG
+     */
+    public Curl.CurlArgumentsBuilder kt (final String value) {
+        return this.option ("kt", value);
+    }
+
+    /**
+     * -keepalivetime, --keepalive-time : Interval time for keepalive probes
+     */
+    public Curl.CurlArgumentsBuilder keepalivetime (final String value) {
+        return this.option ("keepalivetime", value);
+    }
+
+    /**
+     * -linger, --linger : Linger on close for this many seconds (SO_LINGER)
+     */
+    public Curl.CurlArgumentsBuilder linger (final String value) {
+        return this.option ("linger", value);
+    }
+
+    /**
+     * -m, --max-time : Maximum time allowed for the transfer
+     */
+    public Curl.CurlArgumentsBuilder maxtime (final String value) {
+        return this.option ("m", value);
+    }
+
+    /**
+     * -m, --max-time : Maximum time allowed for the transfer
+     */
+    public Curl.CurlArgumentsBuilder m (final String value) {
+        return this.option ("m", value);
+    }
+
+    /**
+     * -nokeepalive, --no-keepalive : Disable TCP keepalive on the connection
+     */
+    public Curl.CurlArgumentsBuilder nokeepalive () {
+        return this.option ("nokeepalive", null);
+    }
+
+    /**
+     * -notcpnodelay, --no-tcp-nodelay : Enable the Nagle algorithm (TCP_NODELAY off)
+     */
+    public Curl.CurlArgumentsBuilder notcpnodelay () {
+        return this.option ("notcpnodelay", null);
+    }
+
+    /**
+     * -ntlm, --ntlm : NTLM auth
+     */
+    public Curl.CurlArgumentsBuilder ntlm () {
+        return this.option ("ntlm", null);
+    }
+
+    /**
+     * -oauth2bearer, --oauth2-bearer : OAuth 2 Bearer Token
+     */
+    public Curl.CurlArgumentsBuilder oauth2bearer (final String value) {
+        return this.option ("oauth2bearer", value);
+    }
+
+    /**
+     * -o, --output : write to file
+     */
+    public Curl.CurlArgumentsBuilder output (final String value) {
+        return this.option ("o", value);
+    }
+
+    /**
+     * -o, --output : write to file
+     */
+    public Curl.CurlArgumentsBuilder o (final String value) {
+        return this.option ("o", value);
+    }
+
+    /**
+     * -x, --proxy : use the specified HTTP proxy
+     */
+    public Curl.CurlArgumentsBuilder proxy (final String value) {
+        return this.option ("x", value);
+    }
+
+    /**
+     * -x, --proxy : use the specified HTTP proxy
+     */
+    public Curl.CurlArgumentsBuilder x (final String value) {
+        return this.option ("x", value);
+    }
+
+    /**
+     * -U, --proxy-user : authentication for proxy
+     */
+    public Curl.CurlArgumentsBuilder proxyuser (final String value) {
+        return this.option ("U", value);
+    }
+
+    /**
+     * -U, --proxy-user : authentication for proxy
+     */
+    public Curl.CurlArgumentsBuilder uUpperCase (final String value) {
+        return this.option ("U", value);
+    }
+
+    /**
+     * -rcvbuf, --rcvbuf : Size of the socket receive buffer (SO_RCVBUF)
+     */
+    public Curl.CurlArgumentsBuilder rcvbuf (final String value) {
+        return this.option ("rcvbuf", value);
+    }
+
+    /**
+     * -resolve, --resolve : Resolve the host+port to this address
+     */
+    public Curl.CurlArgumentsBuilder resolve (final String value) {
+        return this.option ("resolve", value);
+    }
+
+    /**
+     * -sndbuf, --sndbuf : Size of the socket send buffer (SO_SNDBUF)
+     */
+    public Curl.CurlArgumentsBuilder sndbuf (final String value) {
+        return this.option ("sndbuf", value);
+    }
+
+    /**
+     * -tcpnodelay, --tcp-nodelay : Use the TCP_NODELAY option (default)
+     */
+    public Curl.CurlArgumentsBuilder tcpnodelay () {
+        return this.option ("tcpnodelay", null);
+    }
+
+    /**
+     * -z, --time-cond : Transfer based on a time condition
+     */
+    public Curl.CurlArgumentsBuilder timecond (final String value) {
+        return this.option ("z", value);
+    }
+
+    /**
+     * -z, --time-cond : Transfer based on a time condition
+     */
+    public Curl.CurlArgumentsBuilder z (final String value) {
+        return this.option ("z", value);
+    }
+
+    /**
+     * -1, --tlsv1 : use &gt;= TLSv1 (SSL)
+     */
+    public Curl.CurlArgumentsBuilder tlsv1 () {
+        return this.option ("1", null);
+    }
+
+    /**
+     * -1, --tlsv1 : use &gt;= TLSv1 (SSL)
+     */
+    public Curl.CurlArgumentsBuilder one () {
+        return this.option ("1", null);
+    }
+
+    /**
+     * -tlsv10, --tlsv1.0 : use TLSv1.0 (SSL)
+     */
+    public Curl.CurlArgumentsBuilder tlsv1zero () {
+        return this.option ("tlsv10", null);
+    }
+
+    /**
+     * -tlsv10, --tlsv1.0 : use TLSv1.0 (SSL)
+     */
+    public Curl.CurlArgumentsBuilder tlsv10 () {
+        return this.option ("tlsv10", null);
+    }
+
+    /**
+     * -tlsv11, --tlsv1.1 : use TLSv1.1 (SSL)
+     */
+    public Curl.CurlArgumentsBuilder tlsv1one () {
+        return this.option ("tlsv11", null);
+    }
+
+    /**
+     * -tlsv11, --tlsv1.1 : use TLSv1.1 (SSL)
+     */
+    public Curl.CurlArgumentsBuilder tlsv11 () {
+        return this.option ("tlsv11", null);
+    }
+
+    /**
+     * -tlsv12, --tlsv1.2 : use TLSv1.2 (SSL)
+     */
+    public Curl.CurlArgumentsBuilder tlsv1two () {
+        return this.option ("tlsv12", null);
+    }
+
+    /**
+     * -tlsv12, --tlsv1.2 : use TLSv1.2 (SSL)
+     */
+    public Curl.CurlArgumentsBuilder tlsv12 () {
+        return this.option ("tlsv12", null);
+    }
+
+    /**
+     * -2, --sslv2 : use SSLv2 (SSL)
+     */
+    public Curl.CurlArgumentsBuilder sslv2 () {
+        return this.option ("2", null);
+    }
+
+    /**
+     * -2, --sslv2 : use SSLv2 (SSL)
+     */
+    public Curl.CurlArgumentsBuilder two () {
+        return this.option ("2", null);
+    }
+
+    /**
+     * -3, --sslv3 : use SSLv3 (SSL)
+     */
+    public Curl.CurlArgumentsBuilder sslv3 () {
+        return this.option ("3", null);
+    }
+
+    /**
+     * -3, --sslv3 : use SSLv3 (SSL)
+     */
+    public Curl.CurlArgumentsBuilder three () {
+        return this.option ("3", null);
+    }
+
+    /**
+     * -k, --insecure : trust insecure
+     */
+    public Curl.CurlArgumentsBuilder insecure () {
+        return this.option ("k", null);
+    }
+
+    /**
+     * -k, --insecure : trust insecure
+     */
+    public Curl.CurlArgumentsBuilder k () {
+        return this.option ("k", null);
+    }
+
+    /**
+     * -unixsocket, --unix-socket : Connect through this Unix domain socket
+     */
+    public Curl.CurlArgumentsBuilder unixsocket (final String value) {
+        return this.option ("unixsocket", value);
+    }
+
+    /**
+     * -A, --user-agent : user agent
+     */
+    public Curl.CurlArgumentsBuilder useragent (final String value) {
+        return this.option ("A", value);
+    }
+
+    /**
+     * -A, --user-agent : user agent
+     */
+    public Curl.CurlArgumentsBuilder aUpperCase (final String value) {
+        return this.option ("A", value);
+    }
+
+    /**
+     * -V, --version : get the version of this library
+     */
+    public Curl.CurlArgumentsBuilder version () {
+        return this.option ("V", null);
+    }
+
+    /**
+     * -V, --version : get the version of this library
+     */
+    public Curl.CurlArgumentsBuilder vUpperCase () {
+        return this.option ("V", null);
+    }
+
+    /**
+     * -4, --ipv4 : Resolve names to IPv4 addresses
+     */
+    public Curl.CurlArgumentsBuilder ipv4 () {
+        return this.option ("4", null);
+    }
+
+    /**
+     * -4, --ipv4 : Resolve names to IPv4 addresses
+     */
+    public Curl.CurlArgumentsBuilder four () {
+        return this.option ("4", null);
+    }
+
+    /**
+     * -6, --ipv6 : Resolve names to IPv6 addresses
+     */
+    public Curl.CurlArgumentsBuilder ipv6 () {
+        return this.option ("6", null);
+    }
+
+    /**
+     * -6, --ipv6 : Resolve names to IPv6 addresses
+     */
+    public Curl.CurlArgumentsBuilder six () {
+        return this.option ("6", null);
+    }
+
+    /**
+     * -interface, --interface : Use network INTERFACE (or address), a comma separated list is used round-robin
+     */
+    public Curl.CurlArgumentsBuilder interfaceOption (final String value) {
+        return this.option ("interface", value);
+    }
+
+    /**
+     * -localport, --local-port : Force use of RANGE for local port numbers
+     */
+    public Curl.CurlArgumentsBuilder localport (final String value) {
+        return this.option ("localport", value);
+    }
+
+    /**
+     * -interceptor, --interceptor : interceptor field or method (syntax is classname::fieldname). Must be a BiFunction&lt;HttpRequest, Supplier&lt; HttpResponse&gt;, HttpResponse&gt; or will be discarded
+     */
+    public Curl.CurlArgumentsBuilder interceptor (final String value) {
+        return this.option ("interceptor", value);
+    }
+}
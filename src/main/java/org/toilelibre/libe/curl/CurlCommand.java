@@ -0,0 +1,22 @@
+package org.toilelibre.libe.curl;
+
+import java.lang.annotation.*;
+
+/**
+ * The curl command run by a method of an interface :
+ * <pre>
+ * interface Billing {
+ *     &#64;CurlCommand ("-X POST -H 'Content-Type: application/json' https://billing/{id}/charge -d {body}")
+ *     HttpResponse charge (String id, String body);
+ * }
+ * </pre>
+ * The {@link CurlCommandProcessor} parses the command when compiling and writes BillingCurlImpl,
+ * which calls the builder directly. The {name} placeholders are the parameters with the same name,
+ * and a CurlJavaOptions parameter is used as the java options.
+ * The methods can return HttpResponse, String, CompletableFuture&lt;HttpResponse&gt; or CompletableFuture&lt;String&gt;.
+ */
+@Retention (RetentionPolicy.SOURCE)
+@Target (ElementType.METHOD)
+public @interface CurlCommand {
+    String value ();
+}
@@ -0,0 +1,243 @@
+package org.toilelibre.libe.curl;
+
+import org.apache.commons.cli.*;
+
+import javax.annotation.processing.*;
+import javax.lang.model.*;
+import javax.lang.model.element.*;
+import javax.lang.model.type.*;
+import javax.lang.model.util.*;
+import javax.tools.*;
+import java.io.*;
+import java.util.*;
+import java.util.regex.*;
+
+/**
+ * Writes the implementation of the interfaces having {@link CurlCommand} methods (Billing : BillingCurlImpl).
+ * The commands are tokenized and parsed against the {@link Arguments} when compiling, so that a wrong command
+ * fails the build, and the implementation only chains the option methods of the builder (no parsing when running).
+ */
+@SupportedAnnotationTypes ("org.toilelibre.libe.curl.CurlCommand")
+public final class CurlCommandProcessor extends AbstractProcessor {
+
+    static final String IMPLEMENTATION_SUFFIX = "CurlImpl";
+
+    private static final Pattern PARAMETER         = Pattern.compile ("\\{([A-Za-z_$][A-Za-z0-9_$]*)}");
+    private static final String  CURL_JAVA_OPTIONS = "org.toilelibre.libe.curl.Curl.CurlArgumentsBuilder.CurlJavaOptions";
+    private static final String  HTTP_RESPONSE     = "org.apache.http.HttpResponse";
+    private static final String  FUTURE            = "java.util.concurrent.CompletableFuture";
+
+    @Override
+    public SourceVersion getSupportedSourceVersion () {
+        return SourceVersion.latestSupported ();
+    }
+
+    @Override
+    public boolean process (final Set<? extends TypeElement> annotations, final RoundEnvironment roundEnv) {
+        final Set<TypeElement> interfaces = new LinkedHashSet<> ();
+        for (final Element method : roundEnv.getElementsAnnotatedWith (CurlCommand.class)) {
+            if (method.getEnclosingElement ().getKind () != ElementKind.INTERFACE) {
+                this.error (method, "@CurlCommand is only supported on the methods of an interface");
+                continue;
+            }
+            interfaces.add ((TypeElement) method.getEnclosingElement ());
+        }
+        for (final TypeElement type : interfaces) {
+            this.writeImplementation (type);
+        }
+        return true;
+    }
+
+    private void writeImplementation (final TypeElement type) {
+        if (!type.getTypeParameters ().isEmpty ()) {
+            this.error (type, "a @CurlCommand interface cannot be generic");
+            return;
+        }
+        final String packageName = this.processingEnv.getElementUtils ().getPackageOf (type).getQualifiedName ().toString ();
+        final String implementationName = implementationNameOf (type);
+        final StringBuilder source = new StringBuilder ();
+        if (!packageName.isEmpty ()) {
+            source.append ("package ").append (packageName).append (";\n\n");
+        }
+        source.append ("/**\n");
+        source.append (" * Generated by ").append (CurlCommandProcessor.class.getName ()).append (" from {@link ")
+                .append (type.getQualifiedName ()).append ("}, do not edit.\n");
+        source.append (" */\n");
+        source.append ("public final class ").append (implementationName).append (" implements ")
+                .append (type.getQualifiedName ()).append (" {\n");
+
+        boolean valid = true;
+        for (final ExecutableElement method : ElementFilter.methodsIn (type.getEnclosedElements ())) {
+            if (method.getModifiers ().contains (Modifier.STATIC) || method.getModifiers ().contains (Modifier.DEFAULT)) {
+                continue;
+            }
+            valid &= this.appendMethod (source, method);
+        }
+        source.append ("}\n");
+        if (!valid) {
+            return;
+        }
+
+        try (final Writer writer = this.processingEnv.getFiler ()
+                .createSourceFile (packageName.isEmpty () ? implementationName : packageName + "." + implementationName, type)
+                .openWriter ()) {
+            writer.write (source.toString ());
+        } catch (final IOException e) {
+            this.error (type, "cannot write " + implementationName + " : " + e.getMessage ());
+        }
+    }
+
+    private boolean appendMethod (final StringBuilder source, final ExecutableElement method) {
+        final CurlCommand curlCommand = method.getAnnotation (CurlCommand.class);
+        if (curlCommand == null) {
+            this.error (method, "this method has no @CurlCommand");
+            return false;
+        }
+        if (!method.getTypeParameters ().isEmpty ()) {
+            this.error (method, "a @CurlCommand method cannot be generic");
+            return false;
+        }
+        final String terminalMethod = this.terminalMethodOf (method.getReturnType ());
+        if (terminalMethod == null) {
+            this.error (method, "a @CurlCommand method returns HttpResponse, String, CompletableFuture<HttpResponse> or CompletableFuture<String>");
+            return false;
+        }
+
+        final ParsedCommand parsedCommand;
+        try {
+            parsedCommand = ReadArguments.parse (ArgumentsTokenizer.tokenize (curlCommand.value ()).toArray (new String [0]));
+        } catch (final ParseException e) {
+            this.error (method, "invalid curl command : " + e.getMessage ());
+            return false;
+        }
+        if (parsedCommand.getArgs ().length != 1) {
+            this.error (method, "a @CurlCommand needs exactly one url, found " + Arrays.toString (parsedCommand.getArgs ()));
+            return false;
+        }
+
+        final Set<String> parameters = new LinkedHashSet<> ();
+        final Set<String> usedParameters = new HashSet<> ();
+        String javaOptions = null;
+        for (final VariableElement parameter : method.getParameters ()) {
+            if (this.isType (parameter.asType (), CURL_JAVA_OPTIONS)) {
+                javaOptions = parameter.getSimpleName ().toString ();
+            } else {
+                parameters.add (parameter.getSimpleName ().toString ());
+            }
+        }
+
+        source.append ("\n    @Override\n");
+        source.append ("    public ").append (method.getReturnType ()).append (' ').append (method.getSimpleName ()).append (" (");
+        final StringJoiner parameterDeclarations = new StringJoiner (", ");
+        for (final VariableElement parameter : method.getParameters ()) {
+            parameterDeclarations.add ("final " + parameter.asType () + " " + parameter.getSimpleName ());
+        }
+        source.append (parameterDeclarations).append (") {\n");
+        source.append ("        return org.toilelibre.libe.curl.Curl.curl ()");
+        if (javaOptions != null) {
+            source.append ("\n                .javaOptions (").append (javaOptions).append (')');
+        }
+        for (final Option option : parsedCommand.getOptions ()) {
+            final String methodName = OptionMethodNames.methodNameOf (option.getLongOpt ());
+            final String [] values = parsedCommand.getOptionValues (option.getOpt ());
+            if (values == null) {
+                source.append ("\n                .").append (methodName).append (" ()");
+                continue;
+            }
+            for (final String value : values) {
+                source.append ("\n                .").append (methodName).append (" (")
+                        .append (expressionOf (value, parameters, usedParameters)).append (')');
+            }
+        }
+        source.append ("\n                .").append (terminalMethod).append (" (")
+                .append (expressionOf (parsedCommand.getArgs () [0], parameters, usedParameters)).append (");\n");
+        source.append ("    }\n");
+
+        parameters.removeAll (usedParameters);
+        if (!parameters.isEmpty ()) {
+            this.error (method, "the parameters " + parameters + " are not used by the curl command");
+            return false;
+        }
+        return true;
+    }
+
+    private String terminalMethodOf (final TypeMirror returnType) {
+        if (this.isType (returnType, HTTP_RESPONSE)) {
+            return "run";
+        }
+        if (this.isType (returnType, String.class.getName ())) {
+            return "$";
+        }
+        if (returnType.getKind () != TypeKind.DECLARED || !this.isType (this.processingEnv.getTypeUtils ().erasure (returnType), FUTURE)) {
+            return null;
+        }
+        final List<? extends TypeMirror> typeArguments = ((DeclaredType) returnType).getTypeArguments ();
+        if (typeArguments.size () != 1) {
+            return null;
+        }
+        if (this.isType (typeArguments.get (0), HTTP_RESPONSE)) {
+            return "runAsync";
+        }
+        return this.isType (typeArguments.get (0), String.class.getName ()) ? "$Async" : null;
+    }
+
+    private boolean isType (final TypeMirror type, final String qualifiedName) {
+        final TypeElement typeElement = this.processingEnv.getElementUtils ().getTypeElement (qualifiedName);
+        final Types types = this.processingEnv.getTypeUtils ();
+        return typeElement != null && types.isSameType (types.erasure (type), types.erasure (typeElement.asType ()));
+    }
+
+    /**
+     * @return the java expression of a value, where the {name} of the parameters are replaced by their value
+     */
+    static String expressionOf (final String value, final Set<String> parameters, final Set<String> usedParameters) {
+        final StringJoiner expression = new StringJoiner (" + ");
+        final Matcher matcher = PARAMETER.matcher (value);
+        int start = 0;
+        while (matcher.find ()) {
+            if (!parameters.contains (matcher.group (1))) {
+                continue;
+            }
+            if (matcher.start () > start) {
+                expression.add (literalOf (value.substring (start, matcher.start ())));
+            }
+            expression.add ("String.valueOf (" + matcher.group (1) + ")");
+            usedParameters.add (matcher.group (1));
+            start = matcher.end ();
+        }
+        if (start < value.length () || start == 0) {
+            expression.add (literalOf (value.substring (start)));
+        }
+        return expression.toString ();
+    }
+
+    static String literalOf (final String value) {
+        final StringBuilder literal = new StringBuilder ("\"");
+        for (int i = 0 ; i < value.length () ; i++) {
+            final char c = value.charAt (i);
+            if (c == '"' || c == '\\') {
+                literal.append ('\\').append (c);
+            } else if (c < 0x20) {
+                // not \\u000a, which javac would read as a line break
+                literal.append (String.format ("\\%03o", (int) c));
+            } else if (c > 0x7e) {
+                literal.append (String.format ("\\u%04x", (int) c));
+            } else {
+                literal.append (c);
+            }
+        }
+        return literal.append ('"').toString ();
+    }
+
+    static String implementationNameOf (final TypeElement type) {
+        final StringBuilder name = new StringBuilder (type.getSimpleName ());
+        for (Element enclosing = type.getEnclosingElement () ; enclosing instanceof TypeElement ; enclosing = enclosing.getEnclosingElement ()) {
+            name.insert (0, enclosing.getSimpleName ());
+        }
+        return name.append (IMPLEMENTATION_SUFFIX).toString ();
+    }
+
+    private void error (final Element element, final String message) {
+        this.processingEnv.getMessager ().printMessage (Diagnostic.Kind.ERROR, message, element);
+    }
+}
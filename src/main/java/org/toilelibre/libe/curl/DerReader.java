@@ -3,19 +3,35 @@ package org.toilelibre.libe.curl;
 import java.io.*;
 import java.math.*;
 import java.security.spec.*;
+import java.util.*;
 
+/**
+ * Reads the DER objects in place : the values are offsets in the array of the whole structure, not copies.
+ */
 final class DerReader {
     static class Asn1Object {
         private static final byte LOWER_5_BITS = (byte) 0x1F;
         private final int         tag;
         private final int         type;
 
-        private final byte []     value;
+        private final byte []     bytes;
+        private final int         offset;
+        private final int         length;
 
-        Asn1Object (final int tag, final byte [] value) {
+        Asn1Object (final int tag, final byte [] bytes, final int offset, final int length) {
             this.tag = tag;
             this.type = tag & Asn1Object.LOWER_5_BITS;
-            this.value = value;
+            this.bytes = bytes;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        int getTag () {
+            return this.tag;
+        }
+
+        int getType () {
+            return this.type;
         }
 
         BigInteger getInteger () throws IOException {
@@ -23,9 +39,37 @@ final class DerReader {
                 throw new IOException ("Invalid DER: object is not integer");
             }
 
-            return new BigInteger (this.value);
+            return new BigInteger (this.getValue ());
+        }
+
+        String getObjectIdentifier () throws IOException {
+            if (this.type != DerReader.OBJECT_IDENTIFIER || this.length == 0) {
+                throw new IOException ("Invalid DER: object is not an object identifier");
+            }
+
+            final StringBuilder objectIdentifier = new StringBuilder ();
+            long arc = 0;
+            boolean first = true;
+            for (int i = this.offset ; i < this.offset + this.length ; i++) {
+                arc = (arc << 7) | (this.bytes [i] & DerReader.LOWER_7_BITS);
+                if ((this.bytes [i] & ~DerReader.LOWER_7_BITS) != 0) {
+                    continue;
+                }
+                if (first) {
+                    final long firstArc = Math.min (arc / 40, 2);
+                    objectIdentifier.append (firstArc).append ('.').append (arc - firstArc * 40);
+                    first = false;
+                } else {
+                    objectIdentifier.append ('.').append (arc);
+                }
+                arc = 0;
+            }
+            return objectIdentifier.toString ();
         }
 
+        /**
+         * The RSA private key of a PKCS#1 structure.
+         */
         KeySpec getKeySpec () throws IOException {
 
             final DerReader parser = this.getReader ();
@@ -48,7 +92,11 @@ final class DerReader {
                 throw new IOException ("Invalid DER: can't parse primitive entity");
             }
 
-            return new DerReader (this.value);
+            return new DerReader (this.bytes, this.offset, this.offset + this.length);
+        }
+
+        byte [] getValue () {
+            return Arrays.copyOfRange (this.bytes, this.offset, this.offset + this.length);
         }
 
         boolean isConstructed () {
@@ -57,28 +105,35 @@ final class DerReader {
     }
 
 
+    static final int           INTEGER             = 0x02;
+    static final int           OCTET_STRING        = 0x04;
+    static final int           OBJECT_IDENTIFIER   = 0x06;
+    static final int           SEQUENCE            = 0x10;
+    static final int           CONSTRUCTED         = 0x20;
     private static final int   BYTE_MAX            = 0xFF;
-    private static final int   CONSTRUCTED         = 0x20;
-    private static final int   INTEGER             = 0x02;
     private static final byte  LOWER_7_BITS        = (byte) 0x7F;
     private static final int   MAX_NUMBER_OF_BYTES = 4;
 
-    private final InputStream in;
+    private final byte [] bytes;
+    private final int     end;
+    private int           position;
 
     DerReader (final byte [] bytes) {
-        this (new ByteArrayInputStream (bytes));
+        this (bytes, 0, bytes.length);
     }
 
-    private DerReader (final InputStream in) {
-        this.in = in;
+    private DerReader (final byte [] bytes, final int offset, final int end) {
+        this.bytes = bytes;
+        this.position = offset;
+        this.end = end;
     }
 
     private int getLength () throws IOException {
 
-        final int i = this.in.read ();
-        if (i == -1) {
+        if (this.position >= this.end) {
             throw new IOException ("Invalid DER: length missing");
         }
+        final int i = this.bytes [this.position++] & DerReader.BYTE_MAX;
 
         if ((i & ~DerReader.LOWER_7_BITS) == 0) {
             return i;
@@ -90,30 +145,38 @@ final class DerReader {
             throw new IOException ("Invalid DER: length field too big (" + i + ")");
         }
 
-        final byte [] bytes = new byte [num];
-        final int n = this.in.read (bytes);
-        if (n < num) {
+        if (this.end - this.position < num) {
             throw new IOException ("Invalid DER: length too short");
         }
 
-        return new BigInteger (1, bytes).intValue ();
+        int length = 0;
+        for (int j = 0 ; j < num ; j++) {
+            length = (length << 8) | (this.bytes [this.position++] & DerReader.BYTE_MAX);
+        }
+        if (length < 0) {
+            throw new IOException ("Invalid DER: length field too big (" + i + ")");
+        }
+        return length;
+    }
+
+    boolean hasMore () {
+        return this.position < this.end;
     }
 
     Asn1Object read () throws IOException {
-        final int tag = this.in.read ();
-
-        if (tag == -1) {
+        if (this.position >= this.end) {
             throw new IOException ("Invalid DER: stream too short, missing tag");
         }
+        final int tag = this.bytes [this.position++] & DerReader.BYTE_MAX;
 
         final int length = this.getLength ();
 
-        final byte [] value = new byte [length];
-        final int n = this.in.read (value);
-        if (n < length) {
+        if (this.end - this.position < length) {
             throw new IOException ("Invalid DER: stream too short, missing value");
         }
 
-        return new Asn1Object (tag, value);
+        final Asn1Object object = new Asn1Object (tag, this.bytes, this.position, length);
+        this.position += length;
+        return object;
     }
 }
@@ -0,0 +1,128 @@
+package org.toilelibre.libe.curl;
+
+import org.apache.http.conn.*;
+import org.apache.http.conn.util.*;
+import org.toilelibre.libe.curl.Curl.*;
+
+import javax.naming.*;
+import javax.naming.directory.*;
+import java.net.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static java.util.Arrays.*;
+import static java.util.stream.Collectors.*;
+
+final class DnsResolverProvider {
+
+    private static final Map<String, CachingDnsResolver> DNS_SERVERS_RESOLVERS = new ConcurrentHashMap<> ();
+
+    static DnsResolver prepareDnsResolver (final ParsedCommand commandLine, final DnsResolver customResolver) {
+        final DnsResolver resolver = customResolver != null ? customResolver :
+                commandLine.hasOption (Arguments.DNS_SERVERS.getOpt ()) ?
+                        DNS_SERVERS_RESOLVERS.computeIfAbsent (commandLine.getOptionValue (Arguments.DNS_SERVERS.getOpt ()),
+                                dnsServers -> new CachingDnsResolver (new DnsServersResolver (dnsServers))) :
+                        CachingDnsResolver.SYSTEM;
+
+        final Map<String, InetAddress []> overrides = overridesFrom (commandLine);
+        if (overrides.isEmpty ()) {
+            return resolver;
+        }
+        return host -> {
+            final InetAddress [] overridden = overrides.get (host.toLowerCase (Locale.ROOT));
+            return overridden != null ? overridden.clone () : resolver.resolve (host);
+        };
+    }
+
+    private static Map<String, InetAddress []> overridesFrom (final ParsedCommand commandLine) {
+        final String [] resolves = Optional.ofNullable (commandLine.getOptionValues (Arguments.RESOLVE.getOpt ())).orElse (new String [0]);
+        if (resolves.length == 0) {
+            return Collections.emptyMap ();
+        }
+        final String port = String.valueOf (portOf (URI.create (commandLine.getArgs () [0])));
+        final Map<String, InetAddress []> overrides = new HashMap<> ();
+        for (final String resolve : resolves) {
+            if (resolve.startsWith ("-")) {
+                continue;
+            }
+            final String [] hostPortAndAddresses = resolve.replaceFirst ("^\\+", "").split (":", 3);
+            if (hostPortAndAddresses.length != 3) {
+                throw new IllegalArgumentException ("option --resolve: is badly used here");
+            }
+            if ("*".equals (hostPortAndAddresses [1]) || port.equals (hostPortAndAddresses [1])) {
+                overrides.put (hostPortAndAddresses [0].toLowerCase (Locale.ROOT),
+                        addressesOf (hostPortAndAddresses [0], hostPortAndAddresses [2]));
+            }
+        }
+        return overrides;
+    }
+
+    private static InetAddress [] addressesOf (final String host, final String addresses) {
+        return stream (addresses.split (",")).map (String::trim).map (address -> address.replaceAll ("^\\[|]$", ""))
+                .map (address -> {
+                    if (!InetAddressUtils.isIPv4Address (address) && !InetAddressUtils.isIPv6Address (address)) {
+                        throw new IllegalArgumentException ("option --resolve: " + address + " is not a numerical address");
+                    }
+                    try {
+                        return InetAddress.getByAddress (host, InetAddress.getByName (address).getAddress ());
+                    } catch (final UnknownHostException e) {
+                        throw new CurlException (e);
+                    }
+                }).toArray (InetAddress []::new);
+    }
+
+    private static int portOf (final URI uri) {
+        if (uri.getPort () != -1) {
+            return uri.getPort ();
+        }
+        return "https".equalsIgnoreCase (uri.getScheme ()) ? 443 : 80;
+    }
+
+    /**
+     * Asks the name servers given with --dns-servers instead of the system resolver.
+     */
+    private static class DnsServersResolver implements DnsResolver {
+
+        private static final String [] RECORD_TYPES = {"A", "AAAA"};
+
+        private final Hashtable<String, String> environment = new Hashtable<> ();
+
+        DnsServersResolver (final String dnsServers) {
+            this.environment.put (Context.INITIAL_CONTEXT_FACTORY, "com.sun.jndi.dns.DnsContextFactory");
+            this.environment.put (Context.PROVIDER_URL, stream (dnsServers.split (","))
+                    .map (String::trim).map (server -> "dns://" + server).collect (joining (" ")));
+        }
+
+        @Override
+        public InetAddress [] resolve (final String host) throws UnknownHostException {
+            if (InetAddressUtils.isIPv4Address (host) || InetAddressUtils.isIPv6Address (host)) {
+                return new InetAddress [] {InetAddress.getByName (host)};
+            }
+            final List<InetAddress> addresses = new ArrayList<> ();
+            try {
+                final DirContext context = new InitialDirContext (this.environment);
+                try {
+                    final NamingEnumeration<? extends Attribute> records =
+                            context.getAttributes (host, RECORD_TYPES).getAll ();
+                    while (records.hasMore ()) {
+                        final NamingEnumeration<?> values = records.next ().getAll ();
+                        while (values.hasMore ()) {
+                            addresses.add (InetAddress.getByAddress (host,
+                                    InetAddress.getByName (values.next ().toString ()).getAddress ()));
+                        }
+                    }
+                } finally {
+                    context.close ();
+                }
+            } catch (final NamingException e) {
+                final UnknownHostException unknownHostException = new UnknownHostException (host);
+                unknownHostException.initCause (e);
+                throw unknownHostException;
+            }
+            if (addresses.isEmpty ()) {
+                throw new UnknownHostException (host);
+            }
+            return addresses.toArray (new InetAddress [0]);
+        }
+    }
+}
@@ -1,49 +1,63 @@
 package org.toilelibre.libe.curl;
 
-import org.apache.commons.cli.*;
-import org.apache.http.*;
 import org.apache.http.client.*;
+import org.apache.http.config.*;
 import org.apache.http.conn.*;
+import org.apache.http.conn.socket.*;
 import org.apache.http.impl.client.*;
+import org.apache.http.impl.conn.*;
 import org.toilelibre.libe.curl.Curl.*;
+import org.toilelibre.libe.curl.Curl.CurlArgumentsBuilder.*;
 
-import java.net.*;
-import java.util.*;
-import java.util.function.*;
+import java.util.concurrent.*;
 
 import static org.toilelibre.libe.curl.AuthMethodHandler.*;
+import static org.toilelibre.libe.curl.DnsResolverProvider.*;
 import static org.toilelibre.libe.curl.SSLMaterialCreator.*;
+import static org.toilelibre.libe.curl.SocketConfigProvider.*;
+import static org.toilelibre.libe.curl.SourceAddressSocketFactory.*;
 
 final class HttpClientProvider {
 
-    static HttpClient prepareHttpClient (final CommandLine commandLine,
-                                         List<BiFunction<HttpRequest, Supplier<HttpResponse>, HttpResponse>> additionalInterceptors,
-                                         HttpClientConnectionManager connectionManager) throws CurlException {
+    static HttpClient prepareHttpClient (final ParsedCommand commandLine,
+                                         final CurlJavaOptions curlJavaOptions) throws CurlException {
         HttpClientBuilder executor = HttpClientBuilder.create ();
 
         if (!commandLine.hasOption (Arguments.COMPRESSED.getOpt ())){
             executor.disableContentCompression ();
         }
 
-        if (connectionManager != null) {
-            executor.setConnectionManager (connectionManager);
-        }
-
-        final String hostname;
-        try {
-            hostname = InetAddress.getLocalHost ().getHostName ();
-        } catch (final UnknownHostException e1) {
-            throw new Curl.CurlException (e1);
-        }
+        executor.setConnectionManager (curlJavaOptions.getConnectionManager () != null ?
+                curlJavaOptions.getConnectionManager () : prepareConnectionManager (commandLine, curlJavaOptions));
 
-        executor = handleAuthMethod (commandLine, executor, hostname);
+        executor = handleAuthMethod (commandLine, executor);
+        executor = handleBearerToken (commandLine, executor, curlJavaOptions.getBearerTokenProvider ());
 
         if (! commandLine.hasOption (Arguments.FOLLOW_REDIRECTS.getOpt ())) {
             executor.disableRedirectHandling ();
         }
 
-        handleSSLParams (commandLine, executor);
-        InterceptorsBinder.handleInterceptors (commandLine, executor, additionalInterceptors);
+        InterceptorsBinder.handleInterceptors (commandLine, executor, curlJavaOptions.getInterceptors ());
         return executor.build ();
     }
+
+    private static HttpClientConnectionManager prepareConnectionManager (final ParsedCommand commandLine,
+                                                                         final CurlJavaOptions curlJavaOptions) {
+        final String unixSocket = commandLine.getOptionValue (Arguments.UNIX_SOCKET.getOpt ());
+        final Registry<ConnectionSocketFactory> socketFactoryRegistry = unixSocket != null ?
+                RegistryBuilder.<ConnectionSocketFactory>create ()
+                        .register ("http", new UnixDomainSocketFactory (unixSocket, null))
+                        .register ("https", new UnixDomainSocketFactory (unixSocket, prepareLazySSLSocketFactory (commandLine, curlJavaOptions)))
+                        .build () :
+                RegistryBuilder.<ConnectionSocketFactory>create ()
+                        .register ("http", bindingSourceAddress (commandLine, PlainConnectionSocketFactory.getSocketFactory ()))
+                        .register ("https", bindingSourceAddress (commandLine, prepareLazySSLSocketFactory (commandLine, curlJavaOptions)))
+                        .build ();
+        final PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager (
+                new RoutingConnectionOperator (socketFactoryRegistry, unixSocket != null ? UnixDomainSocketFactory.NO_RESOLUTION :
+                        prepareDnsResolver (commandLine, curlJavaOptions.getDnsResolver ()), commandLine),
+                null, -1, TimeUnit.MILLISECONDS);
+        connectionManager.setDefaultSocketConfig (prepareSocketConfig (commandLine));
+        return connectionManager;
+    }
 }
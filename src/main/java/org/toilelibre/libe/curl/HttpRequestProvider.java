@@ -1,10 +1,10 @@
 package org.toilelibre.libe.curl;
 
-import org.apache.commons.cli.*;
 import org.apache.http.*;
 import org.apache.http.client.config.*;
 import org.apache.http.client.config.RequestConfig.*;
 import org.apache.http.client.methods.*;
+import org.apache.http.client.utils.*;
 import org.apache.http.entity.mime.*;
 import org.apache.http.entity.mime.content.*;
 import org.apache.http.message.*;
@@ -12,8 +12,10 @@ import org.apache.http.protocol.*;
 import org.apache.http.util.*;
 import org.toilelibre.libe.curl.Curl.*;
 
+import java.io.*;
 import java.net.*;
 import java.util.*;
+import java.util.logging.*;
 import java.util.stream.*;
 
 import static java.util.Arrays.*;
@@ -23,7 +25,9 @@ import static org.toilelibre.libe.curl.PayloadReader.*;
 
 final class HttpRequestProvider {
 
-    static HttpUriRequest prepareRequest (final CommandLine commandLine) throws CurlException {
+    private static final Logger LOGGER = Logger.getLogger (HttpRequestProvider.class.getName ());
+
+    static HttpUriRequest prepareRequest (final ParsedCommand commandLine) throws CurlException {
 
         final String method = getMethod (commandLine);
         final RequestBuilder request = wrapInRequestBuilder (method, commandLine.getArgs ()[0]);
@@ -38,13 +42,19 @@ final class HttpRequestProvider {
 
         HttpRequestProvider.setHeaders (commandLine, request);
 
+        HttpRequestProvider.setConditionalHeaders (commandLine, request);
+
         request.setConfig (HttpRequestProvider.getConfig (commandLine));
 
-        return request.build ();
+        final HttpUriRequest builtRequest = request.build ();
+
+        AwsSigV4Signer.sign (commandLine, builtRequest);
+
+        return builtRequest;
 
     }
 
-    private static String getMethod (final CommandLine cl) throws CurlException {
+    private static String getMethod (final ParsedCommand cl) throws CurlException {
         return cl.getOptionValue (Arguments.HTTP_METHOD.getOpt ()) == null ? determineVerbWithoutArgument (cl) : cl.getOptionValue (Arguments.HTTP_METHOD.getOpt ());
     }
 
@@ -56,7 +66,7 @@ final class HttpRequestProvider {
         }
     }
 
-    private static String determineVerbWithoutArgument (CommandLine commandLine) {
+    private static String determineVerbWithoutArgument (ParsedCommand commandLine) {
         if (commandLine.hasOption (Arguments.DATA.getOpt ()) ||
                 commandLine.hasOption (Arguments.DATA_URLENCODE.getOpt ()) ||
                 commandLine.hasOption (Arguments.FORM.getOpt ())) {
@@ -66,7 +76,7 @@ final class HttpRequestProvider {
     }
 
 
-    private static HttpEntity getForm (final CommandLine commandLine) {
+    private static HttpEntity getForm (final ParsedCommand commandLine) {
         final String [] forms = Optional.ofNullable (commandLine.getOptionValues (Arguments.FORM.getOpt ())).orElse (new String [0]);
 
         if (forms.length == 0) {
@@ -92,7 +102,7 @@ final class HttpRequestProvider {
 
     }
 
-    private static void setHeaders (final CommandLine commandLine, final RequestBuilder request) {
+    private static void setHeaders (final ParsedCommand commandLine, final RequestBuilder request) {
         final String [] headers = Optional.ofNullable (commandLine.getOptionValues (Arguments.HEADER.getOpt ())).orElse (new String [0]);
 
         List<BasicHeader> basicHeaders =
@@ -134,7 +144,48 @@ final class HttpRequestProvider {
         }
     }
 
-    private static RequestConfig getConfig (final CommandLine commandLine) {
+    private static void setConditionalHeaders (final ParsedCommand commandLine, final RequestBuilder request) {
+        if (commandLine.hasOption (Arguments.TIME_COND.getOpt ())) {
+            final String timeCondition = commandLine.getOptionValue (Arguments.TIME_COND.getOpt ()).trim ();
+            final boolean unmodifiedSince = timeCondition.startsWith ("-");
+            final String dateOrFile = unmodifiedSince ? timeCondition.substring (1) : timeCondition;
+            final Date date = dateFromTimeCondition (dateOrFile);
+            if (date != null) {
+                request.addHeader (unmodifiedSince ? HttpHeaders.IF_UNMODIFIED_SINCE : HttpHeaders.IF_MODIFIED_SINCE,
+                        DateUtils.formatDate (date));
+            }
+        }
+
+        if (commandLine.hasOption (Arguments.ETAG_COMPARE.getOpt ())) {
+            final File etagFile = new File (commandLine.getOptionValue (Arguments.ETAG_COMPARE.getOpt ()));
+            final String etag = etagFile.isFile () ? etagFrom (etagFile) : "";
+            if (!etag.isEmpty ()) {
+                request.addHeader (HttpHeaders.IF_NONE_MATCH, etag);
+            }
+        }
+    }
+
+    private static String etagFrom (final File etagFile) {
+        try {
+            return new String (IOUtils.toByteArray (etagFile)).trim ();
+        } catch (final IOException e) {
+            throw new CurlException (e);
+        }
+    }
+
+    private static Date dateFromTimeCondition (final String dateOrFile) {
+        final File file = new File (dateOrFile);
+        if (file.isFile ()) {
+            return new Date (file.lastModified ());
+        }
+        final Date date = DateUtils.parseDate (dateOrFile);
+        if (date == null) {
+            LOGGER.log (Level.WARNING, "Illegal date format for -z, --time-cond (and not a file name) : " + dateOrFile);
+        }
+        return date;
+    }
+
+    private static RequestConfig getConfig (final ParsedCommand commandLine) {
         final Builder requestConfig = RequestConfig.custom ();
 
         if (commandLine.hasOption (Arguments.PROXY.getOpt ())) {
@@ -154,6 +205,12 @@ final class HttpRequestProvider {
                     commandLine.getOptionValue (Arguments.MAX_TIME.getOpt ()))) * 1000));
         }
 
+        if (commandLine.hasOption (Arguments.DIGEST.getOpt ())) {
+            requestConfig.setTargetPreferredAuthSchemes (Collections.singletonList (AuthSchemes.DIGEST));
+        } else if (commandLine.hasOption (Arguments.BASIC.getOpt ())) {
+            requestConfig.setTargetPreferredAuthSchemes (Collections.singletonList (AuthSchemes.BASIC));
+        }
+
         return requestConfig.build ();
     }
 }
@@ -0,0 +1,28 @@
+package org.toilelibre.libe.curl;
+
+/**
+ * Wraps an object given by the callers in a key (of a cache, of a coalesced request...) : two keys are equal only
+ * with the same instances, whatever the equals method of their class.
+ */
+final class Identity {
+
+    private final Object object;
+
+    private Identity (final Object object) {
+        this.object = object;
+    }
+
+    static Object of (final Object object) {
+        return object == null ? null : new Identity (object);
+    }
+
+    @Override
+    public boolean equals (final Object other) {
+        return other instanceof Identity && ((Identity) other).object == this.object;
+    }
+
+    @Override
+    public int hashCode () {
+        return System.identityHashCode (this.object);
+    }
+}
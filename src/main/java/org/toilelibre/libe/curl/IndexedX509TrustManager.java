@@ -0,0 +1,144 @@
+package org.toilelibre.libe.curl;
+
+import javax.net.ssl.*;
+import javax.security.auth.x500.*;
+import java.io.*;
+import java.net.*;
+import java.security.*;
+import java.security.cert.Certificate;
+import java.security.cert.*;
+import java.util.*;
+import java.util.logging.*;
+
+/**
+ * Trusts the certificate authorities of --cacert and --capath, with the PKIX trust manager of the jvm
+ * (the same checks as the default trust : key usages for the TLS side, chains out of order...),
+ * which indexes its trust anchors by subject. The authorities are indexed by subject while being loaded
+ * (like the hashed directories of c_rehash), so that each of them is given once.
+ */
+final class IndexedX509TrustManager extends X509ExtendedTrustManager {
+
+    private static final Logger LOGGER = Logger.getLogger (IndexedX509TrustManager.class.getName ());
+
+    private final Map<X500Principal, List<X509Certificate>> authoritiesBySubject;
+    private final X509ExtendedTrustManager                  delegate;
+
+    IndexedX509TrustManager (final Collection<X509Certificate> authorities) throws Curl.CurlException {
+        final Map<X500Principal, List<X509Certificate>> index = new LinkedHashMap<> ();
+        for (final X509Certificate authority : authorities) {
+            final List<X509Certificate> sameSubject =
+                    index.computeIfAbsent (authority.getSubjectX500Principal (), subject -> new ArrayList<> (1));
+            if (!sameSubject.contains (authority)) {
+                sameSubject.add (authority);
+            }
+        }
+        this.authoritiesBySubject = index;
+        // the PKIX validator fails with a runtime exception without any trust anchor
+        this.delegate = index.isEmpty () ? null : pkixTrustManagerOf (index);
+    }
+
+    private static X509ExtendedTrustManager pkixTrustManagerOf (final Map<X500Principal, List<X509Certificate>> authoritiesBySubject)
+            throws Curl.CurlException {
+        try {
+            final KeyStore trustStore = KeyStore.getInstance (KeyStore.getDefaultType ());
+            trustStore.load (null, null);
+            int i = 0;
+            for (final List<X509Certificate> sameSubject : authoritiesBySubject.values ()) {
+                for (final X509Certificate authority : sameSubject) {
+                    trustStore.setCertificateEntry ("ca-cert-alias-" + i++, authority);
+                }
+            }
+            final TrustManagerFactory trustManagerFactory = TrustManagerFactory.getInstance ("PKIX");
+            trustManagerFactory.init (trustStore);
+            return Arrays.stream (trustManagerFactory.getTrustManagers ()).filter (X509ExtendedTrustManager.class::isInstance)
+                    .map (X509ExtendedTrustManager.class::cast).findFirst ()
+                    .orElseThrow (() -> new Curl.CurlException (new KeyStoreException ("no X.509 trust manager")));
+        } catch (final GeneralSecurityException | IOException e) {
+            throw new Curl.CurlException (e);
+        }
+    }
+
+    /**
+     * Every certificate of the file (PEM, or else DER) and of the files of the directory, the other files are skipped.
+     */
+    static IndexedX509TrustManager of (final File caCert, final File caPath) throws Curl.CurlException {
+        final List<X509Certificate> authorities = new ArrayList<> ();
+        if (caCert != null) {
+            try {
+                authorities.addAll (certificatesOf (IOUtils.toByteArray (caCert)));
+            } catch (final IOException | RuntimeException e) {
+                throw new Curl.CurlException (new IOException ("could not read the CA certificates of " + caCert, e));
+            }
+        }
+        final File [] files = caPath == null ? null : caPath.listFiles (File::isFile);
+        if (caPath != null && files == null) {
+            throw new Curl.CurlException (new FileNotFoundException ("CA directory not found : " + caPath));
+        }
+        for (final File file : files == null ? new File [0] : files) {
+            try {
+                authorities.addAll (certificatesOf (IOUtils.toByteArray (file)));
+            } catch (final IOException | RuntimeException e) {
+                LOGGER.log (Level.FINE, "skipping " + file + " in the CA directory", e);
+            }
+        }
+        return new IndexedX509TrustManager (authorities);
+    }
+
+    private static List<X509Certificate> certificatesOf (final byte [] content) {
+        final List<Certificate> certificates = CertFormat.PEM.generateCredentialsFromFileAndPassword (CertFormat.Kind.CERTIFICATE, content, null);
+        final List<X509Certificate> result = new ArrayList<> ();
+        for (final Certificate certificate : certificates.isEmpty () ?
+                CertFormat.DER.<Certificate>generateCredentialsFromFileAndPassword (CertFormat.Kind.CERTIFICATE, content, null) : certificates) {
+            if (certificate instanceof X509Certificate) {
+                result.add ((X509Certificate) certificate);
+            }
+        }
+        return result;
+    }
+
+    int size () {
+        return this.authoritiesBySubject.values ().stream ().mapToInt (List::size).sum ();
+    }
+
+    private X509ExtendedTrustManager delegate () throws CertificateException {
+        if (this.delegate == null) {
+            throw new CertificateException ("no trusted certificate authority");
+        }
+        return this.delegate;
+    }
+
+    @Override
+    public void checkClientTrusted (final X509Certificate [] chain, final String authType) throws CertificateException {
+        this.delegate ().checkClientTrusted (chain, authType);
+    }
+
+    @Override
+    public void checkServerTrusted (final X509Certificate [] chain, final String authType) throws CertificateException {
+        this.delegate ().checkServerTrusted (chain, authType);
+    }
+
+    @Override
+    public void checkClientTrusted (final X509Certificate [] chain, final String authType, final Socket socket) throws CertificateException {
+        this.delegate ().checkClientTrusted (chain, authType, socket);
+    }
+
+    @Override
+    public void checkServerTrusted (final X509Certificate [] chain, final String authType, final Socket socket) throws CertificateException {
+        this.delegate ().checkServerTrusted (chain, authType, socket);
+    }
+
+    @Override
+    public void checkClientTrusted (final X509Certificate [] chain, final String authType, final SSLEngine engine) throws CertificateException {
+        this.delegate ().checkClientTrusted (chain, authType, engine);
+    }
+
+    @Override
+    public void checkServerTrusted (final X509Certificate [] chain, final String authType, final SSLEngine engine) throws CertificateException {
+        this.delegate ().checkServerTrusted (chain, authType, engine);
+    }
+
+    @Override
+    public X509Certificate [] getAcceptedIssuers () {
+        return this.delegate == null ? new X509Certificate [0] : this.delegate.getAcceptedIssuers ();
+    }
+}
@@ -1,13 +1,14 @@
 package org.toilelibre.libe.curl;
 
-import org.apache.commons.cli.*;
 import org.apache.http.*;
 import org.apache.http.impl.client.*;
 import org.apache.http.protocol.*;
 
 import java.io.*;
 import java.lang.reflect.*;
+import java.net.*;
 import java.util.*;
+import java.util.concurrent.*;
 import java.util.function.*;
 
 import static java.util.Arrays.*;
@@ -20,21 +21,44 @@ final class InterceptorsBinder {
     private static final BiFunction<HttpRequest, Supplier<HttpResponse>, HttpResponse> EXAMPLE
             = ((request, responseSupplier) -> responseSupplier.get ());
 
-    private static Type EXAMPLE_TYPE;
+    private static final Map<String, BiFunction<HttpRequest, Supplier<HttpResponse>, HttpResponse>> REGISTERED_INTERCEPTORS
+            = new ConcurrentHashMap<> ();
 
-    static {
-        try {
-            EXAMPLE_TYPE = InterceptorsBinder.class.getDeclaredField ("EXAMPLE").getGenericType ();
-        } catch (NoSuchFieldException e) {
-            throw new Curl.CurlException (new IllegalArgumentException (e));
+    /**
+     * Only initialized when a --interceptor is looked up, the other commands skip the reflection.
+     */
+    private static final class ExampleType {
+        private static final Type VALUE;
+
+        static {
+            try {
+                VALUE = InterceptorsBinder.class.getDeclaredField ("EXAMPLE").getGenericType ();
+            } catch (NoSuchFieldException e) {
+                throw new Curl.CurlException (new IllegalArgumentException (e));
+            }
         }
     }
 
+    /**
+     * The registered names are found before any reflection (which is not available in a native image).
+     * @param interceptor null to unregister the name
+     */
+    static void register (final String name, final BiFunction<HttpRequest, Supplier<HttpResponse>, HttpResponse> interceptor) {
+        if (interceptor == null) {
+            REGISTERED_INTERCEPTORS.remove (name);
+            return;
+        }
+        REGISTERED_INTERCEPTORS.put (name, interceptor);
+    }
+
     @SuppressWarnings ("unchecked")
-    static void handleInterceptors (CommandLine commandLine, HttpClientBuilder executor, List<BiFunction<HttpRequest, Supplier<HttpResponse>, HttpResponse>> additionalInterceptors) {
+    static void handleInterceptors (ParsedCommand commandLine, HttpClientBuilder executor, List<BiFunction<HttpRequest, Supplier<HttpResponse>, HttpResponse>> additionalInterceptors) {
         final List<BiFunction<HttpRequest, Supplier<HttpResponse>, HttpResponse>> interceptors =
                 concat (stream (Optional.ofNullable (commandLine.getOptionValues (Arguments.INTERCEPTOR.getOpt ())).orElse (new String[0]))
                         .map (methodName -> {
+                            final BiFunction<HttpRequest, Supplier<HttpResponse>, HttpResponse> registered =
+                                    REGISTERED_INTERCEPTORS.get (methodName);
+                            if (registered != null) return registered;
                             final Class<?> targetClass;
                             try {
                                 targetClass = Class.forName (methodName.split ("::")[0]);
@@ -51,7 +75,7 @@ final class InterceptorsBinder {
                             try {
                                 final BiFunction<HttpRequest, Supplier<HttpResponse>, HttpResponse> candidate =
                                         stream (targetClass.getDeclaredFields ()).filter (f ->
-                                                EXAMPLE_TYPE.equals (f.getGenericType ()))
+                                                ExampleType.VALUE.equals (f.getGenericType ()))
                                                 .findFirst ()
                                                 .map (f -> {
                                                     try {
@@ -85,16 +109,21 @@ final class InterceptorsBinder {
         executor.setRequestExecutor (new HttpRequestExecutor () {
             @Override
             public HttpResponse execute (HttpRequest request, HttpClientConnection connection, HttpContext context) {
-                Supplier<HttpResponse> executor = () -> {
+                Supplier<HttpResponse> executor = () -> AddressBalancer.whileOutstanding (remoteAddressOf (connection), () -> {
                     try {
                         return super.execute (request, connection, context);
                     } catch (IOException | HttpException e) {
                         throw new Curl.CurlException (e);
                     }
-                };
+                });
                 return loop (request, executor, interceptors);
             }
 
+            InetAddress remoteAddressOf (HttpClientConnection connection) {
+                return connection instanceof HttpInetConnection ?
+                        ((HttpInetConnection) connection).getRemoteAddress () : null;
+            }
+
             HttpResponse loop (HttpRequest request, Supplier<HttpResponse> realCall,
                               List<BiFunction<HttpRequest, Supplier<HttpResponse>, HttpResponse>> remainingInterceptors) {
                 if (remainingInterceptors.size () > 0) {
@@ -0,0 +1,54 @@
+package org.toilelibre.libe.curl;
+
+import javax.lang.model.*;
+import java.util.*;
+import java.util.regex.*;
+
+/**
+ * The name of the {@link Curl.CurlArgumentsBuilder} method of an option name
+ * (-X : xUpperCase, --tlsv1.2 : tlsv1two, --interface : interfaceOption).
+ */
+final class OptionMethodNames {
+
+    private static final Pattern      WORD_SEPARATOR = Pattern.compile ("-([a-zA-Z])");
+    private static final Pattern      DIGITS_PATTERN = Pattern.compile ("-([0-9]+)");
+    private static final List<String> DIGITS         = Arrays.asList ("zero", "one", "two", "three", "four", "five", "six", "seven", "eight", "nine");
+
+    static String methodNameOf (final String opt) {
+        if ((opt.length () == 1) && (opt.charAt (0) >= 'A') && (opt.charAt (0) <= 'Z')) {
+            return opt.toLowerCase () + "UpperCase";
+        }
+
+        final String lowerCased = ("" + Character.toLowerCase (opt.charAt (0)) + opt.substring (1)).replace ('.', '-');
+        final String notStartingWithADigitAndLowerCased = removeLeadingDigits ('-' + lowerCased);
+        final String methodName = capitalizeParts (notStartingWithADigitAndLowerCased.replaceAll ("-", ""));
+        // --interface
+        return SourceVersion.isKeyword (methodName) ? methodName + "Option" : methodName;
+    }
+
+    private static String removeLeadingDigits (final String lowerCased) {
+        final StringBuffer result = new StringBuffer ();
+        final Matcher matcher = DIGITS_PATTERN.matcher (lowerCased);
+
+        while (matcher.find ()) {
+            final StringBuilder replacement = new StringBuilder ();
+            for (int i = 0; i < matcher.group (1).length (); i++) {
+                replacement.append (DIGITS.get (matcher.group (1).charAt (i) - '0'));
+            }
+            matcher.appendReplacement (result, replacement.toString ());
+        }
+        matcher.appendTail (result);
+        return result.toString ();
+    }
+
+    private static String capitalizeParts (final String notStartingWithADigitAndLowerCased) {
+        final StringBuffer result = new StringBuffer ();
+        final Matcher matcher = WORD_SEPARATOR.matcher (notStartingWithADigitAndLowerCased);
+
+        while (matcher.find ()) {
+            matcher.appendReplacement (result, matcher.group (1).toUpperCase ());
+        }
+        matcher.appendTail (result);
+        return result.toString ();
+    }
+}
@@ -0,0 +1,94 @@
+package org.toilelibre.libe.curl;
+
+import org.apache.commons.cli.*;
+
+import java.util.*;
+
+/**
+ * The options of {@link Arguments}, numbered in their declaration order.
+ * The names are found in open addressing tables, computed once, without any allocation.
+ */
+final class OptionsTable {
+
+    static final Option [] OPTIONS = Arguments.ALL_OPTIONS.getOptions ().toArray (new Option [0]);
+
+    private static final NameTable SHORT_NAMES = new NameTable (false);
+    private static final NameTable LONG_NAMES  = new NameTable (true);
+
+    /**
+     * @return the number of the option with this name (short name first, then long name), or -1
+     */
+    static int indexOf (final String name) {
+        final String cleanName = withoutLeadingHyphens (name);
+        final int index = SHORT_NAMES.indexOf (cleanName);
+        return index != -1 ? index : LONG_NAMES.indexOf (cleanName);
+    }
+
+    static int indexOfShortName (final String name) {
+        return SHORT_NAMES.indexOf (withoutLeadingHyphens (name));
+    }
+
+    static int indexOfLongName (final String name) {
+        return LONG_NAMES.indexOf (withoutLeadingHyphens (name));
+    }
+
+    /**
+     * @return the long names starting with this prefix (only the exact match, when there is one)
+     */
+    static List<String> matchingLongNames (final String prefix) {
+        final String cleanPrefix = withoutLeadingHyphens (prefix);
+        if (LONG_NAMES.indexOf (cleanPrefix) != -1) {
+            return Collections.singletonList (cleanPrefix);
+        }
+        final List<String> matchingNames = new ArrayList<> (2);
+        for (final Option option : OPTIONS) {
+            if (option.getLongOpt () != null && option.getLongOpt ().startsWith (cleanPrefix)) {
+                matchingNames.add (option.getLongOpt ());
+            }
+        }
+        return matchingNames;
+    }
+
+    static String withoutLeadingHyphens (final String name) {
+        if (name.startsWith ("--")) {
+            return name.substring (2);
+        }
+        return name.startsWith ("-") ? name.substring (1) : name;
+    }
+
+    private static final class NameTable {
+        private final String [] names;
+        private final int []    indexes;
+        private final int       mask;
+
+        NameTable (final boolean longNames) {
+            final int size = Integer.highestOneBit (OPTIONS.length * 4 - 1) << 1;
+            this.names = new String [size];
+            this.indexes = new int [size];
+            this.mask = size - 1;
+            for (int i = 0 ; i < OPTIONS.length ; i++) {
+                final String name = longNames ? OPTIONS [i].getLongOpt () : OPTIONS [i].getOpt ();
+                if (name == null || this.indexOf (name) != -1) {
+                    continue;
+                }
+                int slot = name.hashCode () & this.mask;
+                while (this.names [slot] != null) {
+                    slot = (slot + 1) & this.mask;
+                }
+                this.names [slot] = name;
+                this.indexes [slot] = i;
+            }
+        }
+
+        int indexOf (final String name) {
+            int slot = name.hashCode () & this.mask;
+            while (this.names [slot] != null) {
+                if (this.names [slot] == name || this.names [slot].equals (name)) {
+                    return this.indexes [slot];
+                }
+                slot = (slot + 1) & this.mask;
+            }
+            return -1;
+        }
+    }
+}
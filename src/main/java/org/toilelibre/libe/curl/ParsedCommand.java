@@ -0,0 +1,85 @@
+package org.toilelibre.libe.curl;
+
+import org.apache.commons.cli.*;
+
+import java.util.*;
+
+/**
+ * The options and the arguments of a command once parsed (see {@link ReadArguments}).
+ * The values of each option are stored at the number of the option in the {@link OptionsTable},
+ * so that the accessors are array reads. The same accessors as the commons-cli CommandLine.
+ */
+final class ParsedCommand {
+
+    static final String [] NO_VALUES = new String [0];
+
+    private final String [][] values;
+    private final String []   args;
+
+    /**
+     * @param values the values of each option by option number, null when the option is absent
+     */
+    ParsedCommand (final String [][] values, final String [] args) {
+        this.values = values;
+        this.args = args;
+    }
+
+    /**
+     * @return the values of an option, with one more
+     */
+    static String [] withValue (final String [] values, final String value) {
+        final String [] previousValues = values == null ? NO_VALUES : values;
+        final String [] newValues = Arrays.copyOf (previousValues, previousValues.length + 1);
+        newValues [previousValues.length] = value;
+        return newValues;
+    }
+
+    boolean hasOption (final String opt) {
+        final int index = OptionsTable.indexOf (opt);
+        return index != -1 && this.values [index] != null;
+    }
+
+    /**
+     * @return the first value of the option, or null
+     */
+    String getOptionValue (final String opt) {
+        final int index = OptionsTable.indexOf (opt);
+        return index == -1 || this.values [index] == null || this.values [index].length == 0 ? null : this.values [index] [0];
+    }
+
+    /**
+     * @return all the values of the option (for the repeated ones), or null
+     */
+    String [] getOptionValues (final String opt) {
+        final int index = OptionsTable.indexOf (opt);
+        return index == -1 || this.values [index] == null || this.values [index].length == 0 ? null : this.values [index].clone ();
+    }
+
+    /**
+     * @return the options found in the command, in the {@link Arguments} order
+     */
+    Option [] getOptions () {
+        final List<Option> options = new ArrayList<> ();
+        for (int i = 0 ; i < this.values.length ; i++) {
+            if (this.values [i] != null) {
+                options.add (OptionsTable.OPTIONS [i]);
+            }
+        }
+        return options.toArray (new Option [0]);
+    }
+
+    String [] getArgs () {
+        return this.args.clone ();
+    }
+
+    @Override
+    public String toString () {
+        final StringBuilder result = new StringBuilder ("ParsedCommand[");
+        for (int i = 0 ; i < this.values.length ; i++) {
+            if (this.values [i] != null) {
+                result.append ("--").append (OptionsTable.OPTIONS [i].getLongOpt ()).append (Arrays.toString (this.values [i])).append (", ");
+            }
+        }
+        return result.append ("args=").append (Arrays.toString (this.args)).append (']').toString ();
+    }
+}
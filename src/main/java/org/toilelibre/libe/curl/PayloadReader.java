@@ -1,6 +1,5 @@
 package org.toilelibre.libe.curl;
 
-import org.apache.commons.cli.*;
 import org.apache.http.entity.*;
 
 import java.io.*;
@@ -17,7 +16,7 @@ final class PayloadReader {
     private static final Pattern CONTENT_TYPE_ENCODING =
             Pattern.compile ("\\s*content-type\\s*:[^;]+;\\s*charset\\s*=\\s*(.*)", Pattern.CASE_INSENSITIVE);
 
-    static AbstractHttpEntity getData (final CommandLine commandLine) {
+    static AbstractHttpEntity getData (final ParsedCommand commandLine) {
         if (commandLine.hasOption (Arguments.DATA.getOpt ())) {
             return simpleDataFrom (commandLine);
         }
@@ -36,7 +35,7 @@ final class PayloadReader {
         return null;
     }
 
-    private static StringEntity simpleDataFrom (CommandLine commandLine) {
+    private static StringEntity simpleDataFrom (ParsedCommand commandLine) {
         try {
             Charset encoding = charsetReadFromThe (commandLine).orElse (StandardCharsets.UTF_8);
             return new StringEntity (commandLine.getOptionValue (Arguments.DATA.getOpt ()), encoding);
@@ -45,15 +44,20 @@ final class PayloadReader {
         }
     }
 
-    private static InputStreamEntity binaryDataFrom (CommandLine commandLine) {
+    private static AbstractHttpEntity binaryDataFrom (ParsedCommand commandLine) {
         final String value = commandLine.getOptionValue (Arguments.DATA_BINARY.getOpt ());
         if (value.indexOf ('@') == 0) {
-            return new InputStreamEntity (new ByteArrayInputStream (dataBehind (value)));
+            final File file = new File (value.substring (1).trim ());
+            if (!isFile (value) || !file.canRead ()) {
+                // fails while the request is built, like when the file was read in memory
+                return new InputStreamEntity (new ByteArrayInputStream (dataBehind (value)));
+            }
+            return new FileEntity (file);
         }
         return new InputStreamEntity (new ByteArrayInputStream (value.getBytes ()));
     }
 
-    private static Optional<Charset> charsetReadFromThe (CommandLine commandLine) {
+    private static Optional<Charset> charsetReadFromThe (ParsedCommand commandLine) {
 
         return stream (Optional.ofNullable (commandLine.getOptionValues (Arguments.HEADER.getOpt ())).orElse (new String[0]))
                 .filter (header -> header != null && CONTENT_TYPE_ENCODING.asPredicate ().test (header))
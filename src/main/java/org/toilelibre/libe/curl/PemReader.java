@@ -1,17 +1,21 @@
 package org.toilelibre.libe.curl;
 
 import java.io.*;
+import java.nio.*;
+import java.nio.charset.*;
 import java.util.*;
 
 /**
- * A generic PEM reader, based on the format outlined in RFC 1421
+ * A generic PEM reader, based on the format outlined in RFC 1421.
+ * Reads the objects directly from the bytes of the file, the bundles of hundreds of certificates are not copied line by line.
  */
-final class PemReader extends BufferedReader {
+final class PemReader {
 
     static class PemObject {
 
         private final byte []         content;
         private final String          type;
+        private final boolean         encrypted;
 
         /**
          * Generic constructor for object with headers.
@@ -20,10 +24,13 @@ final class PemReader extends BufferedReader {
          *            pem object type.
          * @param content
          *            the binary content of the object.
+         * @param encrypted
+         *            true if the headers say that the content is encrypted (Proc-Type: 4,ENCRYPTED)
          */
-        PemObject (final String type, final byte [] content) {
+        PemObject (final String type, final byte [] content, final boolean encrypted) {
             this.type = type;
             this.content = content;
+            this.encrypted = encrypted;
         }
 
         byte [] getContent () {
@@ -34,58 +41,90 @@ final class PemReader extends BufferedReader {
             return this.type;
         }
 
+        boolean isEncrypted () {
+            return this.encrypted;
+        }
     }
 
-    private static final String BEGIN = "-----BEGIN ";
+    private static final byte [] BEGIN     = "-----BEGIN ".getBytes (StandardCharsets.US_ASCII);
 
-    private static final String END   = "-----END ";
+    private static final byte [] END       = "-----END ".getBytes (StandardCharsets.US_ASCII);
 
-    PemReader (final Reader reader) {
-        super (reader);
-    }
+    private static final byte [] DASHES    = "-----".getBytes (StandardCharsets.US_ASCII);
 
-    private PemObject loadObject (final String type) throws IOException {
-        String line;
-        final String endMarker = PemReader.END + type;
-        final StringBuilder stringBuffer = new StringBuilder ();
+    private static final byte [] ENCRYPTED = "ENCRYPTED".getBytes (StandardCharsets.US_ASCII);
 
-        while ((line = this.readLine ()) != null) {
-            if (line.contains (":")) {
-                //there is an header. But we don't need them
-                continue;
-            }
+    private final byte [] bytes;
+    private int           position;
 
-            if (line.contains (endMarker)) {
-                break;
-            }
+    PemReader (final byte [] bytes) {
+        this.bytes = bytes;
+    }
 
-            stringBuffer.append (line.trim ());
+    PemObject readPemObject () throws IOException {
+        final int begin = this.indexOf (PemReader.BEGIN, this.position, this.bytes.length);
+        if (begin == -1) {
+            this.position = this.bytes.length;
+            return null;
         }
 
-        if (line == null) {
-            throw new IOException (endMarker + " not found");
+        final int typeStart = begin + PemReader.BEGIN.length;
+        final int typeEnd = this.indexOf (PemReader.DASHES, typeStart, this.lineEnd (typeStart));
+        if (typeEnd <= typeStart) {
+            throw new IOException ("Invalid PEM: the type of the object is missing");
         }
+        final String type = new String (this.bytes, typeStart, typeEnd - typeStart, StandardCharsets.US_ASCII);
+        final byte [] endMarker = (new String (PemReader.END, StandardCharsets.US_ASCII) + type).getBytes (StandardCharsets.US_ASCII);
 
-        return new PemObject (type, Base64.getDecoder ().decode (stringBuffer.toString ()));
-    }
-
-    PemObject readPemObject () throws IOException {
-        String line = this.readLine ();
+        int contentStart = this.nextLine (typeEnd);
+        final int end = this.indexOf (endMarker, contentStart, this.bytes.length);
+        if (end == -1) {
+            throw new IOException (new String (endMarker, StandardCharsets.US_ASCII) + " not found");
+        }
 
-        while ((line != null) && !line.startsWith (PemReader.BEGIN)) {
-            line = this.readLine ();
+        boolean encrypted = false;
+        while (contentStart < end && this.indexOf (new byte [] {':'}, contentStart, Math.min (this.lineEnd (contentStart), end)) != -1) {
+            //there is an header. We only need to know if the content is encrypted
+            encrypted |= this.indexOf (PemReader.ENCRYPTED, contentStart, this.lineEnd (contentStart)) != -1;
+            contentStart = this.nextLine (contentStart);
         }
 
-        if (line != null) {
-            line = line.substring (PemReader.BEGIN.length ());
-            final int index = line.indexOf ('-');
-            final String type = line.substring (0, index);
+        this.position = end + endMarker.length;
+        final ByteBuffer content = Base64.getMimeDecoder ().decode (ByteBuffer.wrap (this.bytes, contentStart, end - contentStart));
+        return new PemObject (type, content.remaining () == content.capacity () && content.arrayOffset () == 0 ?
+                content.array () : Arrays.copyOfRange (content.array (), content.arrayOffset () + content.position (),
+                content.arrayOffset () + content.limit ()), encrypted);
+    }
 
-            if (index > 0) {
-                return this.loadObject (type);
+    private int indexOf (final byte [] searched, final int from, final int to) {
+        for (int i = from ; i <= to - searched.length ; i++) {
+            int j = 0;
+            while (j < searched.length && this.bytes [i + j] == searched [j]) {
+                j++;
+            }
+            if (j == searched.length) {
+                return i;
             }
         }
+        return -1;
+    }
 
-        return null;
+    private int lineEnd (final int from) {
+        int i = from;
+        while (i < this.bytes.length && this.bytes [i] != '\n' && this.bytes [i] != '\r') {
+            i++;
+        }
+        return i;
+    }
+
+    private int nextLine (final int from) {
+        int i = this.lineEnd (from);
+        if (i < this.bytes.length && this.bytes [i] == '\r') {
+            i++;
+        }
+        if (i < this.bytes.length && this.bytes [i] == '\n') {
+            i++;
+        }
+        return i;
     }
 }
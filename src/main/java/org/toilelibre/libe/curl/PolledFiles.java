@@ -0,0 +1,154 @@
+package org.toilelibre.libe.curl;
+
+import java.io.*;
+import java.lang.ref.*;
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.function.*;
+import java.util.zip.*;
+
+/**
+ * The files of a TLS material, polled in the background every {@link #POLLING_PERIOD} by its reloading
+ * key or trust manager : the date and the size of each file are compared, and its checksum when it was read
+ * in the same tick as its last modification (a new certificate of the same size could be written later with the same date).
+ */
+final class PolledFiles {
+
+    static final Duration POLLING_PERIOD = Duration.ofSeconds (10);
+
+    /**
+     * The modification dates of some file systems are precise to the second only, or to two seconds (FAT).
+     */
+    private static final long                     TIMESTAMP_GRANULARITY_MILLIS = 2000;
+    private static final ScheduledExecutorService POLLER = Executors.newSingleThreadScheduledExecutor (runnable -> {
+        final Thread thread = new Thread (runnable, "curl-ssl-material-reloader");
+        thread.setDaemon (true);
+        return thread;
+    });
+
+    private final Supplier<List<File>>          files;
+    private final Map<Object, Consumer<Object>> listeners = new WeakHashMap<> ();
+    private volatile Map<File, FileVersion>     versions;
+
+    /**
+     * @param files read again at each poll (the files of a directory can come and go)
+     */
+    PolledFiles (final Supplier<List<File>> files) {
+        this.files = files;
+        this.versions = versionsOf (files.get (), Collections.emptyMap ());
+    }
+
+    /**
+     * Reloads the owner in the background until it is not referenced anymore.
+     */
+    static <T> void poll (final T owner, final Consumer<T> reload, final Duration pollingPeriod) {
+        final WeakReference<T> reference = new WeakReference<> (owner);
+        final AtomicReference<ScheduledFuture<?>> polling = new AtomicReference<> ();
+        polling.set (POLLER.scheduleWithFixedDelay (() -> {
+            final T referencedOwner = reference.get ();
+            if (referencedOwner == null) {
+                polling.get ().cancel (false);
+                return;
+            }
+            reload.accept (referencedOwner);
+        }, pollingPeriod.toMillis (), pollingPeriod.toMillis (), TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * @return the new versions of the files, or null if none of them has changed
+     */
+    Map<File, FileVersion> changes () {
+        final Map<File, FileVersion> knownVersions = this.versions;
+        final Map<File, FileVersion> newVersions = versionsOf (this.files.get (), knownVersions);
+        if (!newVersions.keySet ().equals (knownVersions.keySet ())) {
+            return newVersions;
+        }
+        for (final Map.Entry<File, FileVersion> newVersion : newVersions.entrySet ()) {
+            if (newVersion.getValue ().isChangedSince (knownVersions.get (newVersion.getKey ()))) {
+                return newVersions;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Once the new versions are loaded, the listeners are called : until then, the changes are loaded again at each poll.
+     */
+    void reloaded (final Map<File, FileVersion> newVersions) {
+        this.versions = newVersions;
+        final Map<Object, Consumer<Object>> currentListeners;
+        synchronized (this.listeners) {
+            currentListeners = new HashMap<> (this.listeners);
+        }
+        currentListeners.forEach ((owner, listener) -> listener.accept (owner));
+    }
+
+    /**
+     * @param owner the listener is dropped when its owner is not referenced anymore (the listener must not reference it)
+     */
+    @SuppressWarnings ("unchecked")
+    <T> void onReload (final T owner, final Consumer<T> listener) {
+        synchronized (this.listeners) {
+            this.listeners.put (owner, (Consumer<Object>) listener);
+        }
+    }
+
+    @Override
+    public String toString () {
+        return this.versions.keySet ().toString ();
+    }
+
+    private static Map<File, FileVersion> versionsOf (final List<File> files, final Map<File, FileVersion> knownVersions) {
+        final Map<File, FileVersion> versions = new LinkedHashMap<> ();
+        for (final File file : files) {
+            versions.put (file, FileVersion.of (file, knownVersions.get (file)));
+        }
+        return versions;
+    }
+
+    static final class FileVersion {
+        private final long    lastModified;
+        private final long    length;
+        private final boolean sameTick;
+        private final long    checksum;
+
+        private FileVersion (final long lastModified, final long length, final boolean sameTick, final long checksum) {
+            this.lastModified = lastModified;
+            this.length = length;
+            this.sameTick = sameTick;
+            this.checksum = checksum;
+        }
+
+        static FileVersion of (final File file, final FileVersion knownVersion) {
+            final long readAt = System.currentTimeMillis ();
+            final long lastModified = file.lastModified ();
+            final long length = file.length ();
+            final boolean sameTick = readAt - lastModified < TIMESTAMP_GRANULARITY_MILLIS;
+            final boolean sameDateAndSize = knownVersion != null && knownVersion.lastModified == lastModified &&
+                    knownVersion.length == length;
+            return new FileVersion (lastModified, length, sameTick,
+                    sameTick || sameDateAndSize && knownVersion.sameTick ? checksumOf (file) : 0);
+        }
+
+        boolean isChangedSince (final FileVersion knownVersion) {
+            return knownVersion.lastModified != this.lastModified || knownVersion.length != this.length ||
+                    knownVersion.sameTick && knownVersion.checksum != this.checksum;
+        }
+
+        private static long checksumOf (final File file) {
+            final CRC32 checksum = new CRC32 ();
+            if (!file.isFile ()) {
+                // missing for now (or a directory), the date and the size tell when it comes back
+                return checksum.getValue ();
+            }
+            try {
+                checksum.update (IOUtils.toByteArray (file));
+            } catch (final IOException e) {
+                // not readable for now, the date and the size tell when it changes
+            }
+            return checksum.getValue ();
+        }
+    }
+}
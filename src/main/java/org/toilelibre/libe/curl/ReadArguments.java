@@ -4,31 +4,22 @@ import org.apache.commons.cli.*;
 import org.toilelibre.libe.curl.Curl.*;
 
 import java.util.*;
-import java.util.regex.*;
-import java.util.stream.*;
-
-import static java.lang.Integer.*;
-import static java.util.Optional.*;
 
 final class ReadArguments {
-    private static final Pattern PLACEHOLDER_REGEX = Pattern.compile ("^\\$curl_placeholder_[0-9]+$");
-    private static final Map<String, List<String>> CACHED_ARGS_MATCHES = new HashMap<> ();
+    private static final ArgumentsCache CACHED_ARGS_MATCHES =
+            new ArgumentsCache (ArgumentsCache.DEFAULT_MAX_WEIGHT, ArgumentsCache.DEFAULT_MAX_COMMAND_LENGTH);
 
-    static CommandLine getCommandLineFromRequest (final String requestCommand, final List<String> placeholderValues) {
+    static ParsedCommand getCommandLineFromRequest (final String requestCommand, final List<String> placeholderValues) {
         return getCommandLineFromRequest (requestCommand, placeholderValues, CACHED_ARGS_MATCHES);
     }
 
-    static CommandLine getCommandLineFromRequest (final String requestCommand, final List<String> placeholderValues,
-        final Map<String, List<String>> argMatches) {
-
-        // configure a parser
-        final DefaultParser parser = new DefaultParser ();
+    static ParsedCommand getCommandLineFromRequest (final String requestCommand, final List<String> placeholderValues,
+        final ArgumentsCache argMatches) {
 
-        final String requestCommandWithoutBasename = requestCommand.replaceAll ("^[ ]*curl[ ]*", " ") + " ";
-        final String[] args = ReadArguments.getArgsFromCommand (requestCommandWithoutBasename, placeholderValues, argMatches);
-        final CommandLine commandLine;
+        final String[] args = ReadArguments.getArgsFromCommand (requestCommand, placeholderValues, argMatches);
+        final ParsedCommand commandLine;
         try {
-            commandLine = parser.parse (Arguments.ALL_OPTIONS, args);
+            commandLine = ReadArguments.parse (args);
         } catch (final ParseException e) {
             new HelpFormatter ().printHelp ("curl [options] url", Arguments.ALL_OPTIONS);
             throw new CurlException (e);
@@ -36,47 +27,198 @@ final class ReadArguments {
         return commandLine;
     }
 
-    private static List<String> asMatches (Pattern regex, String input) {
-        Matcher matcher = regex.matcher (input);
-        List<String> result = new ArrayList<> ();
-        while (matcher.find ()){
-            result.add (matcher.group (1));
+    private static String[] getArgsFromCommand (final String requestCommand,
+                                                final List<String> placeholderValues,
+                                                final ArgumentsCache argMatches) {
+        final List<String> arguments = argMatches.computeIfAbsent (ArgumentsCache.canonical (requestCommand),
+                ArgumentsTokenizer::tokenize);
+        final String[] args = new String [arguments.size ()];
+        for (int i = 0 ; i < args.length ; i++) {
+            args [i] = ArgumentsTokenizer.withPlaceholders (arguments.get (i), placeholderValues);
         }
-        return result;
+        return args;
     }
 
+    /**
+     * Same rules as the commons-cli DefaultParser (abbreviated long options, -Hvalue, -kL, --option=value, --),
+     * but the option names are looked up in the {@link OptionsTable} and the values are stored by option number.
+     * The values are taken verbatim (the tokenizer has already removed the quotes).
+     */
+    static ParsedCommand parse (final String [] tokens) throws ParseException {
+        final Parsing parsing = new Parsing ();
+        for (final String token : tokens) {
+            parsing.handleToken (token);
+        }
+        parsing.checkValue ();
+        return new ParsedCommand (parsing.values, parsing.args.toArray (new String [0]));
+    }
 
-    private static String[] getArgsFromCommand (final String requestCommandWithoutBasename,
-                                                final List<String> placeholderValues,
-                                                final Map<String, List<String>> argMatches) {
-        final String requestCommandInput = requestCommandWithoutBasename.replaceAll ("\\s+-([a-zA-Z0-9])\\s+", " -$1 ");
-        final List<String> matches;
-        if (argMatches.containsKey (requestCommandInput)) {
-            matches = argMatches.get (requestCommandInput);
-        }else{
-            matches = asMatches (Arguments.ARGS_SPLIT_REGEX, requestCommandInput);
-            argMatches.put (requestCommandInput, matches);
-        }
-
-        return ofNullable (matches).map (List :: stream).orElse (Stream.empty ()).map (match -> {
-            String argument = ReadArguments.removeSlashes (match.trim ());
-            if (PLACEHOLDER_REGEX.matcher (argument).matches ())
-                return placeholderValues.get (parseInt (argument.substring ("$curl_placeholder_".length ())));
-            else return argument;
-
-        }).toArray (String[] ::new);
+    private static final class Parsing {
+        private final String [][]  values  = new String [OptionsTable.OPTIONS.length] [];
+        private final List<String> args    = new ArrayList<> ();
+        private int                current = -1;
+        private boolean            skipParsing;
+
+        void handleToken (final String token) throws ParseException {
+            if (this.skipParsing) {
+                this.args.add (token);
+            } else if ("--".equals (token)) {
+                this.skipParsing = true;
+            } else if (this.current != -1 && isArgument (token)) {
+                this.addValue (this.current, token);
+            } else if (token.startsWith ("--")) {
+                if (token.indexOf ('=') == -1) {
+                    this.handleLongOptionWithoutEqual (token);
+                } else {
+                    this.handleLongOptionWithEqual (token);
+                }
+            } else if (token.startsWith ("-") && !"-".equals (token)) {
+                this.handleShortAndLongOption (token);
+            } else {
+                this.handleUnknownToken (token);
+            }
+        }
+
+        void checkValue () throws MissingArgumentException {
+            if (this.current != -1) {
+                throw new MissingArgumentException (OptionsTable.OPTIONS [this.current]);
+            }
+        }
+
+        private void handleLongOptionWithoutEqual (final String token) throws ParseException {
+            final List<String> matchingNames = OptionsTable.matchingLongNames (token);
+            if (matchingNames.isEmpty ()) {
+                this.handleUnknownToken (token);
+            } else if (matchingNames.size () > 1) {
+                throw new AmbiguousOptionException (token, matchingNames);
+            } else {
+                this.handleOption (OptionsTable.indexOf (matchingNames.get (0)));
+            }
+        }
+
+        private void handleLongOptionWithEqual (final String token) throws ParseException {
+            final int equals = token.indexOf ('=');
+            final String name = token.substring (0, equals);
+            final List<String> matchingNames = OptionsTable.matchingLongNames (name);
+            if (matchingNames.isEmpty ()) {
+                this.handleUnknownToken (token);
+            } else if (matchingNames.size () > 1) {
+                throw new AmbiguousOptionException (name, matchingNames);
+            } else {
+                this.handleOptionWithValue (OptionsTable.indexOf (matchingNames.get (0)), token.substring (equals + 1), token);
+            }
+        }
+
+        private void handleShortAndLongOption (final String token) throws ParseException {
+            final String name = OptionsTable.withoutLeadingHyphens (token);
+            final int equals = name.indexOf ('=');
+            final int index = OptionsTable.indexOfShortName (name);
+            if (index != -1) {
+                this.handleOption (index);
+            } else if (name.length () == 1) {
+                this.handleUnknownToken (token);
+            } else if (equals == -1 && !OptionsTable.matchingLongNames (name).isEmpty ()) {
+                this.handleLongOptionWithoutEqual (token);
+            } else if (equals == -1) {
+                final int prefixIndex = longPrefixOf (name);
+                if (prefixIndex != -1 && OptionsTable.OPTIONS [prefixIndex].hasArg ()) {
+                    this.handleOption (prefixIndex);
+                    this.addValue (prefixIndex, name.substring (OptionsTable.OPTIONS [prefixIndex].getLongOpt ().length ()));
+                } else {
+                    this.handleConcatenatedOptions (token);
+                }
+            } else if (equals == 1) {
+                this.handleOptionWithValue (OptionsTable.indexOf (name.substring (0, 1)), name.substring (2), token);
+            } else {
+                this.handleLongOptionWithEqual (token);
+            }
+        }
+
+        /**
+         * -kL is -k -L, and -Hvalue is -H value.
+         */
+        private void handleConcatenatedOptions (final String token) throws ParseException {
+            for (int i = 1 ; i < token.length () ; i++) {
+                final int index = OptionsTable.indexOf (String.valueOf (token.charAt (i)));
+                if (index == -1) {
+                    this.handleUnknownToken (token);
+                    return;
+                }
+                this.handleOption (index);
+                if (this.current != -1 && token.length () != i + 1) {
+                    this.addValue (this.current, token.substring (i + 1));
+                    return;
+                }
+            }
+        }
+
+        private void handleOptionWithValue (final int index, final String value, final String token) throws ParseException {
+            if (index == -1 || !OptionsTable.OPTIONS [index].hasArg ()) {
+                this.handleUnknownToken (token);
+                return;
+            }
+            this.handleOption (index);
+            this.addValue (index, value);
+        }
+
+        private void handleOption (final int index) throws MissingArgumentException {
+            this.checkValue ();
+            if (this.values [index] == null) {
+                this.values [index] = ParsedCommand.NO_VALUES;
+            }
+            this.current = OptionsTable.OPTIONS [index].hasArg () ? index : -1;
+        }
+
+        private void handleUnknownToken (final String token) throws UnrecognizedOptionException {
+            if (token.startsWith ("-") && token.length () > 1) {
+                throw new UnrecognizedOptionException ("Unrecognized option: " + token, token);
+            }
+            this.args.add (token);
+        }
+
+        private void addValue (final int index, final String value) {
+            this.values [index] = ParsedCommand.withValue (this.values [index], value);
+            this.current = -1;
+        }
+    }
+
+    private static boolean isArgument (final String token) {
+        return !isOption (token) || isNegativeNumber (token);
     }
 
-    private static String removeSlashes (final String arg) {
-        if (arg.length () == 0) {
-            return arg;
+    private static boolean isOption (final String token) {
+        if (!token.startsWith ("-") || token.length () == 1) {
+            return false;
         }
-        if (arg.charAt (0) == '\"') {
-            return arg.substring (1, arg.length () - 1).replaceAll ("\\\"", "\"");
+        final int equals = token.indexOf ('=');
+        final String name = equals == -1 ? token : token.substring (0, equals);
+        final String shortName = name.substring (1);
+        return !OptionsTable.matchingLongNames (name).isEmpty () ||
+                OptionsTable.indexOfShortName (shortName) != -1 ||
+                !shortName.isEmpty () && OptionsTable.indexOfShortName (String.valueOf (shortName.charAt (0))) != -1;
+    }
+
+    private static boolean isNegativeNumber (final String token) {
+        try {
+            Double.parseDouble (token);
+            return true;
+        } catch (final NumberFormatException e) {
+            return false;
         }
-        if (arg.charAt (0) == '\'') {
-            return arg.substring (1, arg.length () - 1).replaceAll ("\\\'", "\'");
+    }
+
+    /**
+     * @return the option with the longest long name starting the token (but not the whole token), or -1
+     */
+    private static int longPrefixOf (final String name) {
+        int prefixIndex = -1;
+        for (int i = 0 ; i < OptionsTable.OPTIONS.length ; i++) {
+            final String longName = OptionsTable.OPTIONS [i].getLongOpt ();
+            if (longName != null && longName.length () > 1 && longName.length () <= name.length () - 2 && name.startsWith (longName) &&
+                    (prefixIndex == -1 || longName.length () > OptionsTable.OPTIONS [prefixIndex].getLongOpt ().length ())) {
+                prefixIndex = i;
+            }
         }
-        return arg;
+        return prefixIndex;
     }
 }
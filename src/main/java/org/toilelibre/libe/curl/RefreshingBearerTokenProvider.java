@@ -0,0 +1,122 @@
+package org.toilelibre.libe.curl;
+
+import org.toilelibre.libe.curl.Curl.*;
+import org.toilelibre.libe.curl.Curl.CurlArgumentsBuilder.CurlJavaOptions.*;
+
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.function.*;
+
+/**
+ * Caches the token of a provider : a token is used until {@link #EXPIRY_MARGIN} before its expiry,
+ * and from {@link #REFRESH_AHEAD} before its expiry a new one is asked in the background.
+ * Only one call to the provider is in flight at a time, the concurrent requests wait for it.
+ */
+final class RefreshingBearerTokenProvider implements Supplier<BearerToken> {
+
+    static final Duration EXPIRY_MARGIN = Duration.ofSeconds (10);
+    static final Duration REFRESH_AHEAD = Duration.ofSeconds (60);
+
+    /**
+     * The caches do not reference their provider : an entry goes away with the last reference to its provider.
+     */
+    private static final Map<Supplier<BearerToken>, TokenCache> CACHES =
+            Collections.synchronizedMap (new WeakHashMap<> ());
+
+    /**
+     * The providers usually block on a call to a token endpoint, they are kept out of the common pool.
+     */
+    private static final ExecutorService REFRESHER = Executors.newCachedThreadPool (runnable -> {
+        final Thread thread = new Thread (runnable, "curl-bearer-token-refresher");
+        thread.setDaemon (true);
+        return thread;
+    });
+
+    private final Supplier<BearerToken> provider;
+    private final Duration              expiryMargin;
+    private final Duration              refreshAhead;
+    private final TokenCache            cache;
+
+    RefreshingBearerTokenProvider (final Supplier<BearerToken> provider, final Duration expiryMargin,
+                                   final Duration refreshAhead) {
+        this (provider, expiryMargin, refreshAhead, new TokenCache ());
+    }
+
+    private RefreshingBearerTokenProvider (final Supplier<BearerToken> provider, final Duration expiryMargin,
+                                           final Duration refreshAhead, final TokenCache cache) {
+        this.provider = provider;
+        this.expiryMargin = expiryMargin;
+        this.refreshAhead = refreshAhead;
+        this.cache = cache;
+    }
+
+    /**
+     * The same provider always gets the same cache, even when the java options are built for each call.
+     */
+    static Supplier<BearerToken> of (final Supplier<BearerToken> provider) {
+        if (provider == null || provider instanceof RefreshingBearerTokenProvider) {
+            return provider;
+        }
+        return new RefreshingBearerTokenProvider (provider, EXPIRY_MARGIN, REFRESH_AHEAD,
+                CACHES.computeIfAbsent (provider, newProvider -> new TokenCache ()));
+    }
+
+    /**
+     * The provider given by the caller, which identifies the cache.
+     */
+    static Supplier<BearerToken> providerOf (final Supplier<BearerToken> provider) {
+        return provider instanceof RefreshingBearerTokenProvider ? ((RefreshingBearerTokenProvider) provider).provider : provider;
+    }
+
+    @Override
+    public BearerToken get () {
+        final BearerToken currentToken = this.cache.token;
+        final Instant now = Instant.now ();
+        if (currentToken != null && isBefore (now, currentToken, this.expiryMargin)) {
+            if (!isBefore (now, currentToken, this.refreshAhead)) {
+                this.refresh ();
+            }
+            return currentToken;
+        }
+        try {
+            return this.refresh ().join ();
+        } catch (final CompletionException e) {
+            throw e.getCause () instanceof CurlException ? (CurlException) e.getCause () : new CurlException (e.getCause ());
+        }
+    }
+
+    private CompletableFuture<BearerToken> refresh () {
+        final CompletableFuture<BearerToken> newRefresh = new CompletableFuture<> ();
+        while (!this.cache.refresh.compareAndSet (null, newRefresh)) {
+            final CompletableFuture<BearerToken> currentRefresh = this.cache.refresh.get ();
+            if (currentRefresh != null) {
+                return currentRefresh;
+            }
+        }
+        CompletableFuture.supplyAsync (this.provider, REFRESHER).whenComplete ((newToken, throwable) -> {
+            if (throwable == null && newToken != null) {
+                this.cache.token = newToken;
+            }
+            this.cache.refresh.set (null);
+            if (throwable != null) {
+                newRefresh.completeExceptionally (throwable instanceof CompletionException ? throwable.getCause () : throwable);
+            } else if (newToken == null) {
+                newRefresh.completeExceptionally (new IllegalStateException ("the bearer token provider returned no token"));
+            } else {
+                newRefresh.complete (newToken);
+            }
+        });
+        return newRefresh;
+    }
+
+    private static boolean isBefore (final Instant now, final BearerToken token, final Duration margin) {
+        return token.getExpiresAt () == null || now.isBefore (token.getExpiresAt ().minus (margin));
+    }
+
+    private static final class TokenCache {
+        private final AtomicReference<CompletableFuture<BearerToken>> refresh = new AtomicReference<> ();
+        private volatile BearerToken                                   token;
+    }
+}
@@ -0,0 +1,223 @@
+package org.toilelibre.libe.curl;
+
+import javax.net.ssl.*;
+import java.io.*;
+import java.net.*;
+import java.security.*;
+import java.security.cert.*;
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.atomic.*;
+import java.util.function.*;
+import java.util.logging.*;
+
+/**
+ * Serves the client credentials of the last version of their files : the files are polled (see {@link PolledFiles})
+ * and the key manager is rebuilt in the background when one of them changes, then swapped atomically.
+ * The established connections keep the credentials of their handshake, a failed reload keeps the previous ones
+ * (as well as a private key not matching its certificate, while only one of their files has been written).
+ * The aliases are prefixed by the generation of their key manager, so that a handshake running during a swap
+ * still gets the certificate chain and the private key of the same version.
+ */
+final class ReloadingX509KeyManager extends X509ExtendedKeyManager {
+
+    private static final String[] KEY_TYPES = {"RSA", "RSASSA-PSS", "EC", "DSA", "EdDSA", "Ed25519", "Ed448"};
+    private static final Logger   LOGGER    = Logger.getLogger (ReloadingX509KeyManager.class.getName ());
+
+    private final PolledFiles                              files;
+    private final Supplier<X509ExtendedKeyManager>         loader;
+    private final AtomicReference<Generation>              current;
+    private volatile Generation                            previous;
+
+    private ReloadingX509KeyManager (final List<File> files, final Supplier<X509ExtendedKeyManager> loader) {
+        this.files = new PolledFiles (() -> files);
+        this.loader = loader;
+        this.current = new AtomicReference<> (new Generation (0, loader.get ()));
+    }
+
+    /**
+     * Loads the key manager now, then polls its files until it is not referenced anymore.
+     */
+    static ReloadingX509KeyManager of (final List<File> files, final Supplier<X509ExtendedKeyManager> loader,
+                                       final Duration pollingPeriod) {
+        final ReloadingX509KeyManager keyManager = new ReloadingX509KeyManager (files, loader);
+        PolledFiles.poll (keyManager, ReloadingX509KeyManager::reloadIfChanged, pollingPeriod);
+        return keyManager;
+    }
+
+    /**
+     * @param owner the listener is called after each reload (in the polling thread) while its owner is referenced
+     */
+    <T> ReloadingX509KeyManager onReload (final T owner, final Consumer<T> listener) {
+        this.files.onReload (owner, listener);
+        return this;
+    }
+
+    /**
+     * @return true if a new version of the files has been loaded
+     */
+    boolean reloadIfChanged () {
+        final Map<File, PolledFiles.FileVersion> newVersions = this.files.changes ();
+        if (newVersions == null) {
+            return false;
+        }
+        final X509ExtendedKeyManager keyManager;
+        try {
+            keyManager = this.loader.get ();
+            checkKeyPairs (keyManager);
+        } catch (final RuntimeException | GeneralSecurityException e) {
+            // the versions stay the same : a file still being written is loaded again at the next poll
+            LOGGER.log (Level.WARNING, "could not reload the client credentials of " + this.files +
+                    ", the previous ones are kept", e);
+            return false;
+        }
+        final Generation replaced = this.current.get ();
+        this.previous = replaced;
+        this.current.set (new Generation (replaced.number + 1, keyManager));
+        LOGGER.info ("reloaded the client credentials of " + this.files);
+        this.files.reloaded (newVersions);
+        return true;
+    }
+
+    /**
+     * The certificate and the key are often written one after the other : each private key must match its certificate.
+     */
+    static void checkKeyPairs (final X509ExtendedKeyManager keyManager) throws GeneralSecurityException {
+        for (final String keyType : KEY_TYPES) {
+            final String[] aliases = keyManager.getClientAliases (keyType, null);
+            for (final String alias : aliases == null ? new String[0] : aliases) {
+                final PrivateKey privateKey = keyManager.getPrivateKey (alias);
+                final X509Certificate[] chain = keyManager.getCertificateChain (alias);
+                if (privateKey != null && chain != null && chain.length > 0 && !matches (privateKey, chain[0].getPublicKey ())) {
+                    throw new KeyException ("the private key " + alias + " does not match its certificate " +
+                            chain[0].getSubjectX500Principal ());
+                }
+            }
+        }
+    }
+
+    private static boolean matches (final PrivateKey privateKey, final PublicKey publicKey) throws GeneralSecurityException {
+        if (!privateKey.getAlgorithm ().equals (publicKey.getAlgorithm ())) {
+            return false;
+        }
+        final String algorithm = signatureAlgorithmOf (privateKey);
+        if (algorithm == null) {
+            return true;
+        }
+        final byte[] challenge = new byte[32];
+        new SecureRandom ().nextBytes (challenge);
+        final Signature signature = Signature.getInstance (algorithm);
+        signature.initSign (privateKey);
+        signature.update (challenge);
+        final byte[] signed = signature.sign ();
+        signature.initVerify (publicKey);
+        signature.update (challenge);
+        return signature.verify (signed);
+    }
+
+    private static String signatureAlgorithmOf (final PrivateKey privateKey) {
+        switch (privateKey.getAlgorithm ()) {
+            case "RSA":
+                return "SHA256withRSA";
+            case "EC":
+                return "SHA256withECDSA";
+            case "DSA":
+                return "SHA256withDSA";
+            case "EdDSA":
+            case "Ed25519":
+            case "Ed448":
+                return privateKey.getAlgorithm ();
+            default:
+                // no known way to check it, the handshake will tell
+                return null;
+        }
+    }
+
+    private Generation generationOf (final String alias) {
+        final Generation currentGeneration = this.current.get ();
+        if (alias == null || alias.startsWith (currentGeneration.prefix)) {
+            return currentGeneration;
+        }
+        final Generation previousGeneration = this.previous;
+        return previousGeneration != null && alias.startsWith (previousGeneration.prefix) ? previousGeneration : null;
+    }
+
+    @Override
+    public String[] getClientAliases (final String keyType, final Principal[] issuers) {
+        final Generation generation = this.current.get ();
+        return generation.withPrefix (generation.keyManager.getClientAliases (keyType, issuers));
+    }
+
+    @Override
+    public String chooseClientAlias (final String[] keyType, final Principal[] issuers, final Socket socket) {
+        final Generation generation = this.current.get ();
+        return generation.withPrefix (generation.keyManager.chooseClientAlias (keyType, issuers, socket));
+    }
+
+    @Override
+    public String chooseEngineClientAlias (final String[] keyType, final Principal[] issuers, final SSLEngine engine) {
+        final Generation generation = this.current.get ();
+        return generation.withPrefix (generation.keyManager.chooseEngineClientAlias (keyType, issuers, engine));
+    }
+
+    @Override
+    public String[] getServerAliases (final String keyType, final Principal[] issuers) {
+        final Generation generation = this.current.get ();
+        return generation.withPrefix (generation.keyManager.getServerAliases (keyType, issuers));
+    }
+
+    @Override
+    public String chooseServerAlias (final String keyType, final Principal[] issuers, final Socket socket) {
+        final Generation generation = this.current.get ();
+        return generation.withPrefix (generation.keyManager.chooseServerAlias (keyType, issuers, socket));
+    }
+
+    @Override
+    public String chooseEngineServerAlias (final String keyType, final Principal[] issuers, final SSLEngine engine) {
+        final Generation generation = this.current.get ();
+        return generation.withPrefix (generation.keyManager.chooseEngineServerAlias (keyType, issuers, engine));
+    }
+
+    @Override
+    public X509Certificate[] getCertificateChain (final String alias) {
+        final Generation generation = this.generationOf (alias);
+        return generation == null ? null : generation.keyManager.getCertificateChain (generation.withoutPrefix (alias));
+    }
+
+    @Override
+    public PrivateKey getPrivateKey (final String alias) {
+        final Generation generation = this.generationOf (alias);
+        return generation == null ? null : generation.keyManager.getPrivateKey (generation.withoutPrefix (alias));
+    }
+
+    private static final class Generation {
+        private final int                    number;
+        private final String                 prefix;
+        private final X509ExtendedKeyManager keyManager;
+
+        Generation (final int number, final X509ExtendedKeyManager keyManager) {
+            this.number = number;
+            this.prefix = number + ":";
+            this.keyManager = keyManager;
+        }
+
+        String withPrefix (final String alias) {
+            return alias == null ? null : this.prefix + alias;
+        }
+
+        String[] withPrefix (final String[] aliases) {
+            if (aliases == null) {
+                return null;
+            }
+            final String[] result = new String[aliases.length];
+            for (int i = 0 ; i < aliases.length ; i++) {
+                result[i] = this.prefix + aliases[i];
+            }
+            return result;
+        }
+
+        String withoutPrefix (final String alias) {
+            return alias == null || !alias.startsWith (this.prefix) ? alias : alias.substring (this.prefix.length ());
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package org.toilelibre.libe.curl;
+
+import javax.net.ssl.*;
+import java.io.*;
+import java.net.*;
+import java.security.cert.*;
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.atomic.*;
+import java.util.function.*;
+import java.util.logging.*;
+
+/**
+ * Trusts the certificate authorities of the last version of the --cacert and --capath files : the files
+ * (and the directory) are polled (see {@link PolledFiles}) and indexed again in the background when one of them
+ * changes, then swapped atomically. A failed reload keeps the previous authorities.
+ */
+final class ReloadingX509TrustManager extends X509ExtendedTrustManager {
+
+    private static final Logger LOGGER = Logger.getLogger (ReloadingX509TrustManager.class.getName ());
+
+    private final PolledFiles                              files;
+    private final Supplier<IndexedX509TrustManager>        loader;
+    private final AtomicReference<IndexedX509TrustManager> current;
+
+    private ReloadingX509TrustManager (final File caCert, final File caPath) {
+        this.files = new PolledFiles (() -> filesOf (caCert, caPath));
+        this.loader = () -> IndexedX509TrustManager.of (caCert, caPath);
+        this.current = new AtomicReference<> (this.loader.get ());
+    }
+
+    /**
+     * Indexes the certificate authorities now, then polls their files until the trust manager is not referenced anymore.
+     */
+    static ReloadingX509TrustManager of (final File caCert, final File caPath, final Duration pollingPeriod) {
+        final ReloadingX509TrustManager trustManager = new ReloadingX509TrustManager (caCert, caPath);
+        PolledFiles.poll (trustManager, ReloadingX509TrustManager::reloadIfChanged, pollingPeriod);
+        return trustManager;
+    }
+
+    private static List<File> filesOf (final File caCert, final File caPath) {
+        final List<File> files = new ArrayList<> ();
+        if (caCert != null) {
+            files.add (caCert);
+        }
+        if (caPath != null) {
+            files.add (caPath);
+            final File [] filesOfTheDirectory = caPath.listFiles (File::isFile);
+            files.addAll (Arrays.asList (filesOfTheDirectory == null ? new File [0] : filesOfTheDirectory));
+        }
+        return files;
+    }
+
+    /**
+     * @param owner the listener is called after each reload (in the polling thread) while its owner is referenced
+     */
+    <T> ReloadingX509TrustManager onReload (final T owner, final Consumer<T> listener) {
+        this.files.onReload (owner, listener);
+        return this;
+    }
+
+    /**
+     * @return true if a new version of the files has been loaded
+     */
+    boolean reloadIfChanged () {
+        final Map<File, PolledFiles.FileVersion> newVersions = this.files.changes ();
+        if (newVersions == null) {
+            return false;
+        }
+        try {
+            this.current.set (this.loader.get ());
+        } catch (final RuntimeException e) {
+            // the versions stay the same : a file still being written is loaded again at the next poll
+            LOGGER.log (Level.WARNING, "could not reload the certificate authorities of " + this.files +
+                    ", the previous ones are kept", e);
+            return false;
+        }
+        LOGGER.info ("reloaded the certificate authorities of " + this.files);
+        this.files.reloaded (newVersions);
+        return true;
+    }
+
+    int size () {
+        return this.current.get ().size ();
+    }
+
+    @Override
+    public void checkClientTrusted (final X509Certificate [] chain, final String authType) throws CertificateException {
+        this.current.get ().checkClientTrusted (chain, authType);
+    }
+
+    @Override
+    public void checkServerTrusted (final X509Certificate [] chain, final String authType) throws CertificateException {
+        this.current.get ().checkServerTrusted (chain, authType);
+    }
+
+    @Override
+    public void checkClientTrusted (final X509Certificate [] chain, final String authType, final Socket socket) throws CertificateException {
+        this.current.get ().checkClientTrusted (chain, authType, socket);
+    }
+
+    @Override
+    public void checkServerTrusted (final X509Certificate [] chain, final String authType, final Socket socket) throws CertificateException {
+        this.current.get ().checkServerTrusted (chain, authType, socket);
+    }
+
+    @Override
+    public void checkClientTrusted (final X509Certificate [] chain, final String authType, final SSLEngine engine) throws CertificateException {
+        this.current.get ().checkClientTrusted (chain, authType, engine);
+    }
+
+    @Override
+    public void checkServerTrusted (final X509Certificate [] chain, final String authType, final SSLEngine engine) throws CertificateException {
+        this.current.get ().checkServerTrusted (chain, authType, engine);
+    }
+
+    @Override
+    public X509Certificate [] getAcceptedIssuers () {
+        return this.current.get ().getAcceptedIssuers ();
+    }
+}
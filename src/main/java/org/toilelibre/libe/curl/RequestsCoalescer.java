@@ -0,0 +1,121 @@
+package org.toilelibre.libe.curl;
+
+import org.apache.http.*;
+import org.apache.http.client.methods.*;
+import org.apache.http.entity.*;
+import org.apache.http.message.*;
+import org.apache.http.util.*;
+import org.toilelibre.libe.curl.Curl.*;
+import org.toilelibre.libe.curl.Curl.CurlArgumentsBuilder.*;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.*;
+
+import static java.util.Arrays.*;
+import static java.util.stream.Collectors.*;
+import static java.util.stream.Stream.*;
+
+/**
+ * Lets only one of several identical concurrent requests hit the server.
+ * The other callers wait for that call and receive a copy of its buffered response.
+ * The requests are identical only with the same java options instances : the callers never share the responses
+ * of other credentials, and the requests with interceptors are never coalesced since each caller must run its own.
+ */
+final class RequestsCoalescer {
+
+    private static final List<String> IDEMPOTENT_METHODS = asList ("GET", "HEAD");
+
+    private static final Map<List<?>, CompletableFuture<BufferedResponse>> IN_FLIGHT = new ConcurrentHashMap<> ();
+
+    static boolean canCoalesce (final ParsedCommand commandLine, final HttpUriRequest request,
+                                final CurlJavaOptions curlJavaOptions) {
+        return IDEMPOTENT_METHODS.contains (request.getMethod ().toUpperCase ()) &&
+                !commandLine.hasOption (Arguments.OUTPUT.getOpt ()) &&
+                !commandLine.hasOption (Arguments.ETAG_SAVE.getOpt ()) &&
+                !commandLine.hasOption (Arguments.INTERCEPTOR.getOpt ()) &&
+                curlJavaOptions.getInterceptors ().isEmpty ();
+    }
+
+    /**
+     * The options and the url, then the java options choosing the credentials, the address and the connection.
+     */
+    static List<?> signatureOf (final ParsedCommand commandLine, final CurlJavaOptions curlJavaOptions) {
+        return asList (concat (stream (commandLine.getOptions ()).map (option -> option.getOpt () + '=' +
+                                Arrays.toString (commandLine.getOptionValues (option.getOpt ()))),
+                        stream (commandLine.getArgs ())).collect (joining ("\u0000")),
+                Identity.of (RefreshingBearerTokenProvider.providerOf (curlJavaOptions.getBearerTokenProvider ())),
+                Identity.of (curlJavaOptions.getDnsResolver ()),
+                Identity.of (curlJavaOptions.getConnectionManager ()),
+                Identity.of (curlJavaOptions.getSslContext ()),
+                Identity.of (curlJavaOptions.getKeyManager ()),
+                Identity.of (curlJavaOptions.getKeyStore ()),
+                Identity.of (curlJavaOptions.getKeyStorePassword ()),
+                Identity.of (curlJavaOptions.getTrustStore ()));
+    }
+
+    static HttpResponse coalesce (final List<?> signature, final Supplier<HttpResponse> realCall) {
+        final CompletableFuture<BufferedResponse> candidate = new CompletableFuture<> ();
+        final CompletableFuture<BufferedResponse> inFlight = IN_FLIGHT.putIfAbsent (signature, candidate);
+        if (inFlight != null) {
+            return waitFor (inFlight).toHttpResponse ();
+        }
+
+        try {
+            final BufferedResponse response = new BufferedResponse (realCall.get ());
+            candidate.complete (response);
+            return response.toHttpResponse ();
+        } catch (final Throwable e) {
+            // the waiters must be released whatever the failure, errors included
+            candidate.completeExceptionally (e);
+            throw e;
+        } finally {
+            IN_FLIGHT.remove (signature, candidate);
+        }
+    }
+
+    private static BufferedResponse waitFor (final CompletableFuture<BufferedResponse> inFlight) {
+        try {
+            return inFlight.join ();
+        } catch (final CompletionException e) {
+            if (e.getCause () instanceof CurlException) {
+                throw (CurlException) e.getCause ();
+            }
+            throw new CurlException (e.getCause ());
+        }
+    }
+
+    private static class BufferedResponse {
+        private final StatusLine statusLine;
+        private final Header []  headers;
+        private final byte []    content;
+        private final Header     contentType;
+        private final Header     contentEncoding;
+
+        BufferedResponse (final HttpResponse response) {
+            final HttpEntity entity = response.getEntity ();
+            this.statusLine = response.getStatusLine ();
+            this.headers = response.getAllHeaders ();
+            this.contentType = entity == null ? null : entity.getContentType ();
+            this.contentEncoding = entity == null ? null : entity.getContentEncoding ();
+            try {
+                this.content = entity == null ? null : EntityUtils.toByteArray (entity);
+            } catch (final IOException e) {
+                throw new CurlException (e);
+            }
+        }
+
+        HttpResponse toHttpResponse () {
+            final BasicHttpResponse response = new BasicHttpResponse (this.statusLine);
+            response.setHeaders (this.headers);
+            if (this.content != null) {
+                final ByteArrayEntity entity = new ByteArrayEntity (this.content);
+                entity.setContentType (this.contentType);
+                entity.setContentEncoding (this.contentEncoding);
+                response.setEntity (entity);
+            }
+            return response;
+        }
+    }
+}
@@ -0,0 +1,292 @@
+package org.toilelibre.libe.curl;
+
+import org.apache.http.*;
+import org.apache.http.config.*;
+import org.apache.http.conn.*;
+import org.apache.http.conn.socket.*;
+import org.apache.http.impl.conn.*;
+import org.apache.http.protocol.*;
+
+import java.io.*;
+import java.net.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import static java.util.Arrays.*;
+import static java.util.stream.Collectors.*;
+
+/**
+ * Opens the connections of the pool : applies the --connect-to mappings,
+ * then spreads the connections over the addresses of the host with the {@link AddressBalancer}.
+ * The socket factories still receive the original host (for the SNI and the hostname verification).
+ * When the host has both IPv6 and IPv4 addresses, the families are raced (happy eyeballs, RFC 8305),
+ * unless -4 or -6 forces one of them.
+ */
+final class RoutingConnectionOperator implements HttpClientConnectionOperator {
+
+    private static final long            CONNECTION_ATTEMPT_DELAY_MILLIS = 250;
+    private static final ExecutorService RACES                           = Executors.newCachedThreadPool (runnable -> {
+        final Thread thread = new Thread (runnable, "curl-connection-attempt");
+        thread.setDaemon (true);
+        return thread;
+    });
+
+    private final Lookup<ConnectionSocketFactory> socketFactoryRegistry;
+    private final DnsResolver                     dnsResolver;
+    private final List<ConnectTo>                 connectTos;
+    private final Class<? extends InetAddress>    family;
+    private final int                             keepAliveTime;
+
+    RoutingConnectionOperator (final Lookup<ConnectionSocketFactory> socketFactoryRegistry,
+                               final DnsResolver dnsResolver, final ParsedCommand commandLine) {
+        this.socketFactoryRegistry = socketFactoryRegistry;
+        this.dnsResolver = dnsResolver;
+        this.connectTos = stream (Optional.ofNullable (commandLine.getOptionValues (Arguments.CONNECT_TO.getOpt ()))
+                .orElse (new String [0])).map (ConnectTo::new).collect (toList ());
+        this.family = commandLine.hasOption (Arguments.IPV4.getOpt ()) ? Inet4Address.class :
+                commandLine.hasOption (Arguments.IPV6.getOpt ()) ? Inet6Address.class : null;
+        this.keepAliveTime = SocketConfigProvider.keepAliveTimeOf (commandLine);
+    }
+
+    @Override
+    public void connect (final ManagedHttpClientConnection connection, final HttpHost host,
+                         final InetSocketAddress localAddress, final int connectTimeout,
+                         final SocketConfig socketConfig, final HttpContext context) throws IOException {
+        final ConnectionSocketFactory socketFactory = this.socketFactoryOf (host);
+        final int hostPort = DefaultSchemePortResolver.INSTANCE.resolve (host);
+        final ConnectTo connectTo = this.connectTos.stream ().filter (candidate ->
+                candidate.matches (host.getHostName (), hostPort)).findFirst ().orElse (null);
+        final String targetHostName = connectTo == null ? host.getHostName () : connectTo.hostNameFor (host.getHostName ());
+        final int port = connectTo == null ? hostPort : connectTo.portFor (hostPort);
+        final InetAddress [] addresses = this.familiesOf (AddressBalancer.leastOutstandingFirst (
+                host.getAddress () != null && connectTo == null ? new InetAddress [] {host.getAddress ()} :
+                        this.dnsResolver.resolve (targetHostName)), targetHostName);
+
+        if (stream (addresses).map (InetAddress::getClass).distinct ().count () > 1) {
+            race (connection, socketFactory, host, interleaved (addresses), port, localAddress,
+                    connectTimeout, socketConfig, context);
+            return;
+        }
+        for (int i = 0 ; i < addresses.length ; i++) {
+            final boolean last = i == addresses.length - 1;
+            Socket socket = socketFactory.createSocket (context);
+            configure (socket, socketConfig);
+            connection.bind (socket);
+            try {
+                socket = socketFactory.connectSocket (connectTimeout, socket, host,
+                        new InetSocketAddress (addresses [i], port), localAddress, context);
+                connection.bind (socket);
+                return;
+            } catch (final SocketTimeoutException | ConnectException | NoRouteToHostException e) {
+                if (last) {
+                    throw failure (e, host, addresses);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void upgrade (final ManagedHttpClientConnection connection, final HttpHost host,
+                         final HttpContext context) throws IOException {
+        final ConnectionSocketFactory socketFactory = this.socketFactoryOf (host);
+        if (!(socketFactory instanceof LayeredConnectionSocketFactory)) {
+            throw new UnsupportedSchemeException (host.getSchemeName () + " protocol does not support connection upgrade");
+        }
+        connection.bind (((LayeredConnectionSocketFactory) socketFactory).createLayeredSocket (connection.getSocket (),
+                host.getHostName (), DefaultSchemePortResolver.INSTANCE.resolve (host), context));
+    }
+
+    private ConnectionSocketFactory socketFactoryOf (final HttpHost host) throws UnsupportedSchemeException {
+        final ConnectionSocketFactory socketFactory = this.socketFactoryRegistry.lookup (host.getSchemeName ());
+        if (socketFactory == null) {
+            throw new UnsupportedSchemeException (host.getSchemeName () + " protocol is not supported");
+        }
+        return socketFactory;
+    }
+
+    private InetAddress [] familiesOf (final InetAddress [] addresses, final String hostName) throws UnknownHostException {
+        if (this.family == null) {
+            return addresses;
+        }
+        final InetAddress [] addressesOfTheFamily = stream (addresses).filter (this.family::isInstance).toArray (InetAddress []::new);
+        if (addressesOfTheFamily.length == 0) {
+            throw new UnknownHostException (hostName + ": no " +
+                    (this.family == Inet4Address.class ? "IPv4" : "IPv6") + " address");
+        }
+        return addressesOfTheFamily;
+    }
+
+    /**
+     * RFC 8305 : IPv6 first, then the families alternate, each family keeping the order of the balancer.
+     */
+    private static InetAddress [] interleaved (final InetAddress [] addresses) {
+        final Iterator<InetAddress> ipv6 = stream (addresses).filter (Inet6Address.class::isInstance).iterator ();
+        final Iterator<InetAddress> ipv4 = stream (addresses).filter (Inet4Address.class::isInstance).iterator ();
+        final InetAddress [] interleavedAddresses = new InetAddress [addresses.length];
+        int i = 0;
+        while (ipv6.hasNext () || ipv4.hasNext ()) {
+            if (ipv6.hasNext ()) {
+                interleavedAddresses [i++] = ipv6.next ();
+            }
+            if (ipv4.hasNext ()) {
+                interleavedAddresses [i++] = ipv4.next ();
+            }
+        }
+        return interleavedAddresses;
+    }
+
+    /**
+     * Starts an attempt every {@link #CONNECTION_ATTEMPT_DELAY_MILLIS} (or as soon as the previous one fails)
+     * until one of them connects, then closes the others.
+     */
+    private void race (final ManagedHttpClientConnection connection, final ConnectionSocketFactory socketFactory,
+                       final HttpHost host, final InetAddress [] addresses, final int port,
+                       final InetSocketAddress localAddress, final int connectTimeout,
+                       final SocketConfig socketConfig, final HttpContext context) throws IOException {
+        final CompletionService<Socket> attempts = new ExecutorCompletionService<> (RACES);
+        final List<Future<Socket>> futures = new ArrayList<> ();
+        final List<Queue<Socket>> socketsOfTheAttempts = new ArrayList<> ();
+        final AtomicBoolean over = new AtomicBoolean ();
+        Future<Socket> winner = null;
+        IOException lastFailure = null;
+        int failures = 0;
+        try {
+            while (winner == null && failures < addresses.length) {
+                final Future<Socket> done = futures.size () == failures ? null :
+                        futures.size () < addresses.length ?
+                                attempts.poll (CONNECTION_ATTEMPT_DELAY_MILLIS, TimeUnit.MILLISECONDS) : attempts.take ();
+                if (done == null) {
+                    final InetSocketAddress remoteAddress = new InetSocketAddress (addresses [futures.size ()], port);
+                    final Queue<Socket> sockets = new ConcurrentLinkedQueue<> ();
+                    socketsOfTheAttempts.add (sockets);
+                    futures.add (attempts.submit (() -> {
+                        final Socket socket = socketFactory.createSocket (context);
+                        sockets.add (socket);
+                        configure (socket, socketConfig);
+                        final Socket connectedSocket = socketFactory.connectSocket (connectTimeout, socket, host,
+                                remoteAddress, localAddress, context);
+                        sockets.add (connectedSocket);
+                        if (over.get ()) {
+                            sockets.forEach (RoutingConnectionOperator::closeQuietly);
+                            throw new SocketException ("the connection attempt has lost the race");
+                        }
+                        return connectedSocket;
+                    }));
+                    continue;
+                }
+                try {
+                    done.get ();
+                    winner = done;
+                } catch (final ExecutionException e) {
+                    failures++;
+                    lastFailure = e.getCause () instanceof IOException ? (IOException) e.getCause () :
+                            new IOException (e.getCause ());
+                }
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread ().interrupt ();
+            throw new InterruptedIOException ("connection to " + host + " interrupted");
+        } finally {
+            over.set (true);
+            for (int i = 0 ; i < futures.size () ; i++) {
+                if (futures.get (i) != winner) {
+                    futures.get (i).cancel (true);
+                    socketsOfTheAttempts.get (i).forEach (RoutingConnectionOperator::closeQuietly);
+                }
+            }
+        }
+        if (winner == null) {
+            throw failure (lastFailure, host, addresses);
+        }
+        try {
+            connection.bind (winner.get ());
+        } catch (final InterruptedException | ExecutionException e) {
+            throw new IllegalStateException (e);
+        }
+    }
+
+    private static IOException failure (final IOException e, final HttpHost host, final InetAddress [] addresses) {
+        if (e instanceof SocketTimeoutException ||
+                (e instanceof ConnectException && "Connection timed out".equals (e.getMessage ()))) {
+            return new ConnectTimeoutException (e, host, addresses);
+        }
+        if (e instanceof ConnectException) {
+            return new HttpHostConnectException (e, host, addresses);
+        }
+        return e;
+    }
+
+    private static void closeQuietly (final Socket socket) {
+        try {
+            socket.close ();
+        } catch (final IOException e) {
+            // the attempt has lost the race anyway
+        }
+    }
+
+    private void configure (final Socket socket, final SocketConfig socketConfig) throws SocketException {
+        socket.setSoTimeout (socketConfig.getSoTimeout ());
+        socket.setReuseAddress (socketConfig.isSoReuseAddress ());
+        socket.setTcpNoDelay (socketConfig.isTcpNoDelay ());
+        socket.setKeepAlive (socketConfig.isSoKeepAlive ());
+        if (socketConfig.getRcvBufSize () > 0) {
+            socket.setReceiveBufferSize (socketConfig.getRcvBufSize ());
+        }
+        if (socketConfig.getSndBufSize () > 0) {
+            socket.setSendBufferSize (socketConfig.getSndBufSize ());
+        }
+        if (socketConfig.getSoLinger () >= 0) {
+            socket.setSoLinger (true, socketConfig.getSoLinger ());
+        }
+        if (socketConfig.isSoKeepAlive () && socket.getKeepAlive ()) {
+            SocketConfigProvider.setKeepAliveTime (socket, this.keepAliveTime);
+        }
+    }
+
+    /**
+     * HOST1:PORT1:HOST2:PORT2, an empty HOST1 or PORT1 matches anything,
+     * an empty HOST2 or PORT2 keeps the original value. IPv6 addresses are written between brackets.
+     */
+    private static class ConnectTo {
+        private final String host;
+        private final String port;
+        private final String targetHost;
+        private final String targetPort;
+
+        ConnectTo (final String connectTo) {
+            final List<String> parts = new ArrayList<> ();
+            int start = 0;
+            boolean inBrackets = false;
+            for (int i = 0 ; i < connectTo.length () ; i++) {
+                final char c = connectTo.charAt (i);
+                inBrackets = c == '[' || (inBrackets && c != ']');
+                if (c == ':' && !inBrackets) {
+                    parts.add (connectTo.substring (start, i));
+                    start = i + 1;
+                }
+            }
+            parts.add (connectTo.substring (start));
+            if (parts.size () != 4) {
+                throw new IllegalArgumentException ("option --connect-to: is badly used here");
+            }
+            this.host = parts.get (0).replaceAll ("^\\[|]$", "");
+            this.port = parts.get (1);
+            this.targetHost = parts.get (2).replaceAll ("^\\[|]$", "");
+            this.targetPort = parts.get (3);
+        }
+
+        boolean matches (final String hostName, final int hostPort) {
+            return (this.host.isEmpty () || this.host.equalsIgnoreCase (hostName)) &&
+                    (this.port.isEmpty () || this.port.equals (String.valueOf (hostPort)));
+        }
+
+        String hostNameFor (final String hostName) {
+            return this.targetHost.isEmpty () ? hostName : this.targetHost;
+        }
+
+        int portFor (final int hostPort) {
+            return this.targetPort.isEmpty () ? hostPort : Integer.parseInt (this.targetPort);
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package org.toilelibre.libe.curl;
+
+import org.apache.http.conn.ssl.*;
+
+import javax.net.ssl.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.function.*;
+
+/**
+ * The SSL contexts of the last key and trust materials, least recently used first out.
+ * A context is built once per material (even by concurrent calls), then shared by all the clients using it,
+ * so that each of them can resume the TLS sessions of the others.
+ */
+final class SSLContextCache {
+
+    static final int DEFAULT_MAX_ENTRIES = 64;
+
+    private final int                                         maxEntries;
+    private final LinkedHashMap<List<?>, FutureTask<Material>> entries   = new LinkedHashMap<> (16, 0.75f, true);
+    private final AtomicLong                                  hits      = new AtomicLong ();
+    private final AtomicLong                                  misses    = new AtomicLong ();
+    private final AtomicLong                                  evictions = new AtomicLong ();
+
+    SSLContextCache (final int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * @param key a hash of the material (see {@link SSLMaterialCreator}), then the {@link Identity} of its objects :
+     *            the key stores, contexts... are the same material only if they are the same instances
+     */
+    Material computeIfAbsent (final List<?> key, final Supplier<Material> factory) {
+        final FutureTask<Material> task;
+        final boolean created;
+        synchronized (this.entries) {
+            final FutureTask<Material> existingTask = this.entries.get (key);
+            created = existingTask == null;
+            task = created ? new FutureTask<> (factory::get) : existingTask;
+            if (created) {
+                this.entries.put (key, task);
+                this.evictTheEldest ();
+            }
+        }
+        (created ? this.misses : this.hits).incrementAndGet ();
+        if (created) {
+            task.run ();
+        }
+        try {
+            return task.get ();
+        } catch (final ExecutionException e) {
+            synchronized (this.entries) {
+                this.entries.remove (key, task);
+            }
+            throw e.getCause () instanceof RuntimeException ? (RuntimeException) e.getCause () : new Curl.CurlException (e.getCause ());
+        } catch (final InterruptedException e) {
+            Thread.currentThread ().interrupt ();
+            throw new Curl.CurlException (e);
+        }
+    }
+
+    /**
+     * Serves a material under its new key once its files have been reloaded (see {@link ReloadingX509KeyManager}),
+     * unless it has been evicted or another material has already been built for the new key.
+     */
+    void rekey (final List<?> oldKey, final List<?> newKey, final Material material) {
+        synchronized (this.entries) {
+            final FutureTask<Material> task = this.entries.get (oldKey);
+            if (task == null || materialOf (task) != material) {
+                return;
+            }
+            this.entries.remove (oldKey);
+            this.entries.putIfAbsent (newKey, task);
+        }
+    }
+
+    private void evictTheEldest () {
+        final Iterator<FutureTask<Material>> eldest = this.entries.values ().iterator ();
+        while (this.entries.size () > this.maxEntries && eldest.hasNext ()) {
+            eldest.next ();
+            eldest.remove ();
+            this.evictions.incrementAndGet ();
+        }
+    }
+
+    private static Material materialOf (final FutureTask<Material> task) {
+        if (!task.isDone ()) {
+            return null;
+        }
+        try {
+            return task.get ();
+        } catch (final ExecutionException | CancellationException e) {
+            return null;
+        } catch (final InterruptedException e) {
+            Thread.currentThread ().interrupt ();
+            return null;
+        }
+    }
+
+    int size () {
+        synchronized (this.entries) {
+            return this.entries.size ();
+        }
+    }
+
+    long hits () {
+        return this.hits.get ();
+    }
+
+    long misses () {
+        return this.misses.get ();
+    }
+
+    long evictions () {
+        return this.evictions.get ();
+    }
+
+    @Override
+    public String toString () {
+        return "SSLContextCache[size=" + this.size () + ", hits=" + this.hits + ", misses=" + this.misses +
+                ", evictions=" + this.evictions + "]";
+    }
+
+    static final class Material {
+        private final SSLContext                 sslContext;
+        private final SSLConnectionSocketFactory socketFactory;
+
+        Material (final SSLContext sslContext, final SSLConnectionSocketFactory socketFactory) {
+            this.sslContext = sslContext;
+            this.socketFactory = socketFactory;
+        }
+
+        SSLContext getSslContext () {
+            return this.sslContext;
+        }
+
+        SSLConnectionSocketFactory getSocketFactory () {
+            return this.socketFactory;
+        }
+
+        /**
+         * The session settings belong to the shared context : the last caller giving them wins.
+         * @param sessionCacheSize -1 to keep the current one (0 for no limit)
+         * @param sessionTimeout in seconds, -1 to keep the current one (0 for no limit)
+         */
+        Material withSessions (final int sessionCacheSize, final int sessionTimeout) {
+            final SSLSessionContext sessions = this.sslContext.getClientSessionContext ();
+            if (sessionCacheSize >= 0 && sessions.getSessionCacheSize () != sessionCacheSize) {
+                sessions.setSessionCacheSize (sessionCacheSize);
+            }
+            if (sessionTimeout >= 0 && sessions.getSessionTimeout () != sessionTimeout) {
+                sessions.setSessionTimeout (sessionTimeout);
+            }
+            return this;
+        }
+    }
+}
@@ -1,19 +1,29 @@
 package org.toilelibre.libe.curl;
 
 import org.apache.commons.cli.*;
+import org.apache.http.*;
+import org.apache.http.conn.socket.*;
 import org.apache.http.conn.ssl.*;
-import org.apache.http.impl.client.*;
+import org.apache.http.protocol.*;
 import org.apache.http.ssl.SSLContextBuilder;
+import org.toilelibre.libe.curl.Curl.CurlArgumentsBuilder.*;
 
+import javax.net.ssl.*;
 import java.io.*;
+import java.lang.ref.*;
+import java.net.*;
+import java.nio.*;
+import java.nio.charset.*;
 import java.security.*;
 import java.security.cert.Certificate;
 import java.security.cert.*;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.function.*;
 import java.util.stream.*;
 
 import static java.util.Arrays.*;
-import static java.util.Optional.*;
 import static java.util.stream.Collectors.*;
 import static org.apache.http.conn.ssl.SSLConnectionSocketFactory.*;
 import static org.toilelibre.libe.curl.Arguments.*;
@@ -21,24 +31,125 @@ import static org.toilelibre.libe.curl.IOUtils.*;
 
 final class SSLMaterialCreator {
 
-    private final static Map<Map<String, List<String>>, SSLConnectionSocketFactory> cachedSSLFactoriesForPerformance =
-            new HashMap<> ();
+    private static final SSLContextCache  SSL_CONTEXTS = new SSLContextCache (SSLContextCache.DEFAULT_MAX_ENTRIES);
+    private static final Map<List<String>, WeakReference<ReloadingX509TrustManager>> TRUST_MANAGERS = new HashMap<> ();
+    private static final Map<String, FileDigest> FILE_DIGESTS = new ConcurrentHashMap<> ();
 
-    static void handleSSLParams (final CommandLine commandLine, final HttpClientBuilder executor) throws Curl.CurlException {
+    /**
+     * Prepares the SSL factory at the first https connection only : the http commands never load the TLS classes.
+     */
+    static LayeredConnectionSocketFactory prepareLazySSLSocketFactory (final ParsedCommand commandLine,
+                                                                       final CurlJavaOptions curlJavaOptions) {
+        return new LazySSLSocketFactory (commandLine, curlJavaOptions);
+    }
+
+    /**
+     * The factories (and their TLS sessions) are shared by the commands using the same key and trust material.
+     * The material given by the java options is the same only if it is the same instance.
+     */
+    static SSLConnectionSocketFactory prepareSSLSocketFactory (final ParsedCommand commandLine,
+                                                               final CurlJavaOptions curlJavaOptions) throws Curl.CurlException {
+        final List<?> key = keyOf (commandLine, curlJavaOptions);
+        return SSL_CONTEXTS.computeIfAbsent (key, () -> createSSLMaterial (commandLine, curlJavaOptions, key))
+                .withSessions (curlJavaOptions.getSslSessionCacheSize (), curlJavaOptions.getSslSessionTimeout ())
+                .getSocketFactory ();
+    }
+
+    private static List<?> keyOf (final ParsedCommand commandLine, final CurlJavaOptions curlJavaOptions) {
+        return asList (materialKeyOf (commandLine),
+                Identity.of (curlJavaOptions.getSslContext ()),
+                Identity.of (curlJavaOptions.getKeyManager ()),
+                Identity.of (curlJavaOptions.getKeyStore ()),
+                Identity.of (curlJavaOptions.getKeyStorePassword ()),
+                Identity.of (curlJavaOptions.getTrustStore ()));
+    }
+
+    /**
+     * A hash of the protocol options and of the contents (not the paths) of the certificates and keys.
+     * A context reloading its files is registered again under the hash of their new contents.
+     */
+    static String materialKeyOf (final ParsedCommand commandLine) {
+        final MessageDigest digest = sha256 ();
+        for (final Option option : asList (TRUST_INSECURE, CERT_TYPE, KEY_TYPE,
+                TLS_V1, TLS_V10, TLS_V11, TLS_V12, SSL_V2, SSL_V3)) {
+            if (commandLine.hasOption (option.getOpt ())) {
+                update (digest, option.getOpt ());
+                update (digest, String.valueOf (commandLine.getOptionValue (option.getOpt ())));
+            }
+        }
+        for (final Option option : asList (CERT, KEY, CA_CERT)) {
+            final String entireOption = commandLine.getOptionValue (option.getOpt ());
+            if (entireOption != null) {
+                final int separatorIndex = option == CA_CERT ? - 1 : getSslSeparatorIndex (entireOption);
+                update (digest, option.getOpt ());
+                update (digest, separatorIndex == - 1 ? "" : entireOption.substring (separatorIndex + 1));
+                digest.update (contentDigestOf (separatorIndex == - 1 ? entireOption :
+                        entireOption.substring (0, separatorIndex)));
+            }
+        }
+        if (commandLine.hasOption (CA_PATH.getOpt ())) {
+            update (digest, CA_PATH.getOpt ());
+            update (digest, getFile (commandLine.getOptionValue (CA_PATH.getOpt ())).getAbsolutePath ());
+        }
+        return Base64.getEncoder ().encodeToString (digest.digest ());
+    }
+
+    /**
+     * Read again only when the modification date or the size of the file changes.
+     */
+    private static byte [] contentDigestOf (final String path) {
+        final File file = getFile (path);
+        final long lastModified = file.lastModified ();
+        final long length = file.length ();
+        final FileDigest knownDigest = FILE_DIGESTS.get (file.getAbsolutePath ());
+        if (knownDigest != null && knownDigest.lastModified == lastModified && knownDigest.length == length) {
+            return knownDigest.digest;
+        }
+        final MessageDigest digest = sha256 ();
+        try {
+            digest.update (IOUtils.toByteArray (file));
+        } catch (final IOException e) {
+            // the build of the material will report it, the path keeps the key unique meanwhile
+            update (digest, "unreadable " + file.getAbsolutePath ());
+            return digest.digest ();
+        }
+        final FileDigest fileDigest = new FileDigest (lastModified, length, digest.digest ());
+        FILE_DIGESTS.put (file.getAbsolutePath (), fileDigest);
+        return fileDigest.digest;
+    }
 
-        Map<String, List<String>> input = inputExtractedFrom (commandLine);
-        final SSLConnectionSocketFactory foundInCache = cachedSSLFactoriesForPerformance.get (input);
+    private static void update (final MessageDigest digest, final String value) {
+        final byte [] bytes = value.getBytes (StandardCharsets.UTF_8);
+        digest.update (ByteBuffer.allocate (4).putInt (bytes.length).array ());
+        digest.update (bytes);
+    }
 
-        if (foundInCache != null) {
-            executor.setSSLSocketFactory (foundInCache);
-            return;
+    private static MessageDigest sha256 () {
+        try {
+            return MessageDigest.getInstance ("SHA-256");
+        } catch (final NoSuchAlgorithmException e) {
+            throw new Curl.CurlException (e);
         }
+    }
 
-        final SSLContextBuilder builder = new SSLContextBuilder ();
+    private static SSLContextCache.Material createSSLMaterial (final ParsedCommand commandLine,
+                                                               final CurlJavaOptions curlJavaOptions,
+                                                               final List<?> materialKey) throws Curl.CurlException {
+        final HostnameVerifier hostnameVerifier = commandLine.hasOption (TRUST_INSECURE.getOpt ()) ?
+                NoopHostnameVerifier.INSTANCE : getDefaultHostnameVerifier ();
+        if (curlJavaOptions.getSslContext () != null) {
+            return new SSLContextCache.Material (curlJavaOptions.getSslContext (),
+                    new SSLConnectionSocketFactory (curlJavaOptions.getSslContext (), hostnameVerifier));
+        }
+        final MaterialSSLContextBuilder builder = new MaterialSSLContextBuilder ();
         builder.setProtocol (protocolFromCommandLine (commandLine));
 
         if (commandLine.hasOption (TRUST_INSECURE.getOpt ())) {
             sayTrustInsecure (builder);
+        } else if (curlJavaOptions.getTrustStore () != null) {
+            loadTrustStore (builder, curlJavaOptions.getTrustStore ());
+        } else if (commandLine.hasOption (CA_CERT.getOpt ()) || commandLine.hasOption (CA_PATH.getOpt ())) {
+            builder.trustManager (prepareTrustManager (commandLine));
         }
 
         final CertFormat certFormat = commandLine.hasOption (CERT_TYPE.getOpt ()) ?
@@ -69,45 +180,88 @@ final class SSLMaterialCreator {
             certAndKeysBuilder.key (key)
                     .keyPassphrase (keySeparatorIndex == - 1 ? "" : entireOption.substring (keySeparatorIndex + 1));
         }
-        if (commandLine.hasOption (CERT.getOpt ()) || commandLine.hasOption (KEY.getOpt ())) {
-            addClientCredentials (builder, certAndKeysBuilder.build ());
+        if (curlJavaOptions.getKeyManager () != null) {
+            builder.keyManager (curlJavaOptions.getKeyManager ());
+        } else if (curlJavaOptions.getKeyStore () != null) {
+            builder.keyManager (keyManagerOf (curlJavaOptions.getKeyStore (), curlJavaOptions.getKeyStorePassword ()));
+        } else if (commandLine.hasOption (CERT.getOpt ()) || commandLine.hasOption (KEY.getOpt ())) {
+            builder.keyManager (prepareKeyManager (certAndKeysBuilder.build ()));
         }
 
         try {
-            final SSLConnectionSocketFactory sslSocketFactory = new SSLConnectionSocketFactory (builder.build (),
-                    commandLine.hasOption (TRUST_INSECURE.getOpt ()) ? NoopHostnameVerifier.INSTANCE :
-                            getDefaultHostnameVerifier ());
-            cachedSSLFactoriesForPerformance.put (input, sslSocketFactory);
-            executor.setSSLSocketFactory (sslSocketFactory);
+            final SSLContext sslContext = builder.build ();
+            final SSLContextCache.Material material =
+                    new SSLContextCache.Material (sslContext, new SSLConnectionSocketFactory (sslContext, hostnameVerifier));
+            final AtomicReference<List<?>> registeredKey = new AtomicReference<> (materialKey);
+            final Consumer<SSLContextCache.Material> rekey = reloadedMaterial -> {
+                final List<?> newKey = keyOf (commandLine, curlJavaOptions);
+                SSL_CONTEXTS.rekey (registeredKey.getAndSet (newKey), newKey, reloadedMaterial);
+            };
+            if (builder.keyManager instanceof ReloadingX509KeyManager) {
+                ((ReloadingX509KeyManager) builder.keyManager).onReload (material, rekey);
+            }
+            if (builder.trustManager instanceof ReloadingX509TrustManager) {
+                ((ReloadingX509TrustManager) builder.trustManager).onReload (material, rekey);
+            }
+            return material;
         } catch (NoSuchAlgorithmException | KeyManagementException e) {
             throw new Curl.CurlException (e);
         }
     }
 
-    private static Map<String, List<String>> inputExtractedFrom (CommandLine commandLine) {
-        return Stream.of (TRUST_INSECURE, CERT_TYPE, CA_CERT, KEY, KEY_TYPE,
-                CERT, TLS_V1, TLS_V10, TLS_V11, TLS_V12, SSL_V2, SSL_V3)
-                .filter (option ->
-                            commandLine.getOptionValues (option.getOpt ()) != null ||
-                                    commandLine.hasOption (option.getOpt ())
-                )
-                .collect (toMap (Option::getOpt, option ->
-                        asList (ofNullable (commandLine.getOptionValues (option.getOpt ()))
-                        .orElse (new String[] {"true"}))));
+    /**
+     * The certificate authorities replace the ones of the jvm. They are loaded once, then shared by all the contexts,
+     * and forgotten with the last of them.
+     */
+    static ReloadingX509TrustManager prepareTrustManager (final ParsedCommand commandLine) throws Curl.CurlException {
+        final File caCert = commandLine.hasOption (CA_CERT.getOpt ()) ? getFile (commandLine.getOptionValue (CA_CERT.getOpt ())) : null;
+        final File caPath = commandLine.hasOption (CA_PATH.getOpt ()) ? getFile (commandLine.getOptionValue (CA_PATH.getOpt ())) : null;
+        final List<String> paths = asList (caCert == null ? "" : caCert.getAbsolutePath (),
+                caPath == null ? "" : caPath.getAbsolutePath ());
+        synchronized (TRUST_MANAGERS) {
+            TRUST_MANAGERS.values ().removeIf (reference -> reference.get () == null);
+            final WeakReference<ReloadingX509TrustManager> reference = TRUST_MANAGERS.get (paths);
+            final ReloadingX509TrustManager knownTrustManager = reference == null ? null : reference.get ();
+            if (knownTrustManager != null) {
+                return knownTrustManager;
+            }
+            final ReloadingX509TrustManager trustManager = ReloadingX509TrustManager.of (caCert, caPath, PolledFiles.POLLING_PERIOD);
+            TRUST_MANAGERS.put (paths, new WeakReference<> (trustManager));
+            return trustManager;
+        }
+    }
+
+    /**
+     * The credentials are loaded again when their files change.
+     */
+    static ReloadingX509KeyManager prepareKeyManager (final SSLMaterialCreator.CertPlusKeyInfo certPlusKeyInfo) {
+        final List<File> files = Stream.of (certPlusKeyInfo.getCacert (), certPlusKeyInfo.getCert (), certPlusKeyInfo.getKey ())
+                .filter (Objects::nonNull).map (IOUtils::getFile).distinct ().collect (toList ());
+        return ReloadingX509KeyManager.of (files, () -> keyManagerOf (certPlusKeyInfo), PolledFiles.POLLING_PERIOD);
     }
 
-    private static void addClientCredentials (final SSLContextBuilder builder,
-                                              final SSLMaterialCreator.CertPlusKeyInfo certPlusKeyInfo) throws Curl.CurlException {
+    static X509ExtendedKeyManager keyManagerOf (final SSLMaterialCreator.CertPlusKeyInfo certPlusKeyInfo) throws Curl.CurlException {
         try {
             final String keyPassword = certPlusKeyInfo.getKeyPassphrase () == null ?
                     certPlusKeyInfo.getCertPassphrase () : certPlusKeyInfo.getKeyPassphrase ();
-            final KeyStore keyStore = generateKeyStore (certPlusKeyInfo);
-            builder.loadKeyMaterial (keyStore, keyPassword == null ? null : keyPassword.toCharArray ());
+            return keyManagerOf (generateKeyStore (certPlusKeyInfo), keyPassword == null ? null : keyPassword.toCharArray ());
         } catch (GeneralSecurityException | IOException e) {
             throw new Curl.CurlException (e);
         }
     }
 
+    private static X509ExtendedKeyManager keyManagerOf (final KeyStore keyStore, final char[] password) throws Curl.CurlException {
+        try {
+            final KeyManagerFactory keyManagerFactory = KeyManagerFactory.getInstance (KeyManagerFactory.getDefaultAlgorithm ());
+            keyManagerFactory.init (keyStore, password);
+            return Stream.of (keyManagerFactory.getKeyManagers ()).filter (X509ExtendedKeyManager.class::isInstance)
+                    .map (X509ExtendedKeyManager.class::cast).findFirst ()
+                    .orElseThrow (() -> new Curl.CurlException (new KeyStoreException ("no X.509 key manager")));
+        } catch (GeneralSecurityException e) {
+            throw new Curl.CurlException (e);
+        }
+    }
+
     private static KeyStore generateKeyStore (final SSLMaterialCreator.CertPlusKeyInfo certPlusKeyInfo)
             throws KeyStoreException, NoSuchAlgorithmException, java.security.cert.CertificateException, IOException,
             Curl.CurlException {
@@ -150,7 +304,7 @@ final class SSLMaterialCreator {
                 entireOption.lastIndexOf (':');
     }
 
-    private static String protocolFromCommandLine (final CommandLine commandLine) {
+    private static String protocolFromCommandLine (final ParsedCommand commandLine) {
         if (commandLine.hasOption (TLS_V1.getOpt ())) {
             return "TLSv1";
         }
@@ -180,6 +334,14 @@ final class SSLMaterialCreator {
         }
     }
 
+    private static void loadTrustStore (final SSLContextBuilder builder, final KeyStore trustStore) throws Curl.CurlException {
+        try {
+            builder.loadTrustMaterial (trustStore, null);
+        } catch (NoSuchAlgorithmException | KeyStoreException e) {
+            throw new Curl.CurlException (e);
+        }
+    }
+
     private static void setCaCertificateEntry (final KeyStore keyStore,
                                                final List<java.security.cert.Certificate> certificates, final int i) {
         try {
@@ -208,6 +370,82 @@ final class SSLMaterialCreator {
         }
     }
 
+    private static final class FileDigest {
+        private final long    lastModified;
+        private final long    length;
+        private final byte [] digest;
+
+        FileDigest (final long lastModified, final long length, final byte [] digest) {
+            this.lastModified = lastModified;
+            this.length = length;
+            this.digest = digest;
+        }
+    }
+
+    /**
+     * Initializes the context with the given key and trust managers instead of the ones of the key stores.
+     */
+    private static final class MaterialSSLContextBuilder extends SSLContextBuilder {
+        private KeyManager   keyManager;
+        private TrustManager trustManager;
+
+        MaterialSSLContextBuilder keyManager (final KeyManager keyManager) {
+            this.keyManager = keyManager;
+            return this;
+        }
+
+        MaterialSSLContextBuilder trustManager (final TrustManager trustManager) {
+            this.trustManager = trustManager;
+            return this;
+        }
+
+        @Override
+        protected void initSSLContext (final SSLContext sslContext, final Collection<KeyManager> keyManagers,
+                                       final Collection<TrustManager> trustManagers, final SecureRandom secureRandom)
+                throws KeyManagementException {
+            super.initSSLContext (sslContext, this.keyManager == null ? keyManagers : Collections.singletonList (this.keyManager),
+                    this.trustManager == null ? trustManagers : Collections.singletonList (this.trustManager), secureRandom);
+        }
+    }
+
+    private static final class LazySSLSocketFactory implements LayeredConnectionSocketFactory {
+        private final ParsedCommand              commandLine;
+        private final CurlJavaOptions            curlJavaOptions;
+        private volatile SSLConnectionSocketFactory delegate;
+
+        LazySSLSocketFactory (final ParsedCommand commandLine, final CurlJavaOptions curlJavaOptions) {
+            this.commandLine = commandLine;
+            this.curlJavaOptions = curlJavaOptions;
+        }
+
+        private SSLConnectionSocketFactory delegate () {
+            SSLConnectionSocketFactory result = this.delegate;
+            if (result == null) {
+                result = prepareSSLSocketFactory (this.commandLine, this.curlJavaOptions);
+                this.delegate = result;
+            }
+            return result;
+        }
+
+        @Override
+        public Socket createSocket (final HttpContext context) throws IOException {
+            return this.delegate ().createSocket (context);
+        }
+
+        @Override
+        public Socket connectSocket (final int connectTimeout, final Socket socket, final HttpHost host,
+                                     final InetSocketAddress remoteAddress, final InetSocketAddress localAddress,
+                                     final HttpContext context) throws IOException {
+            return this.delegate ().connectSocket (connectTimeout, socket, host, remoteAddress, localAddress, context);
+        }
+
+        @Override
+        public Socket createLayeredSocket (final Socket socket, final String target, final int port,
+                                           final HttpContext context) throws IOException {
+            return this.delegate ().createLayeredSocket (socket, target, port, context);
+        }
+    }
+
     static class CertPlusKeyInfo {
 
         private final CertFormat certFormat;
@@ -0,0 +1,71 @@
+package org.toilelibre.libe.curl;
+
+import org.apache.commons.cli.*;
+import org.apache.http.config.*;
+
+import java.lang.reflect.*;
+import java.net.*;
+import java.util.logging.*;
+
+final class SocketConfigProvider {
+
+    private static final Logger LOGGER = Logger.getLogger (SocketConfigProvider.class.getName ());
+
+    private static final String [] KEEPALIVE_OPTIONS = {"TCP_KEEPIDLE", "TCP_KEEPINTERVAL"};
+
+    private static volatile boolean keepAliveTimeUnsupported;
+
+    static SocketConfig prepareSocketConfig (final ParsedCommand commandLine) {
+        final SocketConfig.Builder socketConfig = SocketConfig.custom ()
+                .setTcpNoDelay (!commandLine.hasOption (Arguments.NO_TCP_NODELAY.getOpt ()))
+                .setSoKeepAlive (!commandLine.hasOption (Arguments.NO_KEEPALIVE.getOpt ()));
+        if (commandLine.hasOption (Arguments.SNDBUF.getOpt ())) {
+            socketConfig.setSndBufSize (positiveNumber (commandLine, Arguments.SNDBUF));
+        }
+        if (commandLine.hasOption (Arguments.RCVBUF.getOpt ())) {
+            socketConfig.setRcvBufSize (positiveNumber (commandLine, Arguments.RCVBUF));
+        }
+        if (commandLine.hasOption (Arguments.LINGER.getOpt ())) {
+            socketConfig.setSoLinger (positiveNumber (commandLine, Arguments.LINGER));
+        }
+        return socketConfig.build ();
+    }
+
+    static int keepAliveTimeOf (final ParsedCommand commandLine) {
+        return commandLine.hasOption (Arguments.KEEPALIVE_TIME.getOpt ()) &&
+                !commandLine.hasOption (Arguments.NO_KEEPALIVE.getOpt ()) ?
+                positiveNumber (commandLine, Arguments.KEEPALIVE_TIME) : -1;
+    }
+
+    /**
+     * The keepalive probes timings are only reachable through the jdk.net extended options (java 11+),
+     * they are silently ignored elsewhere, like curl does on the platforms without them.
+     */
+    static void setKeepAliveTime (final Socket socket, final int keepAliveTime) {
+        if (keepAliveTime < 0 || keepAliveTimeUnsupported) {
+            return;
+        }
+        try {
+            final Method setOption = Socket.class.getMethod ("setOption", SocketOption.class, Object.class);
+            final Class<?> extendedSocketOptions = Class.forName ("jdk.net.ExtendedSocketOptions");
+            for (final String keepAliveOption : KEEPALIVE_OPTIONS) {
+                setOption.invoke (socket, extendedSocketOptions.getField (keepAliveOption).get (null), keepAliveTime);
+            }
+        } catch (final ReflectiveOperationException | RuntimeException e) {
+            keepAliveTimeUnsupported = true;
+            LOGGER.log (Level.FINE, "--keepalive-time is not supported here", e);
+        }
+    }
+
+    private static int positiveNumber (final ParsedCommand commandLine, final Option option) {
+        try {
+            final int value = Integer.parseInt (commandLine.getOptionValue (option.getOpt ()).trim ());
+            if (value < 0) {
+                throw new NumberFormatException (String.valueOf (value));
+            }
+            return value;
+        } catch (final NumberFormatException e) {
+            throw new IllegalArgumentException ("option --" + option.getLongOpt () + ": expected a proper numerical parameter", e);
+        }
+    }
+}
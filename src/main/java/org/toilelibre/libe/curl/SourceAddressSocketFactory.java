@@ -0,0 +1,156 @@
+package org.toilelibre.libe.curl;
+
+import org.apache.http.*;
+import org.apache.http.conn.socket.*;
+import org.apache.http.protocol.*;
+
+import java.io.*;
+import java.net.*;
+import java.util.*;
+import java.util.concurrent.atomic.*;
+
+import static java.util.Arrays.*;
+import static java.util.stream.Collectors.*;
+
+/**
+ * Binds the sockets to the --interface address and to a port of the --local-port range.
+ * With a comma separated list of interfaces, each new connection takes the next one,
+ * so that the ephemeral ports of every local address can be used towards the same destination.
+ * The wrapper is only layered when its delegate is, so that the connection operator still rejects
+ * the tunnels over plain sockets.
+ */
+class SourceAddressSocketFactory implements ConnectionSocketFactory {
+
+    private static final AtomicInteger INTERFACES_ROTATION = new AtomicInteger ();
+    private static final AtomicInteger PORTS_ROTATION      = new AtomicInteger ();
+
+    private final ConnectionSocketFactory delegate;
+    private final List<List<InetAddress>> interfaces;
+    private final int                     lowestPort;
+    private final int                     highestPort;
+
+    private SourceAddressSocketFactory (final ConnectionSocketFactory delegate, final List<List<InetAddress>> interfaces,
+                                        final int lowestPort, final int highestPort) {
+        this.delegate = delegate;
+        this.interfaces = interfaces;
+        this.lowestPort = lowestPort;
+        this.highestPort = highestPort;
+    }
+
+    static ConnectionSocketFactory bindingSourceAddress (final ParsedCommand commandLine, final ConnectionSocketFactory delegate) {
+        if (!commandLine.hasOption (Arguments.INTERFACE.getOpt ()) && !commandLine.hasOption (Arguments.LOCAL_PORT.getOpt ())) {
+            return delegate;
+        }
+        final List<List<InetAddress>> interfaces = commandLine.hasOption (Arguments.INTERFACE.getOpt ()) ?
+                stream (commandLine.getOptionValue (Arguments.INTERFACE.getOpt ()).split (","))
+                        .map (String::trim).map (SourceAddressSocketFactory::addressesOf).collect (toList ()) :
+                Collections.emptyList ();
+        final String [] ports = Optional.ofNullable (commandLine.getOptionValue (Arguments.LOCAL_PORT.getOpt ()))
+                .orElse ("0").split ("-", 2);
+        try {
+            final int lowestPort = Integer.parseInt (ports [0].trim ());
+            final int highestPort = ports.length > 1 ? Integer.parseInt (ports [1].trim ()) : lowestPort;
+            if (lowestPort < 0 || highestPort > 65535 || lowestPort > highestPort) {
+                throw new IllegalArgumentException ("option --local-port: is badly used here");
+            }
+            return delegate instanceof LayeredConnectionSocketFactory ?
+                    new LayeredSourceAddressSocketFactory ((LayeredConnectionSocketFactory) delegate, interfaces, lowestPort, highestPort) :
+                    new SourceAddressSocketFactory (delegate, interfaces, lowestPort, highestPort);
+        } catch (final NumberFormatException e) {
+            throw new IllegalArgumentException ("option --local-port: is badly used here", e);
+        }
+    }
+
+    @Override
+    public Socket createSocket (final HttpContext context) throws IOException {
+        return this.delegate.createSocket (context);
+    }
+
+    @Override
+    public Socket connectSocket (final int connectTimeout, final Socket socket, final HttpHost host,
+                                 final InetSocketAddress remoteAddress, final InetSocketAddress localAddress,
+                                 final HttpContext context) throws IOException {
+        final InetAddress localInetAddress = this.interfaces.isEmpty () ?
+                (localAddress == null ? null : localAddress.getAddress ()) :
+                this.nextInterfaceAddress (remoteAddress.getAddress ());
+        if (localInetAddress == null && this.lowestPort == 0) {
+            return this.delegate.connectSocket (connectTimeout, socket, host, remoteAddress, localAddress, context);
+        }
+        final int numberOfPorts = this.highestPort - this.lowestPort + 1;
+        final int offset = this.lowestPort == 0 ? 0 : Math.floorMod (PORTS_ROTATION.getAndIncrement (), numberOfPorts);
+        final int soTimeout = socket.getSoTimeout ();
+        final boolean tcpNoDelay = socket.getTcpNoDelay ();
+        final boolean keepAlive = socket.getKeepAlive ();
+        Socket currentSocket = socket;
+        for (int i = 0 ; ; i++) {
+            final int port = this.lowestPort == 0 ? 0 : this.lowestPort + (offset + i) % numberOfPorts;
+            try {
+                return this.delegate.connectSocket (connectTimeout, currentSocket, host,
+                        remoteAddress, new InetSocketAddress (localInetAddress, port), context);
+            } catch (final BindException e) {
+                if (i == numberOfPorts - 1) {
+                    throw e;
+                }
+                if (currentSocket.isClosed ()) {
+                    currentSocket = this.delegate.createSocket (context);
+                    currentSocket.setSoTimeout (soTimeout);
+                    currentSocket.setTcpNoDelay (tcpNoDelay);
+                    currentSocket.setKeepAlive (keepAlive);
+                }
+            }
+        }
+    }
+
+    private InetAddress nextInterfaceAddress (final InetAddress remoteAddress) throws SocketException {
+        final int offset = Math.floorMod (INTERFACES_ROTATION.getAndIncrement (), this.interfaces.size ());
+        for (int i = 0 ; i < this.interfaces.size () ; i++) {
+            final Optional<InetAddress> address = this.interfaces.get ((offset + i) % this.interfaces.size ()).stream ()
+                    .filter (candidate -> candidate.getClass () == remoteAddress.getClass ()).findFirst ();
+            if (address.isPresent ()) {
+                return address.get ();
+            }
+        }
+        throw new SocketException ("no local address of --interface can reach " + remoteAddress.getHostAddress ());
+    }
+
+    /**
+     * curl syntax : a network interface name, an address or a host name,
+     * or 'if!name' and 'host!name' to remove the ambiguity.
+     */
+    private static List<InetAddress> addressesOf (final String networkInterface) {
+        try {
+            if (networkInterface.startsWith ("host!")) {
+                return Arrays.asList (InetAddress.getAllByName (networkInterface.substring ("host!".length ())));
+            }
+            final String name = networkInterface.replaceFirst ("^if!", "");
+            final NetworkInterface foundInterface = NetworkInterface.getByName (name);
+            if (foundInterface != null) {
+                return Collections.list (foundInterface.getInetAddresses ()).stream ()
+                        .sorted (Comparator.comparing (InetAddress::isLinkLocalAddress)).collect (toList ());
+            }
+            if (networkInterface.startsWith ("if!")) {
+                throw new IllegalArgumentException ("option --interface: " + name + " is not a network interface");
+            }
+            return Arrays.asList (InetAddress.getAllByName (name));
+        } catch (final IOException e) {
+            throw new IllegalArgumentException ("option --interface: " + networkInterface + " can't be used", e);
+        }
+    }
+
+    private static final class LayeredSourceAddressSocketFactory extends SourceAddressSocketFactory
+            implements LayeredConnectionSocketFactory {
+        private final LayeredConnectionSocketFactory layeredDelegate;
+
+        LayeredSourceAddressSocketFactory (final LayeredConnectionSocketFactory delegate, final List<List<InetAddress>> interfaces,
+                                           final int lowestPort, final int highestPort) {
+            super (delegate, interfaces, lowestPort, highestPort);
+            this.layeredDelegate = delegate;
+        }
+
+        @Override
+        public Socket createLayeredSocket (final Socket socket, final String target, final int port,
+                                           final HttpContext context) throws IOException {
+            return this.layeredDelegate.createLayeredSocket (socket, target, port, context);
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package org.toilelibre.libe.curl;
+
+import org.apache.commons.cli.ParseException;
+import org.apache.http.*;
+import org.apache.http.client.*;
+import org.apache.http.conn.*;
+
+import javax.net.ssl.*;
+import java.io.*;
+import java.net.*;
+import java.security.cert.*;
+
+import static org.toilelibre.libe.curl.Curl.CurlArgumentsBuilder.CurlJavaOptions.*;
+
+/**
+ * The command line of curl (the arguments are already split by the shell) :
+ * the body is streamed to the output, the errors are written like curl does ("curl: (7) ...")
+ * and the exit code is the curl one.
+ */
+final class StandaloneRunner {
+
+    static final int OK                             = 0;
+    static final int CURLE_FAILED_INIT              = 2;
+    static final int CURLE_URL_MALFORMAT            = 3;
+    static final int CURLE_COULDNT_RESOLVE_HOST     = 6;
+    static final int CURLE_COULDNT_CONNECT          = 7;
+    static final int CURLE_HTTP_RETURNED_ERROR      = 22;
+    static final int CURLE_WRITE_ERROR              = 23;
+    static final int CURLE_READ_ERROR               = 26;
+    static final int CURLE_OPERATION_TIMEDOUT       = 28;
+    static final int CURLE_SSL_CONNECT_ERROR        = 35;
+    static final int CURLE_RECV_ERROR               = 56;
+    static final int CURLE_PEER_FAILED_VERIFICATION = 60;
+
+    static int run (final String [] args, final OutputStream output, final PrintStream errors) {
+        final WriteFailureDetector out = new WriteFailureDetector (output);
+        try {
+            final ParsedCommand commandLine = ReadArguments.parse (args);
+            if (commandLine.hasOption (Arguments.VERSION.getOpt ())) {
+                out.write ((UglyVersionDisplay.versionLine () + System.lineSeparator ()).getBytes ());
+                out.flush ();
+                return OK;
+            }
+            if (commandLine.getArgs ().length == 0) {
+                errors.println ("curl: (" + CURLE_URL_MALFORMAT + ") no URL specified");
+                return CURLE_URL_MALFORMAT;
+            }
+            final HttpResponse response = Curl.curl (commandLine, with ().build ());
+            if (!commandLine.hasOption (Arguments.OUTPUT.getOpt ()) && response.getEntity () != null) {
+                response.getEntity ().writeTo (out);
+            }
+            out.flush ();
+            return OK;
+        } catch (final ParseException | RuntimeException | IOException e) {
+            final int exitCode = out.failed () ? CURLE_WRITE_ERROR : exitCodeOf (e);
+            errors.println ("curl: (" + exitCode + ") " + messageOf (e));
+            return exitCode;
+        }
+    }
+
+    static int exitCodeOf (final Throwable throwable) {
+        boolean networkFailure = false;
+        for (Throwable cause = throwable ; cause != null ; cause = cause.getCause ()) {
+            if (cause instanceof HttpResponseException) {
+                return CURLE_HTTP_RETURNED_ERROR;
+            }
+            if (cause instanceof UnknownHostException) {
+                return CURLE_COULDNT_RESOLVE_HOST;
+            }
+            if (cause instanceof ConnectTimeoutException || cause instanceof SocketTimeoutException) {
+                return CURLE_OPERATION_TIMEDOUT;
+            }
+            if (cause instanceof ConnectException || cause instanceof NoRouteToHostException) {
+                return CURLE_COULDNT_CONNECT;
+            }
+            if (cause instanceof SSLPeerUnverifiedException) {
+                return CURLE_PEER_FAILED_VERIFICATION;
+            }
+            if (cause instanceof SSLException) {
+                return isCausedByAnUntrustedCertificate (cause) ? CURLE_PEER_FAILED_VERIFICATION : CURLE_SSL_CONNECT_ERROR;
+            }
+            if (cause instanceof FileNotFoundException) {
+                return CURLE_READ_ERROR;
+            }
+            if (cause instanceof MalformedURLException || cause instanceof URISyntaxException ||
+                    cause instanceof ClientProtocolException) {
+                return CURLE_URL_MALFORMAT;
+            }
+            networkFailure |= cause instanceof IOException;
+        }
+        return networkFailure ? CURLE_RECV_ERROR : CURLE_FAILED_INIT;
+    }
+
+    /**
+     * The handshake fails with an SSLHandshakeException when the chain of the server is not trusted,
+     * the SSLPeerUnverifiedException only tells the hostname mismatches.
+     */
+    private static boolean isCausedByAnUntrustedCertificate (final Throwable throwable) {
+        for (Throwable cause = throwable ; cause != null ; cause = cause.getCause ()) {
+            if (cause instanceof CertificateException || cause instanceof CertPathValidatorException ||
+                    cause instanceof CertPathBuilderException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String messageOf (final Throwable throwable) {
+        Throwable cause = throwable;
+        while (cause.getCause () != null && cause.getCause () != cause) {
+            cause = cause.getCause ();
+        }
+        if (cause instanceof HttpResponseException) {
+            return ((HttpResponseException) cause).getReasonPhrase ();
+        }
+        return cause.getMessage () == null ? cause.getClass ().getName () : cause.getMessage ();
+    }
+
+    /**
+     * Tells the failures to write the body (23) from the failures to read it (56).
+     */
+    private static final class WriteFailureDetector extends FilterOutputStream {
+        private boolean failed;
+
+        WriteFailureDetector (final OutputStream out) {
+            super (out);
+        }
+
+        @Override
+        public void write (final byte [] b, final int off, final int len) throws IOException {
+            try {
+                this.out.write (b, off, len);
+            } catch (final IOException e) {
+                this.failed = true;
+                throw e;
+            }
+        }
+
+        @Override
+        public void write (final int b) throws IOException {
+            try {
+                this.out.write (b);
+            } catch (final IOException e) {
+                this.failed = true;
+                throw e;
+            }
+        }
+
+        @Override
+        public void flush () throws IOException {
+            try {
+                this.out.flush ();
+            } catch (final IOException e) {
+                this.failed = true;
+                throw e;
+            }
+        }
+
+        boolean failed () {
+            return this.failed;
+        }
+    }
+}
@@ -10,10 +10,14 @@ final class UglyVersionDisplay {
             return;
         }
 
-        System.out.println (Curl.class.getPackage ().getName () + " version " + NUMBER + ", build-time : " + BUILD_TIME);
+        System.out.println (versionLine ());
 
         throw new Curl.CurlException (
                 new IllegalArgumentException (
                         "You asked me to display the version. Probably not a production-ready code"));
     }
+
+    static String versionLine () {
+        return Curl.class.getPackage ().getName () + " version " + NUMBER + ", build-time : " + BUILD_TIME;
+    }
 }
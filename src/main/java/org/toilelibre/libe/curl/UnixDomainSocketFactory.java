@@ -0,0 +1,282 @@
+package org.toilelibre.libe.curl;
+
+import org.apache.http.*;
+import org.apache.http.conn.*;
+import org.apache.http.conn.socket.*;
+import org.apache.http.protocol.*;
+
+import java.io.*;
+import java.net.*;
+import java.nio.*;
+import java.nio.channels.*;
+
+/**
+ * Connects every route to the --unix-socket path instead of a TCP address.
+ * The unix domain sockets come with java 16 (UnixDomainSocketAddress), they are reached by reflection
+ * so that the library still runs on java 8 when the option is not used.
+ */
+final class UnixDomainSocketFactory implements LayeredConnectionSocketFactory {
+
+    /**
+     * The host name is only used for the Host header and the TLS checks, there is nothing to resolve.
+     */
+    static final DnsResolver NO_RESOLUTION = host -> new InetAddress [] {
+            InetAddress.getByAddress (host, new byte [] {127, 0, 0, 1})};
+
+    private final String                         path;
+    private final LayeredConnectionSocketFactory tlsSocketFactory;
+
+    UnixDomainSocketFactory (final String path, final LayeredConnectionSocketFactory tlsSocketFactory) {
+        this.path = path;
+        this.tlsSocketFactory = tlsSocketFactory;
+    }
+
+    @Override
+    public Socket createSocket (final HttpContext context) {
+        return new UnixDomainSocket ();
+    }
+
+    @Override
+    public Socket connectSocket (final int connectTimeout, final Socket socket, final HttpHost host,
+                                 final InetSocketAddress remoteAddress, final InetSocketAddress localAddress,
+                                 final HttpContext context) throws IOException {
+        final UnixDomainSocket unixDomainSocket = (UnixDomainSocket) socket;
+        unixDomainSocket.connect (this.path);
+        return this.tlsSocketFactory == null ? unixDomainSocket :
+                this.createLayeredSocket (unixDomainSocket, host.getHostName (), remoteAddress.getPort (), context);
+    }
+
+    @Override
+    public Socket createLayeredSocket (final Socket socket, final String target, final int port,
+                                       final HttpContext context) throws IOException {
+        if (this.tlsSocketFactory == null) {
+            throw new UnsupportedSchemeException ("http protocol does not support connection upgrade");
+        }
+        return this.tlsSocketFactory.createLayeredSocket (socket, target, port, context);
+    }
+
+    /**
+     * A java.net.Socket view of a unix SocketChannel (the channel itself refuses to give one).
+     * The channel is non blocking so that the reads can honour the socket timeout.
+     */
+    private static final class UnixDomainSocket extends Socket {
+
+        private SocketChannel   channel;
+        private SocketAddress   address;
+        private Selector        readSelector;
+        private Selector        writeSelector;
+        private volatile int    soTimeout;
+        private volatile boolean closed;
+
+        void connect (final String path) throws IOException {
+            try {
+                this.address = (SocketAddress) Class.forName ("java.net.UnixDomainSocketAddress")
+                        .getMethod ("of", String.class).invoke (null, path);
+                this.channel = (SocketChannel) SocketChannel.class.getMethod ("open", ProtocolFamily.class)
+                        .invoke (null, Enum.valueOf (StandardProtocolFamily.class, "UNIX"));
+            } catch (final ReflectiveOperationException | IllegalArgumentException e) {
+                throw new UnsupportedSchemeException ("--unix-socket needs java 16 or more");
+            }
+            try {
+                this.channel.connect (this.address);
+                this.channel.configureBlocking (false);
+                this.readSelector = Selector.open ();
+                this.writeSelector = Selector.open ();
+                this.channel.register (this.readSelector, SelectionKey.OP_READ);
+                this.channel.register (this.writeSelector, SelectionKey.OP_WRITE);
+            } catch (final IOException e) {
+                this.close ();
+                throw new ConnectException (path + ": " + e.getMessage ());
+            }
+        }
+
+        @Override
+        public InputStream getInputStream () {
+            return new InputStream () {
+                @Override
+                public int read () throws IOException {
+                    final byte [] oneByte = new byte [1];
+                    return this.read (oneByte, 0, 1) == -1 ? -1 : oneByte [0] & 0xff;
+                }
+
+                @Override
+                public int read (final byte [] bytes, final int offset, final int length) throws IOException {
+                    if (length == 0) {
+                        return 0;
+                    }
+                    final ByteBuffer buffer = ByteBuffer.wrap (bytes, offset, length);
+                    final long deadline = UnixDomainSocket.this.soTimeout > 0 ?
+                            System.currentTimeMillis () + UnixDomainSocket.this.soTimeout : 0;
+                    while (true) {
+                        final int read = UnixDomainSocket.this.channel.read (buffer);
+                        if (read != 0) {
+                            return read;
+                        }
+                        final long timeLeft = deadline == 0 ? 0 : deadline - System.currentTimeMillis ();
+                        if (deadline != 0 && timeLeft <= 0) {
+                            throw new SocketTimeoutException ("Read timed out");
+                        }
+                        UnixDomainSocket.this.readSelector.select (timeLeft);
+                        UnixDomainSocket.this.readSelector.selectedKeys ().clear ();
+                    }
+                }
+
+                @Override
+                public void close () throws IOException {
+                    UnixDomainSocket.this.close ();
+                }
+            };
+        }
+
+        @Override
+        public OutputStream getOutputStream () {
+            return new OutputStream () {
+                @Override
+                public void write (final int oneByte) throws IOException {
+                    this.write (new byte [] {(byte) oneByte}, 0, 1);
+                }
+
+                @Override
+                public void write (final byte [] bytes, final int offset, final int length) throws IOException {
+                    final ByteBuffer buffer = ByteBuffer.wrap (bytes, offset, length);
+                    while (buffer.hasRemaining ()) {
+                        if (UnixDomainSocket.this.channel.write (buffer) == 0) {
+                            UnixDomainSocket.this.writeSelector.select ();
+                            UnixDomainSocket.this.writeSelector.selectedKeys ().clear ();
+                        }
+                    }
+                }
+
+                @Override
+                public void close () throws IOException {
+                    UnixDomainSocket.this.close ();
+                }
+            };
+        }
+
+        @Override
+        public synchronized void close () throws IOException {
+            if (this.closed) {
+                return;
+            }
+            this.closed = true;
+            for (final Closeable closeable : new Closeable [] {this.readSelector, this.writeSelector, this.channel}) {
+                if (closeable != null) {
+                    closeable.close ();
+                }
+            }
+            super.close ();
+        }
+
+        @Override
+        public boolean isConnected () {
+            return this.channel != null && this.channel.isConnected ();
+        }
+
+        @Override
+        public boolean isBound () {
+            return this.isConnected ();
+        }
+
+        @Override
+        public boolean isClosed () {
+            return this.closed;
+        }
+
+        @Override
+        public void shutdownInput () throws IOException {
+            this.channel.shutdownInput ();
+        }
+
+        @Override
+        public void shutdownOutput () throws IOException {
+            this.channel.shutdownOutput ();
+        }
+
+        @Override
+        public SocketAddress getRemoteSocketAddress () {
+            return this.address;
+        }
+
+        @Override
+        public SocketAddress getLocalSocketAddress () {
+            return null;
+        }
+
+        @Override
+        public InetAddress getInetAddress () {
+            return null;
+        }
+
+        @Override
+        public InetAddress getLocalAddress () {
+            return InetAddress.getLoopbackAddress ();
+        }
+
+        @Override
+        public int getPort () {
+            return 0;
+        }
+
+        @Override
+        public int getLocalPort () {
+            return -1;
+        }
+
+        @Override
+        public void setSoTimeout (final int timeout) {
+            this.soTimeout = timeout;
+        }
+
+        @Override
+        public int getSoTimeout () {
+            return this.soTimeout;
+        }
+
+        // the TCP options have no meaning here
+
+        @Override
+        public void setTcpNoDelay (final boolean on) {
+        }
+
+        @Override
+        public boolean getTcpNoDelay () {
+            return false;
+        }
+
+        @Override
+        public void setKeepAlive (final boolean on) {
+        }
+
+        @Override
+        public boolean getKeepAlive () {
+            return false;
+        }
+
+        @Override
+        public void setSoLinger (final boolean on, final int linger) {
+        }
+
+        @Override
+        public int getSoLinger () {
+            return -1;
+        }
+
+        @Override
+        public void setReuseAddress (final boolean on) {
+        }
+
+        @Override
+        public void setReceiveBufferSize (final int size) {
+        }
+
+        @Override
+        public void setSendBufferSize (final int size) {
+        }
+
+        @Override
+        public String toString () {
+            return "UnixDomainSocket[" + this.address + "]";
+        }
+    }
+}
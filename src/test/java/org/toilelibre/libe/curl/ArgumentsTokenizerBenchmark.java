@@ -0,0 +1,54 @@
+package org.toilelibre.libe.curl;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Split time of a command per size of its -d payload, outside of the unit tests (whose timings mean nothing) :
+ * mvn test-compile && java -cp target/classes:target/test-classes org.toilelibre.libe.curl.ArgumentsTokenizerBenchmark
+ * Each size is warmed up, then measured several times : the best and the median times are printed with the time per char,
+ * which stays flat when the split is linear.
+ */
+public final class ArgumentsTokenizerBenchmark {
+
+    private static final int [] PAYLOAD_LENGTHS = {16 * 1024, 64 * 1024, 256 * 1024, 1024 * 1024, 4 * 1024 * 1024};
+    private static final int    WARMUP_ROUNDS   = 200;
+    private static final int    MEASURED_ROUNDS = 31;
+
+    private static int sink;
+
+    private ArgumentsTokenizerBenchmark () {
+    }
+
+    public static void main (final String [] args) {
+        System.out.println (String.format (Locale.ROOT, "%12s %12s %12s %10s", "chars", "best (us)", "median (us)", "ns/char"));
+        for (final int payloadLength : PAYLOAD_LENGTHS) {
+            final String command = "curl -X POST -H 'Content-Type: application/json' -d '" + jsonPayload (payloadLength) +
+                    "' http://localhost/";
+            final int rounds = Math.max (WARMUP_ROUNDS * 64 * 1024 / payloadLength, 10);
+            for (int i = 0 ; i < rounds ; i++) {
+                sink += ArgumentsTokenizer.tokenize (command).size ();
+            }
+            final long [] times = new long [MEASURED_ROUNDS];
+            for (int i = 0 ; i < MEASURED_ROUNDS ; i++) {
+                final long start = System.nanoTime ();
+                sink += ArgumentsTokenizer.tokenize (command).size ();
+                times [i] = System.nanoTime () - start;
+            }
+            Arrays.sort (times);
+            System.out.println (String.format (Locale.ROOT, "%12d %12d %12d %10.2f", command.length (), times [0] / 1000,
+                    times [MEASURED_ROUNDS / 2] / 1000, (double) times [MEASURED_ROUNDS / 2] / command.length ()));
+        }
+        if (sink == 0) {
+            System.out.println ("nothing split");
+        }
+    }
+
+    static String jsonPayload (final int length) {
+        final StringBuilder payload = new StringBuilder ("[");
+        while (payload.length () < length) {
+            payload.append ("{\"name\":\"it's a test\",\"value\":").append (payload.length ()).append ("},");
+        }
+        return payload.append ("{}]").toString ();
+    }
+}
@@ -0,0 +1,106 @@
+package org.toilelibre.libe.curl;
+
+import org.junit.*;
+
+import java.util.*;
+
+import static java.util.Arrays.*;
+import static java.util.Collections.emptyList;
+import static org.junit.Assert.*;
+
+public class ArgumentsTokenizerTest {
+
+    @Test
+    public void quotedArgumentsShouldKeepTheirWhitespaces () {
+        //given
+        final String command = "curl -X POST -H 'Content-Type: application/json'\t-d \"a  b\" http://localhost/";
+
+        //when
+        final List<String> arguments = ArgumentsTokenizer.tokenize (command);
+
+        //then
+        assertEquals (asList ("-X", "POST", "-H", "Content-Type: application/json", "-d", "a  b", "http://localhost/"), arguments);
+    }
+
+    @Test
+    public void escapedQuotesAndWhitespacesShouldBeUnescaped () {
+        //given
+        final String command = "-d \"{\\\"name\\\":\\\"a\\\\b\\\"}\" -o my\\ file C:\\temp\\file";
+
+        //when
+        final List<String> arguments = ArgumentsTokenizer.tokenize (command);
+
+        //then
+        assertEquals (asList ("-d", "{\"name\":\"a\\b\"}", "-o", "my file", "C:\\temp\\file"), arguments);
+    }
+
+    @Test
+    public void aSingleQuoteShouldOnlyCloseBeforeAWhitespace () {
+        //given
+        final String command = "-d 'it's fine' -H 'X-Test: 1'";
+
+        //when
+        final List<String> arguments = ArgumentsTokenizer.tokenize (command);
+
+        //then
+        assertEquals (asList ("-d", "it's fine", "-H", "X-Test: 1"), arguments);
+    }
+
+    @Test
+    public void aQuoteGluedToAnOptionNameShouldStartItsValue () {
+        //given
+        final String command = "-H'Host: localhost' --data-urlencode message='hello world' -d \"a\"b ''";
+
+        //when
+        final List<String> arguments = ArgumentsTokenizer.tokenize (command);
+
+        //then
+        assertEquals (asList ("-H", "Host: localhost", "--data-urlencode", "message=hello world", "-d", "ab", ""), arguments);
+    }
+
+    @Test
+    public void placeholdersShouldBeReplacedVerbatim () {
+        //given
+        final List<String> placeholderValues = asList ("fr-FR", "'quoted' \"value\"");
+
+        //when
+        final String whole = ArgumentsTokenizer.withPlaceholders ("$curl_placeholder_1", placeholderValues);
+        final String inlined = ArgumentsTokenizer.withPlaceholders ("Accept-Language: $curl_placeholder_0, $curl_placeholder_7", placeholderValues);
+        final String none = ArgumentsTokenizer.withPlaceholders ("$curl_placeholder_0", emptyList ());
+
+        //then
+        assertEquals ("'quoted' \"value\"", whole);
+        assertEquals ("Accept-Language: fr-FR, $curl_placeholder_7", inlined);
+        assertEquals ("$curl_placeholder_0", none);
+    }
+
+    @Test
+    public void theCanonicalCommandShouldBeSplitLikeTheOriginalOne () {
+        //given
+        final List<String> commands = asList ("curl  -X 'POST'  -H'Accept:  */*' http://localhost/",
+                "-d \"a\\\\\" 'b'  \"c  d\"", "-o my\\ 'file' -d 'it's  ok'", "-d 'unterminated  value");
+
+        for (final String command : commands) {
+            //when
+            final List<String> arguments = ArgumentsTokenizer.tokenize (command);
+            final List<String> canonicalArguments = ArgumentsTokenizer.tokenize (ArgumentsCache.canonical (command));
+
+            //then
+            assertEquals (command, arguments, canonicalArguments);
+        }
+    }
+
+    @Test
+    public void aBigPayloadShouldBeSplitInOnePiece () {
+        //given
+        final String payload = ArgumentsTokenizerBenchmark.jsonPayload (1024 * 1024);
+        final String command = "curl -X POST -H 'Content-Type: application/json' -d '" + payload + "' http://localhost/";
+
+        //when
+        final List<String> arguments = ArgumentsTokenizer.tokenize (command);
+
+        //then
+        assertEquals (7, arguments.size ());
+        assertEquals (payload, arguments.get (5));
+    }
+}
@@ -0,0 +1,86 @@
+package org.toilelibre.libe.curl;
+
+import com.sun.net.httpserver.HttpServer;
+import org.apache.http.HttpHost;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.impl.auth.BasicScheme;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class AuthMethodHandlerTest {
+
+    @Test
+    public void basicShouldBeSentPreemptively () {
+        //when
+        final HttpClientContext context = AuthMethodHandler.prepareContext (ReadArguments.getCommandLineFromRequest (
+                "--basic -u user:password https://localhost:8443/private/login", Collections.emptyList ()));
+
+        //then
+        assertTrue (context.getAuthCache ().get (new HttpHost ("localhost", 8443, "https")) instanceof BasicScheme);
+    }
+
+    @Test
+    public void authStateShouldBeSharedBetweenTheCallsToTheSameTarget () {
+        //when
+        final HttpClientContext firstContext = AuthMethodHandler.prepareContext (ReadArguments.getCommandLineFromRequest (
+                "-u user:password https://localhost:8443/private/login", Collections.emptyList ()));
+        final HttpClientContext secondContext = AuthMethodHandler.prepareContext (ReadArguments.getCommandLineFromRequest (
+                "-u user:password https://localhost:8443/private/logged", Collections.emptyList ()));
+
+        //then
+        assertNull (firstContext.getAuthCache ().get (new HttpHost ("localhost", 8443, "https")));
+        assertSame (firstContext.getAuthCache (), secondContext.getAuthCache ());
+        assertSame (firstContext.getCredentialsProvider (), secondContext.getCredentialsProvider ());
+    }
+
+    @Test
+    public void digestShouldReuseTheServerNonce () throws IOException {
+        //given
+        final AtomicInteger challenges = new AtomicInteger ();
+        final List<String> nonceCounts = new CopyOnWriteArrayList<> ();
+        final HttpServer server = HttpServer.create (new InetSocketAddress (InetAddress.getLoopbackAddress (), 0), 0);
+        server.createContext ("/digest", exchange -> {
+            final String authorization = exchange.getRequestHeaders ().getFirst ("Authorization");
+            final boolean challenged = authorization == null || !authorization.startsWith ("Digest ");
+            if (challenged) {
+                challenges.incrementAndGet ();
+                exchange.getResponseHeaders ().add ("WWW-Authenticate", "Digest realm=\"appliance\", nonce=\"dcd98b7102dd2f0e\", qop=\"auth\"");
+            } else {
+                nonceCounts.add (authorization.replaceAll (".*nc=([0-9a-f]+).*", "$1"));
+            }
+            final byte [] body = (challenged ? "unauthorized" : "ok").getBytes ();
+            exchange.sendResponseHeaders (challenged ? 401 : 200, body.length);
+            try (final OutputStream responseBody = exchange.getResponseBody ()) {
+                responseBody.write (body);
+            }
+        });
+        server.start ();
+
+        try {
+            //when
+            for (int i = 0 ; i < 3 ; i++) {
+                Curl.$ ("--digest -u user:password http://localhost:" + server.getAddress ().getPort () + "/digest");
+            }
+
+            //then
+            assertEquals (1, challenges.get ());
+            assertEquals (asList ("00000001", "00000002", "00000003"), nonceCounts);
+        } finally {
+            server.stop (0);
+        }
+    }
+}
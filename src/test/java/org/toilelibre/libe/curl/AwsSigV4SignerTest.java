@@ -0,0 +1,83 @@
+package org.toilelibre.libe.curl;
+
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPut;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.entity.FileEntity;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.time.Instant;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+
+public class AwsSigV4SignerTest {
+
+    private static final String CREDENTIALS = "-u AKIDEXAMPLE:wJalrXUtnFEMI/K7MDENG+bPxRfiCYEXAMPLEKEY";
+    private static final Instant NOW        = Instant.parse ("2015-08-30T12:36:00Z");
+
+    @Test
+    public void getVanilla () {
+        //given
+        final HttpUriRequest request = new HttpGet ("https://example.amazonaws.com/");
+
+        //when
+        AwsSigV4Signer.sign (this.commandLine ("aws:amz:us-east-1:service", "https://example.amazonaws.com/"), request, NOW);
+
+        //then
+        assertEquals ("20150830T123600Z", request.getFirstHeader ("X-Amz-Date").getValue ());
+        assertEquals ("AWS4-HMAC-SHA256 Credential=AKIDEXAMPLE/20150830/us-east-1/service/aws4_request, " +
+                        "SignedHeaders=host;x-amz-date, " +
+                        "Signature=5fa00fa31553b73ebf1942676e86291e8372ff2a2260956d9b8aae1d763fbf31",
+                request.getFirstHeader ("Authorization").getValue ());
+    }
+
+    @Test
+    public void getVanillaQueryOrderKeyCase () {
+        //given
+        final HttpUriRequest request = new HttpGet ("https://example.amazonaws.com/?Param2=value2&Param1=value1");
+
+        //when
+        AwsSigV4Signer.sign (this.commandLine ("aws:amz:us-east-1:service", "https://example.amazonaws.com/"), request, NOW);
+
+        //then
+        assertEquals ("AWS4-HMAC-SHA256 Credential=AKIDEXAMPLE/20150830/us-east-1/service/aws4_request, " +
+                        "SignedHeaders=host;x-amz-date, " +
+                        "Signature=b97d918cfa904a5beff61c982a1b6f458b799221646efd99d3219ec94cdf2500",
+                request.getFirstHeader ("Authorization").getValue ());
+    }
+
+    @Test
+    public void s3ShouldHashTheSmallFilesAndNotTheLargeOnes () throws IOException {
+        //given
+        final File smallFile = File.createTempFile ("small", ".bin");
+        final File largeFile = File.createTempFile ("large", ".bin");
+        smallFile.deleteOnExit ();
+        largeFile.deleteOnExit ();
+        try (final RandomAccessFile large = new RandomAccessFile (largeFile, "rw")) {
+            large.setLength (AwsSigV4Signer.UNSIGNED_PAYLOAD_THRESHOLD + 1);
+        }
+        final HttpPut smallUpload = new HttpPut ("http://localhost:9000/bucket/small");
+        smallUpload.setEntity (new FileEntity (smallFile));
+        final HttpPut largeUpload = new HttpPut ("http://localhost:9000/bucket/large");
+        largeUpload.setEntity (new FileEntity (largeFile));
+        final ParsedCommand commandLine = this.commandLine ("aws:amz:us-east-1:s3", "http://localhost:9000/bucket/");
+
+        //when
+        AwsSigV4Signer.sign (commandLine, smallUpload, NOW);
+        AwsSigV4Signer.sign (commandLine, largeUpload, NOW);
+
+        //then
+        assertEquals ("e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855",
+                smallUpload.getFirstHeader ("x-amz-content-sha256").getValue ());
+        assertEquals ("UNSIGNED-PAYLOAD", largeUpload.getFirstHeader ("x-amz-content-sha256").getValue ());
+    }
+
+    private ParsedCommand commandLine (final String sigV4, final String url) {
+        return ReadArguments.getCommandLineFromRequest ("--aws-sigv4 " + sigV4 + " " + CREDENTIALS + " " + url,
+                Collections.emptyList ());
+    }
+}
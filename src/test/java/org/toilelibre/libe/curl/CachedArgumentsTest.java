@@ -1,10 +1,7 @@
 package org.toilelibre.libe.curl;
 
-import org.apache.commons.cli.*;
-import org.apache.commons.lang3.reflect.*;
 import org.junit.*;
 
-import java.lang.reflect.*;
 import java.util.*;
 
 import static java.util.Arrays.*;
@@ -13,46 +10,99 @@ import static org.junit.Assert.*;
 
 public class CachedArgumentsTest {
 
-    private static int containsKeyCallsCounter = 0;
-    private static int getCallsCounter = 0;
-
-    private static final HashMap<String, List<String>> SHARED_CACHE = new HashMap<String, List<String>> (){
-
-        @Override
-        public boolean containsKey (Object o) {
-            containsKeyCallsCounter++;
-            return super.containsKey (o);
-        }
-
-        @Override
-        public List<String> get (Object o) {
-            getCallsCounter++;
-            return super.get (o);
-        }
-    };
-
     @Test
     public void curlCommandMatchesShouldBeSavedInCache () {
+        //given
+        final ArgumentsCache cache = new ArgumentsCache (ArgumentsCache.DEFAULT_MAX_WEIGHT, ArgumentsCache.DEFAULT_MAX_COMMAND_LENGTH);
         String args = "-X POST -H 'Content-Type:application/json' " +
                 "-d '{\"test\":{\"name\":\"TEST_NAME\",\"value\":\"TEST_VALUE\"}}'";
 
-        CommandLine result1 = ReadArguments.getCommandLineFromRequest (args,
-                emptyList (), SHARED_CACHE);
+        //when
+        ParsedCommand result1 = ReadArguments.getCommandLineFromRequest (args, emptyList (), cache);
 
-        assertEquals (1, containsKeyCallsCounter);
-        assertEquals (0, getCallsCounter);
+        //then
+        assertEquals (1, cache.misses ());
+        assertEquals (0, cache.hits ());
 
-        CommandLine result2 = ReadArguments.getCommandLineFromRequest (args,
-                emptyList (), SHARED_CACHE);
+        //when
+        ParsedCommand result2 = ReadArguments.getCommandLineFromRequest (args, emptyList (), cache);
 
-        assertEquals (2, containsKeyCallsCounter);
-        assertEquals (1, getCallsCounter);
+        //then
+        assertEquals (1, cache.misses ());
+        assertEquals (1, cache.hits ());
+        assertArrayEquals (result1.getArgs (), result2.getArgs ());
+        assertEquals (1, cache.size ());
+        assertEquals (asList ("-X", "POST", "-H", "Content-Type:application/json", "-d", "{\"test\":{\"name" +
+                "\":\"TEST_NAME\",\"value\":\"TEST_VALUE\"}}"), cache.computeIfAbsent (ArgumentsCache.canonical (args),
+                command -> { throw new AssertionError (command); }));
+    }
+
+    @Test
+    public void equivalentCommandsShouldShareTheSameEntry () {
+        //given
+        final ArgumentsCache cache = new ArgumentsCache (ArgumentsCache.DEFAULT_MAX_WEIGHT, ArgumentsCache.DEFAULT_MAX_COMMAND_LENGTH);
 
+        //when
+        final ParsedCommand result1 = ReadArguments.getCommandLineFromRequest ("curl -X POST -H 'Accept: */*' http://localhost/", emptyList (), cache);
+        final ParsedCommand result2 = ReadArguments.getCommandLineFromRequest ("curl  -X 'POST'\t-H 'Accept: */*'   \"http://localhost/\"", emptyList (), cache);
+
+        //then
+        assertEquals (1, cache.size ());
+        assertEquals (1, cache.misses ());
+        assertEquals (1, cache.hits ());
         assertArrayEquals (result1.getArgs (), result2.getArgs ());
+        assertEquals (result1.getOptionValue (Arguments.HEADER.getOpt ()), result2.getOptionValue (Arguments.HEADER.getOpt ()));
+        assertEquals ("POST", result2.getOptionValue (Arguments.HTTP_METHOD.getOpt ()));
+    }
+
+    @Test
+    public void quotedWhitespacesShouldNotBeCollapsed () {
+        //given
+        final String command = "-H 'X-Test:  two  spaces' -d \"a  b\" http://localhost/";
+
+        //when
+        final String canonical = ArgumentsCache.canonical (command);
+
+        //then
+        assertEquals (" -H 'X-Test:  two  spaces' -d \"a  b\" http://localhost/ ", canonical);
+    }
+
+    @Test
+    public void longCommandsShouldBypassTheCache () {
+        //given
+        final ArgumentsCache cache = new ArgumentsCache (ArgumentsCache.DEFAULT_MAX_WEIGHT, 64);
+        final char [] payload = new char [128];
+        Arrays.fill (payload, 'a');
+
+        //when
+        final ParsedCommand commandLine = ReadArguments.getCommandLineFromRequest (
+                "curl -d '" + new String (payload) + "' http://localhost/", emptyList (), cache);
+
+        //then
+        assertEquals (new String (payload), commandLine.getOptionValue (Arguments.DATA.getOpt ()));
+        assertEquals (0, cache.size ());
+        assertEquals (1, cache.bypasses ());
+        assertEquals (0, cache.misses ());
+    }
+
+    @Test
+    public void leastRecentlyUsedCommandsShouldBeEvictedWhenTheCacheIsTooHeavy () {
+        //given
+        final ArgumentsCache cache = new ArgumentsCache (200, ArgumentsCache.DEFAULT_MAX_COMMAND_LENGTH);
+
+        //when
+        ReadArguments.getCommandLineFromRequest ("curl http://localhost/first", emptyList (), cache);
+        ReadArguments.getCommandLineFromRequest ("curl http://localhost/second", emptyList (), cache);
+        ReadArguments.getCommandLineFromRequest ("curl http://localhost/first", emptyList (), cache);
+        for (int i = 0 ; i < 10 ; i++) {
+            ReadArguments.getCommandLineFromRequest ("curl http://localhost/other" + i, emptyList (), cache);
+        }
+        ReadArguments.getCommandLineFromRequest ("curl http://localhost/other9", emptyList (), cache);
 
-        assertEquals (1, SHARED_CACHE.size ());
-        assertTrue (SHARED_CACHE.containsKey (args + " "));
-        assertEquals (asList ("-X", "POST", "-H", "'Content-Type:application/json'", "-d", "'{\"test\":{\"name" +
-                "\":\"TEST_NAME\",\"value\":\"TEST_VALUE\"}}'"), SHARED_CACHE.get (args + " "));
+        //then
+        assertTrue (cache.weight () <= 200);
+        assertTrue (cache.evictions () > 0);
+        assertEquals (2, cache.hits ());
+        assertEquals (cache.misses () - cache.evictions (), cache.size ());
     }
 }
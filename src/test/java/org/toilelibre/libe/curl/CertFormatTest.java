@@ -0,0 +1,94 @@
+package org.toilelibre.libe.curl;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.security.KeyFactory;
+import java.security.NoSuchAlgorithmException;
+import java.security.PrivateKey;
+import java.security.cert.Certificate;
+import java.security.cert.X509Certificate;
+import java.security.interfaces.ECPrivateKey;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+public class CertFormatTest {
+
+    @Test
+    public void theRsaAndEcKeysShouldBeRead () throws IOException {
+        //when
+        final PrivateKey pkcs8Rsa = onlyKeyOf (CertFormat.PEM, "src/test/resources/clients/libe/libe.pem");
+        final PrivateKey pkcs1Rsa = onlyKeyOf (CertFormat.PEM, "src/test/resources/server/libe/libe.key.unprotected");
+        final PrivateKey derPkcs1Rsa = onlyKeyOf (CertFormat.DER, "src/test/resources/clients/libe/libe.key.der");
+        final PrivateKey sec1Ec = onlyKeyOf (CertFormat.PEM, "src/test/resources/keys/ec.sec1.pem");
+        final PrivateKey pkcs8Ec = onlyKeyOf (CertFormat.PEM, "src/test/resources/keys/ec.pkcs8.pem");
+        final PrivateKey derPkcs8Ec = onlyKeyOf (CertFormat.DER, "src/test/resources/keys/ec.pkcs8.der");
+
+        //then
+        assertEquals ("RSA", pkcs8Rsa.getAlgorithm ());
+        assertEquals ("RSA", pkcs1Rsa.getAlgorithm ());
+        assertEquals ("RSA", derPkcs1Rsa.getAlgorithm ());
+        assertEquals ("EC", sec1Ec.getAlgorithm ());
+        assertEquals (((ECPrivateKey) pkcs8Ec).getS (), ((ECPrivateKey) sec1Ec).getS ());
+        assertArrayEquals (pkcs8Ec.getEncoded (), derPkcs8Ec.getEncoded ());
+    }
+
+    @Test
+    public void theEdwardsKeysShouldBeReadWhenTheJvmSupportsThem () throws IOException {
+        //given
+        assumeTrue (isSupported ("Ed25519"));
+
+        //when
+        final PrivateKey ed25519 = onlyKeyOf (CertFormat.PEM, "src/test/resources/keys/ed25519.pem");
+
+        //then
+        assertTrue (ed25519.getAlgorithm ().matches ("Ed25519|EdDSA"));
+    }
+
+    @Test
+    public void everyCertificateOfABundleShouldBeRead () throws IOException {
+        //given
+        final String bundle = new String (Files.readAllBytes (Paths.get ("src/test/resources/ca/fakeCa.crt")), StandardCharsets.US_ASCII) +
+                "\r\n# the server\r\n" +
+                new String (Files.readAllBytes (Paths.get ("src/test/resources/server/libe/libe.crt")), StandardCharsets.US_ASCII)
+                        .replace ("\n", "\r\n") +
+                new String (Files.readAllBytes (Paths.get ("src/test/resources/clients/libe/libe.pem")), StandardCharsets.US_ASCII);
+
+        //when
+        final List<Certificate> certificates = CertFormat.PEM.generateCredentialsFromFileAndPassword (CertFormat.Kind.CERTIFICATE,
+                bundle.getBytes (StandardCharsets.US_ASCII), null);
+
+        //then
+        assertEquals (3, certificates.size ());
+        assertTrue (certificates.stream ().allMatch (X509Certificate.class::isInstance));
+    }
+
+    @Test (expected = Curl.CurlException.class)
+    public void anEncryptedPemKeyShouldNotBeIgnored () throws IOException {
+        //when
+        onlyKeyOf (CertFormat.PEM, "src/test/resources/server/libe/libe.pem");
+    }
+
+    private static boolean isSupported (final String keyAlgorithm) {
+        try {
+            KeyFactory.getInstance (keyAlgorithm);
+            return true;
+        } catch (final NoSuchAlgorithmException e) {
+            return false;
+        }
+    }
+
+    private static PrivateKey onlyKeyOf (final CertFormat certFormat, final String path) throws IOException {
+        final List<PrivateKey> privateKeys = certFormat.generateCredentialsFromFileAndPassword (CertFormat.Kind.PRIVATE_KEY,
+                Files.readAllBytes (Paths.get (path)), null);
+        assertEquals (1, privateKeys.size ());
+        return privateKeys.get (0);
+    }
+}
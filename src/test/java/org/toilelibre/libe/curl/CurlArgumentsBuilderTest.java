@@ -0,0 +1,107 @@
+package org.toilelibre.libe.curl;
+
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+import org.toilelibre.libe.curl.Curl.CurlArgumentsBuilder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.toilelibre.libe.curl.Curl.CurlArgumentsBuilder.CurlJavaOptions.with;
+
+public class CurlArgumentsBuilderTest {
+
+    @Test
+    public void aBuilderShouldBeAReusableTemplate () {
+        //given
+        final CurlArgumentsBuilder template = Curl.curl ().option ("k", null).option ("header", "Accept: */*");
+
+        //when
+        final CurlArgumentsBuilder post = template.option ("X", "POST").option ("H", "Content-Type: application/json");
+        final ParsedCommand templateCommand = template.commandLineOf ("http://localhost/template");
+        final ParsedCommand firstPostCommand = post.commandLineOf ("http://localhost/first");
+        final ParsedCommand secondPostCommand = post.commandLineOf ("http://localhost/second");
+
+        //then
+        assertFalse (templateCommand.hasOption (Arguments.HTTP_METHOD.getOpt ()));
+        assertArrayEquals (new String [] {"Accept: */*"}, templateCommand.getOptionValues (Arguments.HEADER.getOpt ()));
+        assertArrayEquals (new String [] {"http://localhost/second"}, secondPostCommand.getArgs ());
+        assertArrayEquals (new String [] {"http://localhost/first"}, firstPostCommand.getArgs ());
+        assertEquals ("POST", secondPostCommand.getOptionValue (Arguments.HTTP_METHOD.getOpt ()));
+        assertArrayEquals (new String [] {"Accept: */*", "Content-Type: application/json"},
+                secondPostCommand.getOptionValues (Arguments.HEADER.getOpt ()));
+        assertTrue (secondPostCommand.hasOption (Arguments.TRUST_INSECURE.getOpt ()));
+    }
+
+    @Test
+    public void theGeneratedOptionMethodsShouldBeCompiledWithTheBuilder () {
+        //given
+        final CurlArgumentsBuilder builder = Curl.curl ().k ().xUpperCase ("POST").tlsv1two ().connecttimeout ("10");
+
+        //when
+        final ParsedCommand commandLine = builder.commandLineOf ("https://localhost/");
+
+        //then
+        assertTrue (commandLine.hasOption (Arguments.TRUST_INSECURE.getOpt ()));
+        assertEquals ("POST", commandLine.getOptionValue (Arguments.HTTP_METHOD.getOpt ()));
+        assertTrue (commandLine.hasOption (Arguments.TLS_V12.getOpt ()));
+        assertEquals ("10", commandLine.getOptionValue (Arguments.CONNECT_TIMEOUT.getOpt ()));
+    }
+
+    @Test
+    public void theValuesShouldBeUsedVerbatim () {
+        //given
+        final String json = "{\"name\": \"it's a 'test'\", \"path\": \"C:\\\\temp\"}";
+
+        //when
+        final ParsedCommand commandLine = Curl.curl ().javaOptions (with ().placeHolders (asList ("fr-FR")).build ())
+                .option ("d", json).option ("H", "Accept-Language: $curl_placeholder_0").commandLineOf ("http://localhost/");
+
+        //then
+        assertEquals (json, commandLine.getOptionValue (Arguments.DATA.getOpt ()));
+        assertEquals ("Accept-Language: fr-FR", commandLine.getOptionValue (Arguments.HEADER.getOpt ()));
+    }
+
+    @Test
+    public void runningTheSameBuilderTwiceShouldSendTheSameRequest () throws IOException {
+        //given
+        final List<String> requests = new CopyOnWriteArrayList<> ();
+        final HttpServer server = HttpServer.create (new InetSocketAddress (InetAddress.getLoopbackAddress (), 0), 0);
+        server.createContext ("/json", exchange -> {
+            requests.add (exchange.getRequestMethod () + " " + exchange.getRequestURI () + " " +
+                    IOUtils.toString (exchange.getRequestBody (), StandardCharsets.UTF_8));
+            final byte [] body = "ok".getBytes (StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders (200, body.length);
+            try (final OutputStream responseBody = exchange.getResponseBody ()) {
+                responseBody.write (body);
+            }
+        });
+        server.start ();
+        final String url = "http://localhost:" + server.getAddress ().getPort () + "/json";
+        final CurlArgumentsBuilder builder = Curl.curl ().option ("X", "POST").option ("d", "{\"var1\":\"val 1\"}");
+
+        try {
+            //when
+            final String firstBody = builder.$ (url);
+            final String secondBody = builder.$ (url);
+
+            //then
+            assertEquals ("ok", firstBody);
+            assertEquals ("ok", secondBody);
+            assertEquals (asList ("POST /json {\"var1\":\"val 1\"}", "POST /json {\"var1\":\"val 1\"}"), requests);
+        } finally {
+            server.stop (0);
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package org.toilelibre.libe.curl;
+
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.io.IOUtils;
+import org.apache.http.HttpResponse;
+import org.junit.Test;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.Collectors;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CurlCommandProcessorTest {
+
+    interface Billing {
+        @CurlCommand ("curl -X POST -H 'Content-Type: application/json' http://localhost:{port}/billing/{id}/charge -d {body}")
+        HttpResponse charge (int port, String id, String body);
+
+        @CurlCommand ("-H 'Accept: text/plain' -H \"X-Label: {label}\" http://localhost:{port}/billing/{id}")
+        String invoice (int port, String id, String label);
+
+        @CurlCommand ("-X DELETE http://localhost:{port}/billing/{id}")
+        CompletableFuture<HttpResponse> cancel (int port, String id);
+    }
+
+    @Test
+    public void theGeneratedImplementationShouldSendTheCommands () throws IOException, ExecutionException, InterruptedException {
+        //given
+        final List<String> requests = new CopyOnWriteArrayList<> ();
+        final HttpServer server = HttpServer.create (new InetSocketAddress (InetAddress.getLoopbackAddress (), 0), 0);
+        server.createContext ("/billing", exchange -> {
+            requests.add (exchange.getRequestMethod () + " " + exchange.getRequestURI () + " " +
+                    exchange.getRequestHeaders ().getFirst ("Content-Type") + " " + exchange.getRequestHeaders ().getFirst ("X-Label") + " " +
+                    IOUtils.toString (exchange.getRequestBody (), StandardCharsets.UTF_8));
+            final byte [] body = "ok".getBytes (StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders (200, body.length);
+            try (final OutputStream responseBody = exchange.getResponseBody ()) {
+                responseBody.write (body);
+            }
+        });
+        server.start ();
+        final int port = server.getAddress ().getPort ();
+        final Billing billing = new CurlCommandProcessorTestBillingCurlImpl ();
+
+        try {
+            //when
+            final HttpResponse chargeResponse = billing.charge (port, "42", "{\"amount\": \"it's 10\"}");
+            final String invoice = billing.invoice (port, "43", "a b");
+            final HttpResponse cancelResponse = billing.cancel (port, "44").get ();
+
+            //then
+            assertEquals (200, chargeResponse.getStatusLine ().getStatusCode ());
+            assertEquals ("ok", invoice);
+            assertEquals (200, cancelResponse.getStatusLine ().getStatusCode ());
+            assertEquals (asList ("POST /billing/42/charge application/json null {\"amount\": \"it's 10\"}",
+                    "GET /billing/43 null a b ", "DELETE /billing/44 null null "), requests);
+        } finally {
+            server.stop (0);
+        }
+    }
+
+    @Test
+    public void aWrongCommandShouldFailTheCompilation () throws IOException, URISyntaxException {
+        //given
+        final String source = "package billing;\n" +
+                "public interface Billing {\n" +
+                "    @org.toilelibre.libe.curl.CurlCommand (\"-X POST --hedaer 'Accept: */*' http://localhost/billing/{id}\")\n" +
+                "    String charge (String id);\n" +
+                "    @org.toilelibre.libe.curl.CurlCommand (\"-k http://localhost/billing/{id}\")\n" +
+                "    String invoice (String id, String unused);\n" +
+                "}\n";
+
+        //when
+        final List<String> errors = compilationErrorsOf (source);
+
+        //then
+        assertEquals (asList ("invalid curl command : Unrecognized option: --hedaer",
+                "the parameters [unused] are not used by the curl command"), errors);
+    }
+
+    @Test
+    public void aValidCommandShouldCompileWithoutAnyError () throws IOException, URISyntaxException {
+        //given
+        final String source = "package billing;\n" +
+                "public interface Billing {\n" +
+                "    @org.toilelibre.libe.curl.CurlCommand (\"-kL --tlsv1.2 --interface lo -d 'tab\\there' http://localhost/{id}\")\n" +
+                "    java.util.concurrent.CompletableFuture<String> invoice (long id);\n" +
+                "}\n";
+
+        //when
+        final List<String> errors = compilationErrorsOf (source);
+
+        //then
+        assertTrue (errors.toString (), errors.isEmpty ());
+        assertFalse (CurlCommandProcessor.literalOf ("tab\there\n").contains ("\\u"));
+    }
+
+    private static List<String> compilationErrorsOf (final String source) throws IOException, URISyntaxException {
+        final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler ();
+        final DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<> ();
+        final File output = Files.createTempDirectory ("curl-command").toFile ();
+        final String classpath = new File (CurlCommand.class.getProtectionDomain ().getCodeSource ().getLocation ().toURI ()) +
+                File.pathSeparator + new File (HttpResponse.class.getProtectionDomain ().getCodeSource ().getLocation ().toURI ());
+        final JavaFileObject sourceFile = new SimpleJavaFileObject (URI.create ("string:///billing/Billing.java"), JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent (final boolean ignoreEncodingErrors) {
+                return source;
+            }
+        };
+        final JavaCompiler.CompilationTask task = compiler.getTask (null, null, diagnostics,
+                asList ("-classpath", classpath, "-d", output.getPath (), "-s", output.getPath ()), null, singletonList (sourceFile));
+        task.setProcessors (singletonList (new CurlCommandProcessor ()));
+        task.call ();
+        return diagnostics.getDiagnostics ().stream ().filter (diagnostic -> diagnostic.getKind () == Diagnostic.Kind.ERROR)
+                .map (diagnostic -> diagnostic.getMessage (null)).collect (Collectors.toList ());
+    }
+}
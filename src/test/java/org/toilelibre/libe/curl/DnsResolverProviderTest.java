@@ -0,0 +1,153 @@
+package org.toilelibre.libe.curl;
+
+import org.apache.http.conn.DnsResolver;
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class DnsResolverProviderTest {
+
+    @Test
+    public void resolutionsShouldBeCachedUntilTheyExpire () throws UnknownHostException, InterruptedException {
+        //given
+        final AtomicInteger lookups = new AtomicInteger ();
+        final DnsResolver resolver = new CachingDnsResolver (host -> {
+            lookups.incrementAndGet ();
+            return new InetAddress [] {InetAddress.getByAddress (host, new byte [] {10, 0, 0, 1})};
+        }, 200, 200);
+
+        //when
+        resolver.resolve ("backend.local");
+        resolver.resolve ("BACKEND.local");
+
+        //then
+        assertEquals (1, lookups.get ());
+        Thread.sleep (250);
+        resolver.resolve ("backend.local");
+        assertEquals (2, lookups.get ());
+    }
+
+    @Test
+    public void failedResolutionsShouldBeCachedToo () {
+        //given
+        final AtomicInteger lookups = new AtomicInteger ();
+        final DnsResolver resolver = new CachingDnsResolver (host -> {
+            lookups.incrementAndGet ();
+            throw new UnknownHostException (host);
+        }, 10000, 10000);
+
+        //when
+        for (int i = 0 ; i < 3 ; i++) {
+            try {
+                resolver.resolve ("nowhere.local");
+                fail ("nowhere.local is not supposed to be resolved");
+            } catch (final UnknownHostException e) {
+                assertEquals ("nowhere.local", e.getMessage ());
+            }
+        }
+
+        //then
+        assertEquals (1, lookups.get ());
+    }
+
+    @Test
+    public void theLeastRecentlyUsedHostsShouldBeEvicted () throws UnknownHostException {
+        //given
+        final AtomicInteger lookups = new AtomicInteger ();
+        final CachingDnsResolver resolver = new CachingDnsResolver (host -> {
+            lookups.incrementAndGet ();
+            return new InetAddress [] {InetAddress.getByAddress (host, new byte [] {10, 0, 0, 1})};
+        }, 10000, 10000, 2);
+
+        //when
+        resolver.resolve ("first.local");
+        resolver.resolve ("second.local");
+        resolver.resolve ("first.local");
+        resolver.resolve ("third.local");
+        resolver.resolve ("first.local");
+
+        //then
+        assertEquals (2, resolver.size ());
+        assertEquals (3, lookups.get ());
+        resolver.resolve ("second.local");
+        assertEquals (4, lookups.get ());
+    }
+
+    @Test
+    public void concurrentMissesShouldShareTheSameLookup () throws InterruptedException {
+        //given
+        final AtomicInteger lookups = new AtomicInteger ();
+        final CountDownLatch release = new CountDownLatch (1);
+        final DnsResolver resolver = new CachingDnsResolver (host -> {
+            lookups.incrementAndGet ();
+            try {
+                release.await (5, TimeUnit.SECONDS);
+            } catch (final InterruptedException e) {
+                Thread.currentThread ().interrupt ();
+            }
+            return new InetAddress [] {InetAddress.getByAddress (host, new byte [] {10, 0, 0, 1})};
+        }, 10000, 10000);
+        final ExecutorService threads = Executors.newFixedThreadPool (4);
+
+        //when
+        final List<CompletableFuture<InetAddress []>> resolutions = IntStream.range (0, 4)
+                .mapToObj (i -> CompletableFuture.supplyAsync (() -> {
+                    try {
+                        return resolver.resolve ("slow.local");
+                    } catch (final UnknownHostException e) {
+                        throw new IllegalStateException (e);
+                    }
+                }, threads)).collect (Collectors.toList ());
+        while (lookups.get () == 0) {
+            Thread.sleep (1);
+        }
+        release.countDown ();
+
+        //then
+        for (final CompletableFuture<InetAddress []> resolution : resolutions) {
+            assertEquals ("slow.local", resolution.join () [0].getHostName ());
+        }
+        assertEquals (1, lookups.get ());
+        threads.shutdown ();
+    }
+
+    @Test
+    public void resolveOptionShouldOverrideTheResolver () throws UnknownHostException {
+        //given
+        final ParsedCommand commandLine = ReadArguments.getCommandLineFromRequest (
+                "--resolve example.com:443:127.0.0.2,[::1] --resolve other.com:80:127.0.0.3 https://example.com/",
+                Collections.emptyList ());
+
+        //when
+        final DnsResolver resolver = DnsResolverProvider.prepareDnsResolver (commandLine, host -> {
+            throw new UnknownHostException (host);
+        });
+
+        //then
+        assertArrayEquals (new InetAddress [] {
+                InetAddress.getByAddress ("example.com", new byte [] {127, 0, 0, 2}),
+                InetAddress.getByAddress ("example.com", InetAddress.getByName ("::1").getAddress ())},
+                resolver.resolve ("example.com"));
+        try {
+            resolver.resolve ("other.com");
+            fail ("other.com is only overridden on port 80");
+        } catch (final UnknownHostException e) {
+            assertEquals ("other.com", e.getMessage ());
+        }
+    }
+}
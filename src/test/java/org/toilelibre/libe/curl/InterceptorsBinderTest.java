@@ -0,0 +1,180 @@
+package org.toilelibre.libe.curl;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.http.HttpResponse;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
+
+public class InterceptorsBinderTest {
+
+    @Test
+    public void aRegisteredInterceptorShouldBeFoundWithoutReflection () throws IOException {
+        //given
+        final List<String> calls = new CopyOnWriteArrayList<> ();
+        final HttpServer server = HttpServer.create (new InetSocketAddress (InetAddress.getLoopbackAddress (), 0), 0);
+        server.createContext ("/", exchange -> {
+            exchange.sendResponseHeaders (204, -1);
+            exchange.close ();
+        });
+        server.start ();
+        Curl.registerInterceptor ("com.example.NotAClass::audit", (request, responseSupplier) -> {
+            calls.add ("before " + request.getRequestLine ().getMethod ());
+            final HttpResponse response = responseSupplier.get ();
+            calls.add ("after " + response.getStatusLine ().getStatusCode ());
+            return response;
+        });
+
+        try {
+            //when
+            Curl.curl ("--interceptor com.example.NotAClass::audit http://localhost:" + server.getAddress ().getPort () + "/");
+            Curl.registerInterceptor ("com.example.NotAClass::audit", null);
+            Curl.curl ("--interceptor com.example.NotAClass::audit http://localhost:" + server.getAddress ().getPort () + "/");
+
+            //then
+            assertEquals (asList ("before GET", "after 204"), calls);
+        } finally {
+            server.stop (0);
+        }
+    }
+
+    @Test
+    public void theNativeImageReflectionMetadataShouldReferToExistingMembers () throws IOException, ClassNotFoundException {
+        //given
+        final JsonNode reflectConfig = reflectConfig ();
+        final List<String> newerJavaMembers = new ArrayList<> ();
+
+        for (final JsonNode entry : reflectConfig) {
+            //when
+            final String typeName = entry.get ("name").asText ();
+            final Class<?> type = jdkClassOrFail (typeName, newerJavaMembers);
+            if (type == null) {
+                continue;
+            }
+
+            //then
+            for (final JsonNode field : entry.path ("fields")) {
+                try {
+                    assertNotNull (type.getDeclaredField (field.get ("name").asText ()));
+                } catch (final NoSuchFieldException e) {
+                    failUnlessJdk (typeName + "." + field.get ("name").asText (), newerJavaMembers);
+                }
+            }
+            for (final JsonNode method : entry.path ("methods")) {
+                final Class<?> [] parameterTypes = new Class<?> [method.get ("parameterTypes").size ()];
+                for (int i = 0 ; i < parameterTypes.length ; i++) {
+                    parameterTypes [i] = Class.forName (method.get ("parameterTypes").get (i).asText ());
+                }
+                try {
+                    assertNotNull ("<init>".equals (method.get ("name").asText ()) ? type.getDeclaredConstructor (parameterTypes) :
+                            type.getDeclaredMethod (method.get ("name").asText (), parameterTypes));
+                } catch (final NoSuchMethodException e) {
+                    failUnlessJdk (typeName + "." + method.get ("name").asText (), newerJavaMembers);
+                }
+            }
+        }
+        assumeTrue ("these members need a newer java : " + newerJavaMembers, newerJavaMembers.isEmpty ());
+    }
+
+    @Test
+    public void theReflectiveCallsOfTheCodeShouldBeInTheNativeImageMetadata () throws IOException {
+        //given
+        final Map<String, Set<String>> declaredMembers = new HashMap<> ();
+        for (final JsonNode entry : reflectConfig ()) {
+            final Set<String> members = declaredMembers.computeIfAbsent (entry.get ("name").asText (), name -> new HashSet<> ());
+            entry.path ("fields").forEach (field -> members.add (field.get ("name").asText ()));
+            entry.path ("methods").forEach (method -> members.add (method.get ("name").asText ()));
+        }
+        final Pattern classForName = Pattern.compile (
+                "Class\\.forName \\(\"([\\w.$]+)\"\\)(?:\\s*\\.get(?:Declared)?(?:Method|Field) \\(\"(\\w+)\")?");
+        final Pattern classLiteral = Pattern.compile ("(\\w+)\\.class\\s*\\.get(?:Declared)?(?:Method|Field) \\(\"(\\w+)\"");
+        final List<String> reflectiveCalls = new ArrayList<> ();
+
+        //when
+        try (final Stream<Path> sources = Files.walk (Paths.get ("src/main/java"))) {
+            for (final Path source : sources.filter (path -> path.toString ().endsWith (".java")).collect (Collectors.toList ())) {
+                final String code = new String (Files.readAllBytes (source), StandardCharsets.UTF_8);
+                for (final Matcher matcher = classForName.matcher (code) ; matcher.find () ; ) {
+                    reflectiveCalls.add (matcher.group (1) + (matcher.group (2) == null ? "" : "." + matcher.group (2)));
+                }
+                for (final Matcher matcher = classLiteral.matcher (code) ; matcher.find () ; ) {
+                    final String simpleName = matcher.group (1);
+                    reflectiveCalls.add (declaredMembers.keySet ().stream ().filter (name -> name.endsWith ("." + simpleName))
+                            .findFirst ().orElse (simpleName) + "." + matcher.group (2));
+                }
+            }
+        }
+
+        //then
+        assertTrue (reflectiveCalls.toString (), reflectiveCalls.size () >= 4);
+        for (final String reflectiveCall : reflectiveCalls) {
+            final int memberSeparator = reflectiveCall.lastIndexOf ('.');
+            final boolean isMember = !declaredMembers.containsKey (reflectiveCall);
+            final Set<String> members = declaredMembers.get (isMember ? reflectiveCall.substring (0, memberSeparator) : reflectiveCall);
+            assertNotNull (reflectiveCall + " is not in reflect-config.json", members);
+            assertTrue (reflectiveCall + " is not in reflect-config.json",
+                    !isMember || members.contains (reflectiveCall.substring (memberSeparator + 1)));
+        }
+    }
+
+    private static JsonNode reflectConfig () throws IOException {
+        try (final InputStream metadata = InterceptorsBinderTest.class.getResourceAsStream (
+                "/META-INF/native-image/org.toile-libre.libe/curl/reflect-config.json")) {
+            return new ObjectMapper ().readTree (metadata);
+        }
+    }
+
+    /**
+     * The metadata also declares the members of the newer javas (unix domain sockets...) : they are skipped on the older ones.
+     */
+    private static Class<?> jdkClassOrFail (final String typeName, final List<String> newerJavaMembers) throws ClassNotFoundException {
+        try {
+            return Class.forName (typeName);
+        } catch (final ClassNotFoundException e) {
+            if (!isJdk (typeName)) {
+                throw e;
+            }
+            newerJavaMembers.add (typeName);
+            return null;
+        }
+    }
+
+    private static void failUnlessJdk (final String member, final List<String> newerJavaMembers) {
+        if (!isJdk (member)) {
+            fail (member + " does not exist");
+        }
+        newerJavaMembers.add (member);
+    }
+
+    private static boolean isJdk (final String name) {
+        return name.startsWith ("java.") || name.startsWith ("javax.") || name.startsWith ("jdk.");
+    }
+}
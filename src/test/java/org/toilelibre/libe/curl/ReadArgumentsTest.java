@@ -0,0 +1,101 @@
+package org.toilelibre.libe.curl;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.ParseException;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.*;
+
+public class ReadArgumentsTest {
+
+    private static final List<String []> COMMANDS = asList (
+            new String [] {"-X", "POST", "-H", "Accept: */*", "-H", "Host: localhost", "-d", "{}", "http://localhost/"},
+            new String [] {"--request", "PUT", "--header=X-Test: 1", "--data-binary", "@file", "http://localhost/"},
+            new String [] {"-kL", "-HAccept: */*", "-dvalue", "-d=other", "-u", "user:password", "http://localhost/"},
+            new String [] {"--insec", "--loc", "--head", "X: y", "--connect-t", "10", "http://localhost/"},
+            new String [] {"-keyfile.pem", "-ct", "PEM", "-E", "cert.pem:password", "-cacert", "ca.pem", "https://localhost/"},
+            new String [] {"-m", "-1", "-d", "-foo", "--tlsv1", "--tlsv1.2", "-1", "http://localhost/"},
+            new String [] {"http://localhost/", "--", "-k", "--data", "x"},
+            new String [] {"--tls", "http://localhost/"},
+            new String [] {"--data=x", "http://localhost/"},
+            new String [] {"--insecure=x", "http://localhost/"},
+            new String [] {"-Q", "http://localhost/"},
+            new String [] {"-kQ", "http://localhost/"},
+            new String [] {"-H", "-X", "GET", "http://localhost/"},
+            new String [] {"http://localhost/", "-d"},
+            new String [] {"-", "first", "second"},
+            new String [] {"--basic", "-basic", "--ntlm", "-digest", "--no-keep", "--aws-sigv4", "aws:amz", "http://localhost/"});
+
+    @Test
+    public void theCommandsShouldBeParsedLikeTheCommonsCliParserDoes () {
+        for (final String [] command : COMMANDS) {
+            //given
+            final String description = Arrays.toString (command);
+            CommandLine expected = null;
+            ParseException expectedError = null;
+            ParsedCommand actual = null;
+            ParseException actualError = null;
+
+            //when
+            try {
+                expected = new DefaultParser ().parse (Arguments.ALL_OPTIONS, command);
+            } catch (final ParseException e) {
+                expectedError = e;
+            }
+            try {
+                actual = ReadArguments.parse (command);
+            } catch (final ParseException e) {
+                actualError = e;
+            }
+
+            //then
+            if (expectedError != null) {
+                assertNotNull (description, actualError);
+                assertEquals (description, expectedError.getClass (), actualError.getClass ());
+                assertEquals (description, expectedError.getMessage (), actualError.getMessage ());
+                continue;
+            }
+            assertNull (description + " : " + actualError, actualError);
+            assertArrayEquals (description, expected.getArgs (), actual.getArgs ());
+            for (final Option option : Arguments.ALL_OPTIONS.getOptions ()) {
+                assertEquals (description + " " + option.getOpt (), expected.hasOption (option.getOpt ()), actual.hasOption (option.getOpt ()));
+                assertEquals (description + " " + option.getLongOpt (), expected.hasOption (option.getLongOpt ()), actual.hasOption (option.getLongOpt ()));
+                assertArrayEquals (description + " " + option.getOpt (), expected.getOptionValues (option.getOpt ()), actual.getOptionValues (option.getOpt ()));
+                assertEquals (description + " " + option.getOpt (), expected.getOptionValue (option.getOpt ()), actual.getOptionValue (option.getOpt ()));
+            }
+        }
+    }
+
+    @Test
+    public void theValuesShouldBeKeptVerbatim () throws ParseException {
+        //given
+        final String [] command = {"-d", "\"quoted\"", "http://localhost/"};
+
+        //when
+        final ParsedCommand parsedCommand = ReadArguments.parse (command);
+
+        //then
+        assertEquals ("\"quoted\"", parsedCommand.getOptionValue (Arguments.DATA.getOpt ()));
+    }
+
+    @Test
+    public void theOptionsShouldBeListedInTheirDeclarationOrder () throws ParseException {
+        //given
+        final String [] command = {"-k", "-H", "A: 1", "-X", "GET", "-H", "B: 2", "http://localhost/"};
+
+        //when
+        final ParsedCommand parsedCommand = ReadArguments.parse (command);
+
+        //then
+        assertArrayEquals (new Option [] {Arguments.HEADER, Arguments.HTTP_METHOD, Arguments.TRUST_INSECURE}, parsedCommand.getOptions ());
+        assertArrayEquals (new String [] {"A: 1", "B: 2"}, parsedCommand.getOptionValues ("header"));
+        assertNull (parsedCommand.getOptionValue (Arguments.TRUST_INSECURE.getOpt ()));
+        assertFalse (parsedCommand.hasOption ("unknown"));
+    }
+}
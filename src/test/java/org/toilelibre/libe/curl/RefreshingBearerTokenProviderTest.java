@@ -0,0 +1,162 @@
+package org.toilelibre.libe.curl;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.Test;
+import org.toilelibre.libe.curl.Curl.CurlArgumentsBuilder.CurlJavaOptions;
+import org.toilelibre.libe.curl.Curl.CurlArgumentsBuilder.CurlJavaOptions.BearerToken;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.ref.WeakReference;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class RefreshingBearerTokenProviderTest {
+
+    private final AtomicInteger calls = new AtomicInteger ();
+
+    @Test
+    public void tokensShouldBeCachedUntilShortlyBeforeTheirExpiry () {
+        //given
+        final Supplier<BearerToken> provider = new RefreshingBearerTokenProvider (
+                this.tokensExpiringIn (Duration.ofSeconds (5), 0), Duration.ofSeconds (10), Duration.ofSeconds (10));
+        final Supplier<BearerToken> longLivedProvider = new RefreshingBearerTokenProvider (
+                this.tokensExpiringIn (Duration.ofHours (1), 0), Duration.ofSeconds (10), Duration.ofSeconds (10));
+
+        //when
+        provider.get ();
+        provider.get ();
+        longLivedProvider.get ();
+        longLivedProvider.get ();
+
+        //then
+        assertEquals (3, this.calls.get ());
+    }
+
+    @Test
+    public void concurrentRequestsShouldShareOneRefresh () {
+        //given
+        final Supplier<BearerToken> provider = new RefreshingBearerTokenProvider (
+                this.tokensExpiringIn (Duration.ofHours (1), 200), Duration.ofSeconds (10), Duration.ofSeconds (60));
+        final ExecutorService executorService = Executors.newFixedThreadPool (8);
+
+        //when
+        final List<CompletableFuture<BearerToken>> tokens = new ArrayList<> ();
+        for (int i = 0 ; i < 8 ; i++) {
+            tokens.add (CompletableFuture.supplyAsync (provider, executorService));
+        }
+        tokens.forEach (CompletableFuture::join);
+        executorService.shutdown ();
+
+        //then
+        assertEquals (1, this.calls.get ());
+        tokens.forEach (token -> assertEquals ("token-1", token.join ().getValue ()));
+    }
+
+    @Test
+    public void tokensAboutToExpireShouldBeRefreshedInTheBackground () throws InterruptedException {
+        //given
+        final Supplier<BearerToken> provider = new RefreshingBearerTokenProvider (
+                this.tokensExpiringIn (Duration.ofMinutes (10), 100), Duration.ZERO, Duration.ofHours (1));
+
+        //when
+        final String firstToken = provider.get ().getValue ();
+        final long start = System.currentTimeMillis ();
+        final String stillFirstToken = provider.get ().getValue ();
+        final long elapsed = System.currentTimeMillis () - start;
+        while (this.calls.get () < 2) {
+            Thread.sleep (10);
+        }
+        Thread.sleep (50);
+
+        //then
+        assertEquals ("token-1", firstToken);
+        assertEquals ("token-1", stillFirstToken);
+        assertTrue (elapsed < 100);
+        assertEquals ("token-2", provider.get ().getValue ());
+    }
+
+    @Test
+    public void theCachesShouldNotKeepTheirProviders () throws InterruptedException {
+        //given
+        Supplier<BearerToken> provider = this.tokensExpiringIn (Duration.ofHours (1), 0);
+        final WeakReference<Supplier<BearerToken>> reference = new WeakReference<> (provider);
+        RefreshingBearerTokenProvider.of (provider).get ();
+
+        //when
+        provider = null;
+        for (int i = 0 ; i < 50 && reference.get () != null ; i++) {
+            System.gc ();
+            Thread.sleep (10);
+        }
+
+        //then
+        assertNull (reference.get ());
+    }
+
+    @Test
+    public void bearerTokensShouldBeSentToTheHostOfTheUrl () throws IOException {
+        //given
+        final List<String> authorizations = new ArrayList<> ();
+        final HttpServer server = HttpServer.create (new InetSocketAddress (InetAddress.getLoopbackAddress (), 0), 0);
+        server.createContext ("/token", exchange -> this.respond (exchange,
+                "token-" + this.calls.incrementAndGet ()));
+        server.createContext ("/api", exchange -> {
+            authorizations.add (exchange.getRequestHeaders ().getFirst ("Authorization"));
+            this.respond (exchange, "ok");
+        });
+        server.start ();
+        final String baseUrl = "http://localhost:" + server.getAddress ().getPort ();
+        final Supplier<BearerToken> tokenEndpoint = () ->
+                new BearerToken (Curl.$ (baseUrl + "/token"), Instant.now ().plus (Duration.ofHours (1)));
+
+        try {
+            //when
+            for (int i = 0 ; i < 3 ; i++) {
+                Curl.$ (baseUrl + "/api", CurlJavaOptions.with ().bearerTokenProvider (tokenEndpoint).build ());
+            }
+            Curl.$ ("--oauth2-bearer static-token " + baseUrl + "/api");
+
+            //then
+            assertEquals (1, this.calls.get ());
+            assertEquals ("Bearer token-1", authorizations.get (0));
+            assertEquals ("Bearer token-1", authorizations.get (2));
+            assertEquals ("Bearer static-token", authorizations.get (3));
+        } finally {
+            server.stop (0);
+        }
+    }
+
+    private Supplier<BearerToken> tokensExpiringIn (final Duration lifetime, final long delayMillis) {
+        return () -> {
+            try {
+                Thread.sleep (delayMillis);
+            } catch (final InterruptedException e) {
+                Thread.currentThread ().interrupt ();
+            }
+            return new BearerToken ("token-" + this.calls.incrementAndGet (), Instant.now ().plus (lifetime));
+        };
+    }
+
+    private void respond (final HttpExchange exchange, final String body) throws IOException {
+        final byte [] bytes = body.getBytes ();
+        exchange.sendResponseHeaders (200, bytes.length);
+        try (final OutputStream responseBody = exchange.getResponseBody ()) {
+            responseBody.write (bytes);
+        }
+    }
+}
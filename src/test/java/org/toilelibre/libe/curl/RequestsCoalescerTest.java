@@ -0,0 +1,170 @@
+package org.toilelibre.libe.curl;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.util.EntityUtils;
+import org.junit.Test;
+import org.toilelibre.libe.curl.Curl.CurlArgumentsBuilder.CurlJavaOptions;
+import org.toilelibre.libe.curl.Curl.CurlArgumentsBuilder.CurlJavaOptions.BearerToken;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class RequestsCoalescerTest {
+
+    @Test
+    public void identicalConcurrentRequestsShouldReachTheServerOnce () throws IOException, InterruptedException {
+        //given
+        final List<?> signature = Collections.singletonList ("GET http://localhost/slow");
+        final AtomicInteger realCalls = new AtomicInteger ();
+        final CountDownLatch release = new CountDownLatch (1);
+        final List<Thread> callers = new CopyOnWriteArrayList<> ();
+        final ExecutorService threads = Executors.newFixedThreadPool (8);
+
+        //when
+        final List<CompletableFuture<HttpResponse>> responses = IntStream.range (0, 8)
+                .mapToObj (i -> CompletableFuture.supplyAsync (() -> {
+                    callers.add (Thread.currentThread ());
+                    return RequestsCoalescer.coalesce (signature, () -> {
+                        realCalls.incrementAndGet ();
+                        await (release);
+                        final BasicHttpResponse response = new BasicHttpResponse (HttpVersion.HTTP_1_1, 200, "OK");
+                        response.setEntity (new StringEntity ("shared body", "UTF-8"));
+                        return response;
+                    });
+                }, threads)).collect (Collectors.toList ());
+        awaitBlocked (callers, 8);
+        release.countDown ();
+
+        //then
+        for (final CompletableFuture<HttpResponse> response : responses) {
+            assertEquals ("shared body", EntityUtils.toString (response.join ().getEntity ()));
+        }
+        assertEquals (1, realCalls.get ());
+        threads.shutdown ();
+    }
+
+    @Test
+    public void sequentialRequestsShouldNotBeCoalesced () {
+        //given
+        final AtomicInteger realCalls = new AtomicInteger ();
+
+        //when
+        IntStream.range (0, 3).forEach (i -> RequestsCoalescer.coalesce (Collections.singletonList ("GET http://localhost/fast"), () -> {
+            realCalls.incrementAndGet ();
+            return new BasicHttpResponse (HttpVersion.HTTP_1_1, 204, "No Content");
+        }));
+
+        //then
+        assertEquals (3, realCalls.get ());
+    }
+
+    @Test
+    public void anErrorOfTheRealCallShouldReleaseTheWaiters () throws InterruptedException, TimeoutException {
+        //given
+        final List<?> signature = Collections.singletonList ("GET http://localhost/error");
+        final CountDownLatch release = new CountDownLatch (1);
+        final List<Thread> callers = new CopyOnWriteArrayList<> ();
+        final ExecutorService threads = Executors.newFixedThreadPool (2);
+        final Supplier<HttpResponse> failingCall = () -> {
+            await (release);
+            throw new StackOverflowError ("in the interceptors");
+        };
+        final Supplier<HttpResponse> caller = () -> {
+            callers.add (Thread.currentThread ());
+            return RequestsCoalescer.coalesce (signature, failingCall);
+        };
+
+        //when
+        final CompletableFuture<HttpResponse> leader = CompletableFuture.supplyAsync (caller, threads);
+        awaitBlocked (callers, 1);
+        final CompletableFuture<HttpResponse> waiter = CompletableFuture.supplyAsync (caller, threads);
+        awaitBlocked (callers, 2);
+        release.countDown ();
+
+        //then
+        try {
+            leader.get (5, TimeUnit.SECONDS);
+            fail ("the error should be rethrown");
+        } catch (final ExecutionException e) {
+            assertTrue (e.getCause () instanceof StackOverflowError);
+        }
+        try {
+            waiter.get (5, TimeUnit.SECONDS);
+            fail ("the waiter should fail too");
+        } catch (final ExecutionException e) {
+            assertTrue (e.getCause () instanceof Curl.CurlException);
+            assertTrue (e.getCause ().getCause () instanceof StackOverflowError);
+        }
+        threads.shutdown ();
+    }
+
+    @Test
+    public void requestsWithOtherCredentialsShouldNotBeCoalesced () {
+        //given
+        final ParsedCommand commandLine = ReadArguments.getCommandLineFromRequest ("curl http://localhost/me", null);
+        final Supplier<BearerToken> alice = () -> new BearerToken ("alice", null);
+        final Supplier<BearerToken> bob = () -> new BearerToken ("bob", null);
+        final CurlJavaOptions aliceOptions = CurlJavaOptions.with ().bearerTokenProvider (alice).build ();
+
+        //when
+        final List<?> aliceSignature = RequestsCoalescer.signatureOf (commandLine, aliceOptions);
+        final List<?> aliceAgainSignature = RequestsCoalescer.signatureOf (commandLine,
+                CurlJavaOptions.with ().bearerTokenProvider (alice).build ());
+        final List<?> bobSignature = RequestsCoalescer.signatureOf (commandLine,
+                CurlJavaOptions.with ().bearerTokenProvider (bob).build ());
+
+        //then
+        assertEquals (aliceSignature, aliceAgainSignature);
+        assertNotEquals (aliceSignature, bobSignature);
+        assertTrue (RequestsCoalescer.canCoalesce (commandLine, new HttpGet ("http://localhost/me"), aliceOptions));
+        assertFalse (RequestsCoalescer.canCoalesce (commandLine, new HttpGet ("http://localhost/me"),
+                CurlJavaOptions.with ().interceptor ((request, responseSupplier) -> responseSupplier.get ()).build ()));
+    }
+
+    private static void await (final CountDownLatch latch) {
+        try {
+            latch.await (5, TimeUnit.SECONDS);
+        } catch (final InterruptedException e) {
+            Thread.currentThread ().interrupt ();
+        }
+    }
+
+    /**
+     * The leader waits for the release of its call, the other callers wait for the leader.
+     */
+    private static void awaitBlocked (final List<Thread> callers, final int count) throws InterruptedException {
+        final long deadline = System.nanoTime () + TimeUnit.SECONDS.toNanos (5);
+        while (!allBlocked (callers, count) && System.nanoTime () < deadline) {
+            Thread.sleep (1);
+        }
+        assertTrue (allBlocked (callers, count));
+    }
+
+    private static boolean allBlocked (final List<Thread> callers, final int count) {
+        return callers.size () == count && callers.stream ().allMatch (thread ->
+                thread.getState () == Thread.State.WAITING || thread.getState () == Thread.State.TIMED_WAITING);
+    }
+}
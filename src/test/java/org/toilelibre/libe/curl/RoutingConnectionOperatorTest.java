@@ -0,0 +1,191 @@
+package org.toilelibre.libe.curl;
+
+import org.apache.http.HttpHost;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.config.SocketConfig;
+import org.apache.http.conn.ConnectTimeoutException;
+import org.apache.http.conn.DnsResolver;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.entity.InputStreamEntity;
+import org.apache.http.impl.conn.DefaultManagedHttpClientConnection;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.protocol.BasicHttpContext;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.util.EntityUtils;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.Inet4Address;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class RoutingConnectionOperatorTest {
+
+    private final List<InetSocketAddress> remoteAddresses = new CopyOnWriteArrayList<> ();
+    private final List<HttpHost>          hosts           = new CopyOnWriteArrayList<> ();
+
+    @Test
+    public void connectToShouldChangeTheRemoteAddressButNotTheHost () {
+        //given
+        final RoutingConnectionOperator operator = this.operatorFor (
+                "--connect-to logical.service:443:backend.local:8443 https://logical.service/");
+
+        //when
+        this.connect (operator, new HttpHost ("logical.service", 443, "https"));
+
+        //then
+        assertEquals ("backend.local", this.remoteAddresses.get (0).getHostName ());
+        assertEquals (8443, this.remoteAddresses.get (0).getPort ());
+        assertEquals ("logical.service", this.hosts.get (0).getHostName ());
+    }
+
+    @Test
+    public void connectToShouldOnlyMatchItsPort () {
+        //given
+        final RoutingConnectionOperator operator = this.operatorFor (
+                "--connect-to logical.service:80:backend.local: https://logical.service/");
+
+        //when
+        this.connect (operator, new HttpHost ("logical.service", 443, "https"));
+
+        //then
+        assertEquals (443, this.remoteAddresses.get (0).getPort ());
+        assertEquals ("logical.service", this.remoteAddresses.get (0).getHostName ());
+    }
+
+    @Test
+    public void newConnectionsShouldGoToTheLeastBusyAddress () throws IOException {
+        //given
+        final RoutingConnectionOperator operator = this.operatorFor (
+                "--connect-to ::pool.local: https://logical.service/");
+        final InetAddress busyAddress = InetAddress.getByAddress ("pool.local", new byte [] {10, 0, 0, 1});
+
+        //when
+        AddressBalancer.whileOutstanding (busyAddress, () -> {
+            for (int i = 0 ; i < 4 ; i++) {
+                this.connect (operator, new HttpHost ("logical.service", 443, "https"));
+            }
+            return null;
+        });
+
+        //then
+        this.remoteAddresses.forEach (remoteAddress ->
+                assertEquals (2, remoteAddress.getAddress ().getAddress () [3]));
+    }
+
+    @Test
+    public void aRequestShouldBeOutstandingUntilItsBodyIsConsumed () throws IOException {
+        //given
+        final InetAddress address = InetAddress.getByAddress ("body.local", new byte [] {10, 0, 0, 9});
+        final BasicHttpResponse response = new BasicHttpResponse (HttpVersion.HTTP_1_1, 200, "OK");
+        response.setEntity (new InputStreamEntity (new ByteArrayInputStream ("body".getBytes (StandardCharsets.UTF_8))));
+
+        //when
+        final HttpResponse outstandingResponse = AddressBalancer.whileOutstanding (address, () -> response);
+
+        //then
+        assertEquals (1, AddressBalancer.outstandingRequests (address));
+        assertEquals ("body", EntityUtils.toString (outstandingResponse.getEntity ()));
+        assertEquals (0, AddressBalancer.outstandingRequests (address));
+        assertFalse (AddressBalancer.isTracked (address));
+    }
+
+    @Test
+    public void aBrokenFamilyShouldNotWaitForTheConnectTimeout () {
+        //given
+        final RoutingConnectionOperator operator = this.operatorFor ("https://dual.stack/",
+                host -> new InetAddress [] {
+                        InetAddress.getByAddress (host, InetAddress.getByName ("2001:db8::1").getAddress ()),
+                        InetAddress.getByAddress (host, new byte [] {10, 0, 0, 1})});
+
+        //when
+        final long start = System.currentTimeMillis ();
+        this.connect (operator, new HttpHost ("dual.stack", 443, "https"));
+
+        //then
+        assertTrue (System.currentTimeMillis () - start < 1000);
+        assertTrue (this.remoteAddresses.get (this.remoteAddresses.size () - 1).getAddress () instanceof Inet4Address);
+    }
+
+    @Test
+    public void ipv6OptionShouldOnlyTryIpv6Addresses () {
+        //given
+        final RoutingConnectionOperator operator = this.operatorFor ("-6 https://dual.stack/",
+                host -> new InetAddress [] {
+                        InetAddress.getByAddress (host, new byte [] {10, 0, 0, 1}),
+                        InetAddress.getByAddress (host, InetAddress.getByName ("2001:db8::1").getAddress ())});
+
+        //when
+        try {
+            this.connect (operator, new HttpHost ("dual.stack", 443, "https"));
+            fail ("the IPv6 address is not supposed to connect");
+        } catch (final IllegalStateException e) {
+            assertTrue (e.getCause () instanceof ConnectTimeoutException);
+        }
+
+        //then
+        assertEquals (1, this.remoteAddresses.size ());
+        assertTrue (this.remoteAddresses.get (0).getAddress () instanceof Inet6Address);
+    }
+
+    private RoutingConnectionOperator operatorFor (final String command) {
+        return this.operatorFor (command, host -> new InetAddress [] {
+                InetAddress.getByAddress (host, new byte [] {10, 0, 0, 1}),
+                InetAddress.getByAddress (host, new byte [] {10, 0, 0, 2})});
+    }
+
+    private RoutingConnectionOperator operatorFor (final String command, final DnsResolver dnsResolver) {
+        final ParsedCommand commandLine = ReadArguments.getCommandLineFromRequest (command, Collections.emptyList ());
+        return new RoutingConnectionOperator (RegistryBuilder.<ConnectionSocketFactory>create ()
+                .register ("https", new RecordingConnectionSocketFactory ()).build (), dnsResolver, commandLine);
+    }
+
+    private void connect (final RoutingConnectionOperator operator, final HttpHost host) {
+        try {
+            operator.connect (new DefaultManagedHttpClientConnection ("test", 8192), host, null, 1000,
+                    SocketConfig.DEFAULT, new BasicHttpContext ());
+        } catch (final IOException e) {
+            throw new IllegalStateException (e);
+        }
+    }
+
+    private class RecordingConnectionSocketFactory implements ConnectionSocketFactory {
+
+        @Override
+        public Socket createSocket (final HttpContext context) {
+            return new Socket ();
+        }
+
+        @Override
+        public Socket connectSocket (final int connectTimeout, final Socket socket, final HttpHost host,
+                                     final InetSocketAddress remoteAddress, final InetSocketAddress localAddress,
+                                     final HttpContext context) throws IOException {
+            RoutingConnectionOperatorTest.this.hosts.add (host);
+            RoutingConnectionOperatorTest.this.remoteAddresses.add (remoteAddress);
+            if (remoteAddress.getAddress () instanceof Inet6Address) {
+                try {
+                    Thread.sleep (connectTimeout);
+                } catch (final InterruptedException e) {
+                    Thread.currentThread ().interrupt ();
+                }
+                throw new SocketTimeoutException ("connect timed out");
+            }
+            return socket;
+        }
+    }
+}
@@ -0,0 +1,428 @@
+package org.toilelibre.libe.curl;
+
+import com.sun.net.httpserver.HttpsConfigurator;
+import com.sun.net.httpserver.HttpsExchange;
+import com.sun.net.httpserver.HttpsParameters;
+import com.sun.net.httpserver.HttpsServer;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.junit.Test;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLException;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.TrustManagerFactory;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.ref.WeakReference;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.KeyStore;
+import java.security.cert.CertificateException;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509Certificate;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.toilelibre.libe.curl.Curl.CurlArgumentsBuilder.CurlJavaOptions.with;
+
+public class SSLMaterialCreatorTest {
+
+    private static final String CERT       = "src/test/resources/clients/libe/libe.pem";
+    private static final String OTHER_CERT = "src/test/resources/server/libe/libe.crt";
+    private static final String OTHER_KEY  = "src/test/resources/server/libe/libe.key.unprotected";
+
+    @Test
+    public void theSameMaterialShouldShareTheSameFactoryWhateverItsPath () throws IOException {
+        //given
+        final File copy = File.createTempFile ("libe", ".pem");
+        copy.deleteOnExit ();
+        Files.copy (Paths.get (CERT), copy.toPath (), StandardCopyOption.REPLACE_EXISTING);
+        Files.write (copy.toPath (), "\n".getBytes (StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        final File otherCopy = File.createTempFile ("libe", ".pem");
+        otherCopy.deleteOnExit ();
+        Files.copy (copy.toPath (), otherCopy.toPath (), StandardCopyOption.REPLACE_EXISTING);
+
+        //when
+        final SSLConnectionSocketFactory fromCopy = factoryOf ("-k -E " + copy.getPath () + " https://localhost/");
+        final SSLConnectionSocketFactory fromOtherCopy = factoryOf ("-k -E " + otherCopy.getPath () + " https://localhost/");
+        final SSLConnectionSocketFactory withAnotherProtocol = factoryOf ("-k --tlsv1.2 -E " + copy.getPath () + " https://localhost/");
+        Files.write (copy.toPath (), "\n".getBytes (StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        final SSLConnectionSocketFactory afterAChange = factoryOf ("-k -E " + copy.getPath () + " https://localhost/");
+
+        //then
+        assertSame (fromCopy, fromOtherCopy);
+        assertNotSame (fromCopy, withAnotherProtocol);
+        assertNotSame (fromCopy, afterAChange);
+    }
+
+    @Test
+    public void aReloadedMaterialShouldBeServedUnderItsNewKey () {
+        //given
+        final SSLContextCache cache = new SSLContextCache (2);
+        final SSLContextCache.Material material = cache.computeIfAbsent (Collections.singletonList ("old content"),
+                () -> new SSLContextCache.Material (null, null));
+        final SSLContextCache.Material other = cache.computeIfAbsent (Collections.singletonList ("other content"),
+                () -> new SSLContextCache.Material (null, null));
+
+        //when
+        cache.rekey (Collections.singletonList ("old content"), Collections.singletonList ("new content"), material);
+        cache.rekey (Collections.singletonList ("old content"), Collections.singletonList ("other content"), material);
+        cache.rekey (Collections.singletonList ("new content"), Collections.singletonList ("other content"), material);
+
+        //then
+        assertSame (other, cache.computeIfAbsent (Collections.singletonList ("other content"),
+                () -> new SSLContextCache.Material (null, null)));
+        assertEquals (1, cache.size ());
+        assertEquals (2, cache.misses ());
+    }
+
+    @Test
+    public void theKeyManagerShouldReloadTheNewCredentialsInTheBackground () throws IOException, InterruptedException {
+        //given
+        final File copy = File.createTempFile ("libe", ".pem");
+        copy.deleteOnExit ();
+        Files.copy (Paths.get (CERT), copy.toPath (), StandardCopyOption.REPLACE_EXISTING);
+        final SSLMaterialCreator.CertPlusKeyInfo certPlusKeyInfo = SSLMaterialCreator.CertPlusKeyInfo.newBuilder ()
+                .certFormat (CertFormat.PEM).keyFormat (CertFormat.PEM).cert (copy.getPath ()).key (copy.getPath ())
+                .certPassphrase ("").build ();
+        final ReloadingX509KeyManager keyManager = ReloadingX509KeyManager.of (Collections.singletonList (copy),
+                () -> SSLMaterialCreator.keyManagerOf (certPlusKeyInfo), Duration.ofMillis (20));
+        final String aliasBeforeTheChange = keyManager.chooseClientAlias (new String [] {"RSA"}, null, null);
+        final X509Certificate certificateBeforeTheChange = keyManager.getCertificateChain (aliasBeforeTheChange) [0];
+        final String otherPrivateKey = new String (Files.readAllBytes (Paths.get (OTHER_KEY)), StandardCharsets.UTF_8);
+        final String otherCertificate = new String (Files.readAllBytes (Paths.get (OTHER_CERT)), StandardCharsets.UTF_8);
+
+        //when
+        Files.write (copy.toPath (), (otherPrivateKey + otherCertificate).getBytes (StandardCharsets.UTF_8));
+        final long deadline = System.currentTimeMillis () + 5000;
+        while (keyManager.chooseClientAlias (new String [] {"RSA"}, null, null).equals (aliasBeforeTheChange) &&
+                System.currentTimeMillis () < deadline) {
+            Thread.sleep (20);
+        }
+        final String aliasAfterTheChange = keyManager.chooseClientAlias (new String [] {"RSA"}, null, null);
+
+        //then
+        assertNotEquals (aliasBeforeTheChange, aliasAfterTheChange);
+        assertEquals (certificateBeforeTheChange, keyManager.getCertificateChain (aliasBeforeTheChange) [0]);
+        assertNotEquals (certificateBeforeTheChange, keyManager.getCertificateChain (aliasAfterTheChange) [0]);
+        assertNotNull (keyManager.getPrivateKey (aliasAfterTheChange));
+    }
+
+    @Test
+    public void aBrokenFileShouldKeepThePreviousCredentials () throws IOException {
+        //given
+        final File copy = File.createTempFile ("libe", ".pem");
+        copy.deleteOnExit ();
+        Files.copy (Paths.get (CERT), copy.toPath (), StandardCopyOption.REPLACE_EXISTING);
+        final SSLMaterialCreator.CertPlusKeyInfo certPlusKeyInfo = SSLMaterialCreator.CertPlusKeyInfo.newBuilder ()
+                .certFormat (CertFormat.PEM).keyFormat (CertFormat.PEM).cert (copy.getPath ()).key (copy.getPath ())
+                .certPassphrase ("").build ();
+        final ReloadingX509KeyManager keyManager = ReloadingX509KeyManager.of (Collections.singletonList (copy),
+                () -> SSLMaterialCreator.keyManagerOf (certPlusKeyInfo), Duration.ofHours (1));
+        final String alias = keyManager.chooseClientAlias (new String [] {"RSA"}, null, null);
+
+        //when
+        Files.write (copy.toPath (), "-----BEGIN CERTIFICATE-----\nbroken\n".getBytes (StandardCharsets.UTF_8));
+        final boolean reloaded = keyManager.reloadIfChanged ();
+
+        //then
+        assertFalse (reloaded);
+        assertEquals (alias, keyManager.chooseClientAlias (new String [] {"RSA"}, null, null));
+        assertNotNull (keyManager.getPrivateKey (alias));
+    }
+
+    @Test
+    public void aCertificateWrittenBeforeItsKeyShouldBeLoadedAtTheNextPoll () throws IOException {
+        //given
+        final File certificate = File.createTempFile ("libe", ".crt");
+        certificate.deleteOnExit ();
+        Files.copy (Paths.get ("src/test/resources/clients/libe/libe.crt"), certificate.toPath (), StandardCopyOption.REPLACE_EXISTING);
+        final File key = File.createTempFile ("libe", ".key");
+        key.deleteOnExit ();
+        Files.copy (Paths.get ("src/test/resources/clients/libe/libe.key"), key.toPath (), StandardCopyOption.REPLACE_EXISTING);
+        final SSLMaterialCreator.CertPlusKeyInfo certPlusKeyInfo = SSLMaterialCreator.CertPlusKeyInfo.newBuilder ()
+                .certFormat (CertFormat.PEM).keyFormat (CertFormat.PEM).cert (certificate.getPath ()).key (key.getPath ())
+                .certPassphrase ("").build ();
+        final AtomicInteger loads = new AtomicInteger ();
+        final AtomicInteger reloads = new AtomicInteger ();
+        final ReloadingX509KeyManager keyManager = ReloadingX509KeyManager.of (Arrays.asList (certificate, key), () -> {
+            loads.incrementAndGet ();
+            return SSLMaterialCreator.keyManagerOf (certPlusKeyInfo);
+        }, Duration.ofHours (1)).onReload (reloads, AtomicInteger::incrementAndGet);
+        final String alias = keyManager.chooseClientAlias (new String [] {"RSA"}, null, null);
+        final X509Certificate certificateBeforeTheChange = keyManager.getCertificateChain (alias) [0];
+
+        //when
+        Files.copy (Paths.get (OTHER_CERT), certificate.toPath (), StandardCopyOption.REPLACE_EXISTING);
+        final boolean reloadedWithTheCertificateOnly = keyManager.reloadIfChanged ();
+        final boolean reloadedAgainWithTheCertificateOnly = keyManager.reloadIfChanged ();
+        Files.copy (Paths.get (OTHER_KEY), key.toPath (), StandardCopyOption.REPLACE_EXISTING);
+        final boolean reloadedWithBoth = keyManager.reloadIfChanged ();
+        final String newAlias = keyManager.chooseClientAlias (new String [] {"RSA"}, null, null);
+
+        //then
+        assertFalse (reloadedWithTheCertificateOnly);
+        assertFalse (reloadedAgainWithTheCertificateOnly);
+        assertEquals (4, loads.get ());
+        assertTrue (reloadedWithBoth);
+        assertEquals (1, reloads.get ());
+        assertEquals (certificateBeforeTheChange, keyManager.getCertificateChain (alias) [0]);
+        assertNotEquals (certificateBeforeTheChange, keyManager.getCertificateChain (newAlias) [0]);
+        assertFalse (keyManager.reloadIfChanged ());
+        assertEquals (4, loads.get ());
+    }
+
+    @Test
+    public void concurrentCallsShouldBuildTheMaterialOnce () throws InterruptedException, ExecutionException {
+        //given
+        final SSLContextCache cache = new SSLContextCache (2);
+        final AtomicInteger builds = new AtomicInteger ();
+        final CountDownLatch start = new CountDownLatch (1);
+        final ExecutorService executor = Executors.newFixedThreadPool (8);
+
+        //when
+        final List<Future<SSLContextCache.Material>> materials = IntStream.range (0, 8).mapToObj (i -> executor.submit (() -> {
+            start.await ();
+            return cache.computeIfAbsent (Collections.singletonList ("key"), () -> {
+                builds.incrementAndGet ();
+                return new SSLContextCache.Material (null, null);
+            });
+        })).collect (Collectors.toList ());
+        start.countDown ();
+        final SSLContextCache.Material first = materials.get (0).get ();
+        for (final Future<SSLContextCache.Material> material : materials) {
+            assertSame (first, material.get ());
+        }
+        executor.shutdown ();
+        executor.awaitTermination (5, TimeUnit.SECONDS);
+        cache.computeIfAbsent (Collections.singletonList ("other key"), () -> new SSLContextCache.Material (null, null));
+        cache.computeIfAbsent (Collections.singletonList ("third key"), () -> new SSLContextCache.Material (null, null));
+
+        //then
+        assertEquals (1, builds.get ());
+        assertEquals (7, cache.hits ());
+        assertEquals (3, cache.misses ());
+        assertEquals (1, cache.evictions ());
+        assertEquals (2, cache.size ());
+    }
+
+    @Test
+    public void theSessionSettingsShouldBeAppliedToTheSharedContext () throws Exception {
+        //given
+        final SSLContext sslContext = SSLContext.getInstance ("TLS");
+        sslContext.init (null, null, null);
+        final SSLContextCache.Material material = new SSLContextCache.Material (sslContext, null);
+
+        //when
+        material.withSessions (100, 600);
+        material.withSessions (-1, -1);
+
+        //then
+        assertEquals (100, sslContext.getClientSessionContext ().getSessionCacheSize ());
+        assertEquals (600, sslContext.getClientSessionContext ().getSessionTimeout ());
+    }
+
+    @Test
+    public void theInMemoryMaterialShouldBeUsedWithoutAnyFile () throws Exception {
+        //given
+        final KeyStore serverKeyStore = keyStoreOf ("src/test/resources/server/libe/libe.p12", "myserverpass");
+        final KeyStore clientKeyStore = keyStoreOf ("src/test/resources/clients/libe/libe.p12", "mylibepass");
+        final KeyStore trustStore = KeyStore.getInstance ("JKS");
+        trustStore.load (null);
+        try (final InputStream caCertificate = Files.newInputStream (Paths.get ("src/test/resources/ca/fakeCa.crt"))) {
+            trustStore.setCertificateEntry ("ca", CertificateFactory.getInstance ("X.509").generateCertificate (caCertificate));
+        }
+        final HttpsServer server = tlsServer (serverKeyStore, "myserverpass", trustStore, true);
+        final Curl.CurlArgumentsBuilder.CurlJavaOptions javaOptions = with ()
+                .keyStore (clientKeyStore, "mylibepass".toCharArray ()).trustStore (trustStore).build ();
+        final Curl.CurlArgumentsBuilder.CurlJavaOptions otherJavaOptions = with ()
+                .keyStore (clientKeyStore, "mylibepass".toCharArray ()).trustStore (trustStore).build ();
+
+        try {
+            //when
+            final String body = Curl.$ ("https://localhost:" + server.getAddress ().getPort () + "/", javaOptions);
+            final SSLConnectionSocketFactory factory = factoryOf ("https://localhost/", javaOptions);
+
+            //then
+            assertEquals ("hello " + ((X509Certificate) clientKeyStore.getCertificate ("libe")).getSerialNumber (), body);
+            assertSame (factory, factoryOf ("https://localhost/", javaOptions));
+            assertNotSame (factory, factoryOf ("https://localhost/", otherJavaOptions));
+        } finally {
+            server.stop (0);
+        }
+    }
+
+    @Test
+    public void theServerShouldBeTrustedWithTheCertificateAuthoritiesOfCacertOrCapath () throws Exception {
+        //given
+        final HttpsServer server = tlsServer (keyStoreOf ("src/test/resources/server/libe/libe.p12", "myserverpass"),
+                "myserverpass", null, false);
+        final String url = "https://localhost:" + server.getAddress ().getPort () + "/";
+        final File caPath = Files.createTempDirectory ("capath").toFile ();
+        caPath.deleteOnExit ();
+        Files.write (new File (caPath, "README").toPath (), "not a certificate".getBytes (StandardCharsets.UTF_8));
+        Files.copy (Paths.get ("src/test/resources/clients/libe/libe.crt"), new File (caPath, "client.pem").toPath ());
+        Files.copy (Paths.get ("src/test/resources/ca/fakeCa.crt"), new File (caPath, "ca.pem").toPath ());
+        final File wrongCaPath = Files.createTempDirectory ("capath").toFile ();
+        wrongCaPath.deleteOnExit ();
+        Files.copy (Paths.get ("src/test/resources/clients/libe/libe.crt"), new File (wrongCaPath, "client.pem").toPath ());
+
+        try {
+            //when
+            final String withCacert = Curl.$ ("--cacert src/test/resources/ca/fakeCa.crt " + url);
+            final String withCapath = Curl.$ ("--capath " + caPath.getPath () + " " + url);
+            final ReloadingX509TrustManager trustManager = SSLMaterialCreator.prepareTrustManager (
+                    ReadArguments.getCommandLineFromRequest ("--capath " + caPath.getPath () + " " + url, Collections.emptyList ()));
+            final ReloadingX509TrustManager otherTrustManager = SSLMaterialCreator.prepareTrustManager (
+                    ReadArguments.getCommandLineFromRequest ("-E " + CERT + " --capath " + caPath.getPath () + " " + url, Collections.emptyList ()));
+
+            //then
+            assertEquals ("hello", withCacert);
+            assertEquals ("hello", withCapath);
+            assertEquals (2, trustManager.size ());
+            assertSame (trustManager, otherTrustManager);
+            assertTrue (failsWithAnSSLException ("--capath " + wrongCaPath.getPath () + " " + url));
+            assertTrue (failsWithAnSSLException (url));
+        } finally {
+            server.stop (0);
+        }
+    }
+
+    @Test
+    public void theCertificateAuthoritiesShouldBeReloadedWhenTheirFilesChange () throws IOException, InterruptedException {
+        //given
+        final File caPath = Files.createTempDirectory ("capath").toFile ();
+        caPath.deleteOnExit ();
+        Files.copy (Paths.get ("src/test/resources/clients/libe/libe.crt"), new File (caPath, "client.pem").toPath ());
+        final ReloadingX509TrustManager trustManager = ReloadingX509TrustManager.of (null, caPath, Duration.ofHours (1));
+        final int sizeBeforeTheChange = trustManager.size ();
+        final String command = "--capath " + caPath.getPath () + " https://localhost/";
+
+        //when
+        Files.copy (Paths.get ("src/test/resources/ca/fakeCa.crt"), new File (caPath, "ca.pem").toPath ());
+        final boolean reloaded = trustManager.reloadIfChanged ();
+        final boolean reloadedAgain = trustManager.reloadIfChanged ();
+        final WeakReference<ReloadingX509TrustManager> shared = new WeakReference<> (
+                SSLMaterialCreator.prepareTrustManager (ReadArguments.getCommandLineFromRequest (command, Collections.emptyList ())));
+        for (int i = 0 ; i < 50 && shared.get () != null ; i++) {
+            System.gc ();
+            Thread.sleep (10);
+        }
+
+        //then
+        assertEquals (1, sizeBeforeTheChange);
+        assertTrue (reloaded);
+        assertFalse (reloadedAgain);
+        assertEquals (2, trustManager.size ());
+        assertNull (shared.get ());
+    }
+
+    @Test
+    public void aCertificateOnlyForTheClientsShouldNotBeTrustedAsAServerOne () throws Exception {
+        //given
+        final IndexedX509TrustManager trustManager = IndexedX509TrustManager.of (new File ("src/test/resources/ca/fakeCa.crt"), null);
+        final X509Certificate clientAuthOnly = certificateOf ("src/test/resources/keys/clientauth-only.crt");
+        final X509Certificate server = certificateOf ("src/test/resources/server/libe/libe.crt");
+
+        //when
+        trustManager.checkServerTrusted (new X509Certificate [] {server}, "ECDHE_RSA");
+        trustManager.checkClientTrusted (new X509Certificate [] {clientAuthOnly}, "RSA");
+        try {
+            trustManager.checkServerTrusted (new X509Certificate [] {clientAuthOnly}, "ECDHE_RSA");
+            fail ("a clientAuth only certificate should not authenticate a server");
+        } catch (final CertificateException e) {
+            //then
+            assertEquals (1, trustManager.size ());
+        }
+    }
+
+    private static X509Certificate certificateOf (final String path) throws IOException, CertificateException {
+        try (final InputStream content = Files.newInputStream (Paths.get (path))) {
+            return (X509Certificate) CertificateFactory.getInstance ("X.509").generateCertificate (content);
+        }
+    }
+
+    private static boolean failsWithAnSSLException (final String command) {
+        try {
+            Curl.curl (command);
+            return false;
+        } catch (final Curl.CurlException e) {
+            return e.getCause () instanceof SSLException;
+        }
+    }
+
+    private static HttpsServer tlsServer (final KeyStore keyStore, final String password, final KeyStore trustStore,
+                                          final boolean needClientAuth) throws Exception {
+        final KeyManagerFactory keyManagerFactory = KeyManagerFactory.getInstance (KeyManagerFactory.getDefaultAlgorithm ());
+        keyManagerFactory.init (keyStore, password.toCharArray ());
+        final TrustManagerFactory trustManagerFactory = TrustManagerFactory.getInstance (TrustManagerFactory.getDefaultAlgorithm ());
+        trustManagerFactory.init (trustStore);
+        final SSLContext sslContext = SSLContext.getInstance ("TLS");
+        sslContext.init (keyManagerFactory.getKeyManagers (), trustManagerFactory.getTrustManagers (), null);
+        final HttpsServer server = HttpsServer.create (new InetSocketAddress (InetAddress.getLoopbackAddress (), 0), 0);
+        server.setHttpsConfigurator (new HttpsConfigurator (sslContext) {
+            @Override
+            public void configure (final HttpsParameters parameters) {
+                final SSLParameters sslParameters = sslContext.getDefaultSSLParameters ();
+                sslParameters.setNeedClientAuth (needClientAuth);
+                parameters.setSSLParameters (sslParameters);
+            }
+        });
+        server.createContext ("/", exchange -> {
+            final byte [] body = (needClientAuth ? "hello " + ((X509Certificate) ((HttpsExchange) exchange).getSSLSession ()
+                    .getPeerCertificates () [0]).getSerialNumber () : "hello").getBytes (StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders (200, body.length);
+            try (final OutputStream responseBody = exchange.getResponseBody ()) {
+                responseBody.write (body);
+            }
+        });
+        server.start ();
+        return server;
+    }
+
+    private static KeyStore keyStoreOf (final String path, final String password) throws Exception {
+        final KeyStore keyStore = KeyStore.getInstance ("PKCS12");
+        try (final InputStream content = Files.newInputStream (Paths.get (path))) {
+            keyStore.load (content, password.toCharArray ());
+        }
+        return keyStore;
+    }
+
+    private static SSLConnectionSocketFactory factoryOf (final String command, final Curl.CurlArgumentsBuilder.CurlJavaOptions javaOptions) {
+        return SSLMaterialCreator.prepareSSLSocketFactory (
+                ReadArguments.getCommandLineFromRequest (command, Collections.emptyList ()), javaOptions);
+    }
+
+    private static SSLConnectionSocketFactory factoryOf (final String command) {
+        return SSLMaterialCreator.prepareSSLSocketFactory (
+                ReadArguments.getCommandLineFromRequest (command, Collections.emptyList ()), with ().build ());
+    }
+}
@@ -0,0 +1,47 @@
+package org.toilelibre.libe.curl;
+
+import org.apache.http.config.SocketConfig;
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SocketConfigProviderTest {
+
+    @Test
+    public void socketOptionsShouldBeMappedToTheSocketConfig () {
+        //given
+        final ParsedCommand commandLine = ReadArguments.getCommandLineFromRequest (
+                "--no-tcp-nodelay --sndbuf 65536 --rcvbuf 131072 --linger 2 --keepalive-time 30 http://localhost/",
+                Collections.emptyList ());
+
+        //when
+        final SocketConfig socketConfig = SocketConfigProvider.prepareSocketConfig (commandLine);
+
+        //then
+        assertFalse (socketConfig.isTcpNoDelay ());
+        assertTrue (socketConfig.isSoKeepAlive ());
+        assertEquals (65536, socketConfig.getSndBufSize ());
+        assertEquals (131072, socketConfig.getRcvBufSize ());
+        assertEquals (2, socketConfig.getSoLinger ());
+        assertEquals (30, SocketConfigProvider.keepAliveTimeOf (commandLine));
+    }
+
+    @Test
+    public void noKeepaliveShouldDisableTheKeepaliveProbes () {
+        //given
+        final ParsedCommand commandLine = ReadArguments.getCommandLineFromRequest (
+                "--no-keepalive --keepalive-time 30 http://localhost/", Collections.emptyList ());
+
+        //when
+        final SocketConfig socketConfig = SocketConfigProvider.prepareSocketConfig (commandLine);
+
+        //then
+        assertTrue (socketConfig.isTcpNoDelay ());
+        assertFalse (socketConfig.isSoKeepAlive ());
+        assertEquals (-1, SocketConfigProvider.keepAliveTimeOf (commandLine));
+    }
+}
@@ -0,0 +1,88 @@
+package org.toilelibre.libe.curl;
+
+import org.apache.http.HttpHost;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.LayeredConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.protocol.BasicHttpContext;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SourceAddressSocketFactoryTest {
+
+    @Test
+    public void localPortRangeShouldSkipTheBusyPorts () throws IOException {
+        try (final ServerSocket server = new ServerSocket (0, 50, InetAddress.getLoopbackAddress ());
+             final ServerSocket busyPort = new ServerSocket (0, 50, InetAddress.getLoopbackAddress ())) {
+            //given
+            final int port = busyPort.getLocalPort ();
+            final ConnectionSocketFactory socketFactory = this.socketFactoryFor (
+                    "--local-port " + port + "-" + (port + 1) + " http://localhost:" + server.getLocalPort () + "/");
+
+            //when
+            final Socket socket = this.connect (socketFactory, server);
+
+            //then
+            assertEquals (port + 1, socket.getLocalPort ());
+            socket.close ();
+        }
+    }
+
+    @Test
+    public void interfacesShouldBeUsedRoundRobin () throws IOException {
+        try (final ServerSocket server = new ServerSocket (0, 50, InetAddress.getByName ("0.0.0.0"))) {
+            //given
+            final ConnectionSocketFactory socketFactory = this.socketFactoryFor (
+                    "--interface 127.0.0.1,host!127.0.0.2 http://localhost:" + server.getLocalPort () + "/");
+
+            //when
+            final Socket first = this.connect (socketFactory, server);
+            final Socket second = this.connect (socketFactory, server);
+
+            //then
+            assertNotEquals (first.getLocalAddress (), second.getLocalAddress ());
+            first.close ();
+            second.close ();
+        }
+    }
+
+    @Test
+    public void onlyTheLayeredFactoriesShouldStayLayered () {
+        //given
+        final ParsedCommand commandLine = ReadArguments.getCommandLineFromRequest (
+                "--local-port 40000-40010 https://localhost/", Collections.emptyList ());
+
+        //when
+        final ConnectionSocketFactory plain = SourceAddressSocketFactory.bindingSourceAddress (commandLine,
+                PlainConnectionSocketFactory.getSocketFactory ());
+        final ConnectionSocketFactory layered = SourceAddressSocketFactory.bindingSourceAddress (commandLine,
+                SSLConnectionSocketFactory.getSocketFactory ());
+
+        //then
+        assertFalse (plain instanceof LayeredConnectionSocketFactory);
+        assertTrue (layered instanceof LayeredConnectionSocketFactory);
+    }
+
+    private ConnectionSocketFactory socketFactoryFor (final String command) {
+        final ParsedCommand commandLine = ReadArguments.getCommandLineFromRequest (command, Collections.emptyList ());
+        return SourceAddressSocketFactory.bindingSourceAddress (commandLine, PlainConnectionSocketFactory.getSocketFactory ());
+    }
+
+    private Socket connect (final ConnectionSocketFactory socketFactory, final ServerSocket server) throws IOException {
+        final BasicHttpContext context = new BasicHttpContext ();
+        return socketFactory.connectSocket (1000, socketFactory.createSocket (context), new HttpHost ("localhost"),
+                new InetSocketAddress (InetAddress.getByName ("127.0.0.1"), server.getLocalPort ()), null, context);
+    }
+}
@@ -0,0 +1,150 @@
+package org.toilelibre.libe.curl;
+
+import com.sun.net.httpserver.HttpServer;
+import com.sun.net.httpserver.HttpsConfigurator;
+import com.sun.net.httpserver.HttpsServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class StandaloneRunnerTest {
+
+    private HttpServer            server;
+    private String                url;
+    private ByteArrayOutputStream output;
+    private ByteArrayOutputStream errors;
+
+    @Before
+    public void startServer () throws IOException {
+        this.server = HttpServer.create (new InetSocketAddress (InetAddress.getLoopbackAddress (), 0), 0);
+        this.server.createContext ("/", exchange -> {
+            final byte [] body = ("hello " + exchange.getRequestMethod ()).getBytes (StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders (exchange.getRequestURI ().getPath ().equals ("/missing") ? 404 : 200, body.length);
+            try (final OutputStream responseBody = exchange.getResponseBody ()) {
+                responseBody.write (body);
+            }
+        });
+        this.server.start ();
+        this.url = "http://localhost:" + this.server.getAddress ().getPort ();
+        this.output = new ByteArrayOutputStream ();
+        this.errors = new ByteArrayOutputStream ();
+    }
+
+    @After
+    public void stopServer () {
+        this.server.stop (0);
+    }
+
+    @Test
+    public void theBodyShouldBeWrittenToTheOutput () {
+        //when
+        final int exitCode = this.run ("-X", "PUT", this.url + "/hello");
+
+        //then
+        assertEquals (StandaloneRunner.OK, exitCode);
+        assertEquals ("hello PUT", this.output.toString ());
+        assertEquals ("", this.errors.toString ());
+    }
+
+    @Test
+    public void anHttpErrorShouldOnlyFailWithTheFailOption () {
+        //when
+        final int withoutFail = this.run (this.url + "/missing");
+        this.output.reset ();
+        final int withFail = this.run ("-f", this.url + "/missing");
+
+        //then
+        assertEquals (StandaloneRunner.OK, withoutFail);
+        assertEquals (StandaloneRunner.CURLE_HTTP_RETURNED_ERROR, withFail);
+        assertEquals ("", this.output.toString ());
+        assertEquals ("curl: (22) The requested URL returned error: 404", this.errors.toString ().trim ());
+    }
+
+    @Test
+    public void theFailuresShouldHaveTheCurlExitCodes () throws IOException {
+        //given
+        final int closedPort;
+        try (final ServerSocket socket = new ServerSocket (0, 1, InetAddress.getLoopbackAddress ())) {
+            closedPort = socket.getLocalPort ();
+        }
+
+        //when
+        final int unknownOption = this.run ("--bogus", this.url);
+        final int noUrl = this.run ("-k");
+        final int unknownHost = this.run ("http://unknown.invalid/");
+        final int refused = this.run ("http://127.0.0.1:" + closedPort + "/");
+        final int missingFile = this.run ("-X", "POST", "--data-binary", "@/nonexistent/file", this.url);
+
+        //then
+        assertEquals (StandaloneRunner.CURLE_FAILED_INIT, unknownOption);
+        assertEquals (StandaloneRunner.CURLE_URL_MALFORMAT, noUrl);
+        assertEquals (StandaloneRunner.CURLE_COULDNT_RESOLVE_HOST, unknownHost);
+        assertEquals (StandaloneRunner.CURLE_COULDNT_CONNECT, refused);
+        assertEquals (StandaloneRunner.CURLE_READ_ERROR, missingFile);
+        assertTrue (this.errors.toString (), this.errors.toString ().startsWith ("curl: (2) Unrecognized option: --bogus"));
+    }
+
+    @Test
+    public void anUntrustedServerCertificateShouldFailTheVerification () throws IOException, GeneralSecurityException {
+        //given
+        final KeyStore keyStore = KeyStore.getInstance ("PKCS12");
+        try (final InputStream content = Files.newInputStream (Paths.get ("src/test/resources/server/libe/libe.p12"))) {
+            keyStore.load (content, "myserverpass".toCharArray ());
+        }
+        final KeyManagerFactory keyManagerFactory = KeyManagerFactory.getInstance (KeyManagerFactory.getDefaultAlgorithm ());
+        keyManagerFactory.init (keyStore, "myserverpass".toCharArray ());
+        final SSLContext sslContext = SSLContext.getInstance ("TLS");
+        sslContext.init (keyManagerFactory.getKeyManagers (), null, null);
+        final HttpsServer tlsServer = HttpsServer.create (new InetSocketAddress (InetAddress.getLoopbackAddress (), 0), 0);
+        tlsServer.setHttpsConfigurator (new HttpsConfigurator (sslContext));
+        tlsServer.createContext ("/", exchange -> {
+            exchange.sendResponseHeaders (204, -1);
+            exchange.close ();
+        });
+        tlsServer.start ();
+
+        try {
+            //when
+            final int exitCode = this.run ("https://localhost:" + tlsServer.getAddress ().getPort () + "/");
+
+            //then
+            assertEquals (StandaloneRunner.CURLE_PEER_FAILED_VERIFICATION, exitCode);
+            assertTrue (this.errors.toString (), this.errors.toString ().startsWith ("curl: (60) "));
+        } finally {
+            tlsServer.stop (0);
+        }
+    }
+
+    @Test
+    public void theVersionShouldBeWrittenWithoutAnyRequest () {
+        //when
+        final int exitCode = this.run ("-V");
+
+        //then
+        assertEquals (StandaloneRunner.OK, exitCode);
+        assertTrue (this.output.toString ().startsWith ("org.toilelibre.libe.curl version "));
+    }
+
+    private int run (final String... args) {
+        return StandaloneRunner.run (args, this.output, new PrintStream (this.errors, true));
+    }
+}
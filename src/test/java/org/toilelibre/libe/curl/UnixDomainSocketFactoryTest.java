@@ -0,0 +1,74 @@
+package org.toilelibre.libe.curl;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.ProtocolFamily;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+public class UnixDomainSocketFactoryTest {
+
+    @Test
+    public void requestsShouldGoThroughTheUnixSocket () throws Exception {
+        //given
+        assumeTrue ("unix domain sockets need java 16", unixDomainSocketsAvailable ());
+        final Path directory = Files.createTempDirectory ("curl");
+        final Path path = directory.resolve ("sidecar.sock");
+        final ServerSocketChannel server = (ServerSocketChannel) ServerSocketChannel.class
+                .getMethod ("open", ProtocolFamily.class).invoke (null, Enum.valueOf (StandardProtocolFamily.class, "UNIX"));
+        server.bind ((SocketAddress) Class.forName ("java.net.UnixDomainSocketAddress")
+                .getMethod ("of", String.class).invoke (null, path.toString ()));
+        final Thread stub = new Thread (() -> this.answerHost (server));
+        stub.start ();
+
+        try {
+            //when
+            final String body = Curl.$ ("--unix-socket " + path + " http://docker/v1.41/version");
+
+            //then
+            assertEquals ("GET /v1.41/version Host: docker", body);
+        } finally {
+            server.close ();
+            stub.join ();
+            Files.deleteIfExists (path);
+            Files.delete (directory);
+        }
+    }
+
+    private void answerHost (final ServerSocketChannel server) {
+        try (final SocketChannel channel = server.accept ()) {
+            final ByteBuffer buffer = ByteBuffer.allocate (8192);
+            String request = "";
+            while (!request.contains ("\r\n\r\n") && channel.read (buffer) != -1) {
+                request = new String (buffer.array (), 0, buffer.position (), StandardCharsets.US_ASCII);
+            }
+            final String requestLine = request.substring (0, request.indexOf (" HTTP/"));
+            final String host = request.replaceAll ("(?s).*\r\n(Host: [^\r]*)\r\n.*", "$1");
+            final byte [] body = (requestLine + " " + host).getBytes (StandardCharsets.US_ASCII);
+            channel.write (ByteBuffer.wrap (("HTTP/1.1 200 OK\r\nContent-Length: " + body.length + "\r\n\r\n")
+                    .getBytes (StandardCharsets.US_ASCII)));
+            channel.write (ByteBuffer.wrap (body));
+        } catch (final IOException e) {
+            throw new IllegalStateException (e);
+        }
+    }
+
+    private static boolean unixDomainSocketsAvailable () {
+        try {
+            Class.forName ("java.net.UnixDomainSocketAddress");
+            return true;
+        } catch (final ClassNotFoundException e) {
+            return false;
+        }
+    }
+}
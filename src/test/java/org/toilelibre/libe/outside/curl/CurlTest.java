@@ -28,6 +28,8 @@ import java.net.SocketTimeoutException;
 import java.nio.charset.StandardCharsets;
 import java.security.*;
 import java.security.cert.*;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
 import java.util.Random;
 import java.util.concurrent.CompletableFuture;
@@ -250,6 +252,18 @@ public class CurlTest {
         this.assertOk (this.curl ("-k -E src/test/resources/clients/libe/libe.pem -L -X GET -H 'User-Agent: curl/7.49.1' -H 'Accept: */*' -H 'Host: localhost' -u user:password 'https://localhost:%d/private/login'"));
     }
 
+    @Test
+    public void basicAuthShouldNotWaitForAChallenge () {
+        final List<Integer> statusCodes = new ArrayList<> ();
+        this.assertOk (this.curl ("-k -E src/test/resources/clients/libe/libe.pem -L --basic -u user:password 'https://localhost:%d/private/login'",
+                with ().interceptor ((request, responseSupplier) -> {
+                    final HttpResponse response = responseSupplier.get ();
+                    statusCodes.add (response.getStatusLine ().getStatusCode ());
+                    return response;
+                }).build ()));
+        Assertions.assertThat (statusCodes).doesNotContain (HttpStatus.SC_UNAUTHORIZED);
+    }
+
     @Test
     public void loginWithIncorrectLoginCurlCommand () {
         this.assertUnauthorized (this.curl ("-k -E src/test/resources/clients/libe/libe.pem -X GET -H 'User-Agent: curl/7.49.1' -H 'Accept: */*' -H 'Host: localhost' -u foo:bar 'https://localhost:%d/private/login'"));
@@ -357,6 +371,23 @@ public class CurlTest {
         Assert.assertTrue (new File ("target/classes/downloadedCurl").exists ());
     }
 
+    @Test
+    public void outputFileWithEtag () throws IOException {
+        File file = new File ("target/classes/downloadedWithEtag");
+        File etag = new File ("target/classes/downloadedWithEtag.etag");
+
+        boolean fileDeleted = file.delete () && etag.delete ();
+        LOGGER.log (Level.FINE, "output files deleted : " + fileDeleted);
+        this.assertOk (this.curl ("-k -E src/test/resources/clients/libe/libe.pem --etag-save target/classes/downloadedWithEtag.etag 'https://localhost:%d/public/etag' -o target/classes/downloadedWithEtag"));
+        Assert.assertEquals ("\"curl-etag\"", IOUtils.toString (etag.toURI (), StandardCharsets.UTF_8).trim ());
+        final long length = file.length ();
+
+        HttpResponse notModified = this.curl ("-k -E src/test/resources/clients/libe/libe.pem --etag-compare target/classes/downloadedWithEtag.etag --etag-save target/classes/downloadedWithEtag.etag 'https://localhost:%d/public/etag' -o target/classes/downloadedWithEtag");
+        Assert.assertEquals (HttpStatus.SC_NOT_MODIFIED, this.statusCodeOf (notModified));
+        Assert.assertEquals (length, file.length ());
+        Assert.assertEquals ("\"curl-etag\"", IOUtils.toString (etag.toURI (), StandardCharsets.UTF_8).trim ());
+    }
+
     @Test
     public void outputFileWithSpaces () {
         File file = new File ("target/classes/downloaded Curl With Spaces");
@@ -84,6 +84,17 @@ public class RequestMonitor {
             return this.logRequest (request, body);
         }
 
+        @RequestMapping (value = "/public/etag", produces = MediaType.TEXT_PLAIN_VALUE, method = RequestMethod.GET)
+        @ResponseBody
+        public String etag (final HttpServletRequest request, final HttpServletResponse response) {
+            response.setHeader ("ETag", "\"curl-etag\"");
+            if ("\"curl-etag\"".equals (request.getHeader ("If-None-Match"))) {
+                response.setStatus (HttpStatus.NOT_MODIFIED.value ());
+                return null;
+            }
+            return this.logRequest (request, "");
+        }
+
         @RequestMapping (value = "/public/tooLong", produces = MediaType.TEXT_PLAIN_VALUE)
         @ResponseStatus (code = HttpStatus.OK)
         @ResponseBody